@@ -37,9 +37,12 @@ dependencies {
     
     // AMap SDK: 3dmap includes map and location functionality
     implementation("com.amap.api:3dmap:10.0.600")
+    // POI keyword search for queries translated on device
+    implementation("com.amap.api:search:9.7.0")
     
     // Network and JSON parsing
     implementation("com.squareup.okhttp3:okhttp:4.12.0")
+    implementation("com.squareup.okhttp3:okhttp-brotli:4.12.0")
     implementation("com.google.code.gson:gson:2.10.1")
     
     // UI components
@@ -47,6 +50,11 @@ dependencies {
     implementation("androidx.recyclerview:recyclerview:1.3.2")
     
     testImplementation(libs.junit)
+    // Real org.json for comparing against the legacy parser (android.jar only has stubs)
+    testImplementation("org.json:json:20231013")
+    testImplementation("com.squareup.okhttp3:mockwebserver:4.12.0")
+    // Android framework classes (Looper, Handler) for JVM tests
+    testImplementation("org.robolectric:robolectric:4.14.1")
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
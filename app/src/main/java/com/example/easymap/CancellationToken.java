@@ -0,0 +1,46 @@
+package com.example.easymap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Cancellation signal for one search. Stages poll isCancelled() between steps;
+// work that cannot poll (an HTTP exchange, a POI search, a streaming batcher)
+// registers a Cancellable that runs once, when the token is cancelled, or right
+// away if it already was.
+public final class CancellationToken implements SearchCoordinator.Cancellable {
+    private final List<SearchCoordinator.Cancellable> onCancel = new ArrayList<>(2);
+    private volatile boolean cancelled;
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    public void onCancel(SearchCoordinator.Cancellable action) {
+        if (action == null) {
+            return;
+        }
+        synchronized (this) {
+            if (!cancelled) {
+                onCancel.add(action);
+                return;
+            }
+        }
+        action.cancel();
+    }
+    
+    @Override
+    public void cancel() {
+        List<SearchCoordinator.Cancellable> actions;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            actions = new ArrayList<>(onCancel);
+            onCancel.clear();
+        }
+        for (SearchCoordinator.Cancellable action : actions) {
+            action.cancel();
+        }
+    }
+}
\ No newline at end of file
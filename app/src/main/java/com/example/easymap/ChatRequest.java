@@ -0,0 +1,32 @@
+package com.example.easymap;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+// Request body for the /chat endpoint: {"message": "..."}. Written with a
+// streaming JsonWriter so quotes, backslashes and control characters in what
+// the user typed are escaped instead of breaking the JSON.
+public final class ChatRequest {
+    public static final String MEDIA_TYPE = "application/json; charset=utf-8";
+    // Streamed answers preferred (see PlaceStreamParser); the single-shot JSON body is still accepted
+    public static final String ACCEPT = PlaceStreamParser.NDJSON + ", " + PlaceStreamParser.EVENT_STREAM
+        + ";q=0.9, application/json;q=0.8";
+    
+    private ChatRequest() {
+    }
+    
+    public static String body(String message) {
+        StringWriter out = new StringWriter(message.length() + 16);
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.beginObject();
+            json.name("message").value(message);
+            json.endObject();
+        } catch (IOException e) {
+            // StringWriter does not throw
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+}
\ No newline at end of file
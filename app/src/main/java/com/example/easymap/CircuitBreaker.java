@@ -0,0 +1,87 @@
+package com.example.easymap;
+
+// Stops sending requests to a backend that keeps failing. After failureThreshold
+// consecutive failures the circuit opens and requests fail fast for openMillis;
+// then a single trial request is let through (half-open). Its success closes
+// the circuit, its failure opens it again.
+public class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+    
+    private final int failureThreshold;
+    private final long openMillis;
+    
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long rejected;
+    
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+    
+    // Whether a request may be sent now. Every allowed request must be followed
+    // by onSuccess() or onFailure().
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (!trialInFlight) {
+                    trialInFlight = true;
+                    return true;
+                }
+                break;
+            default:
+                break;
+        }
+        rejected++;
+        return false;
+    }
+    
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+    
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = currentTimeMillis();
+        }
+    }
+    
+    // An allowed request was abandoned before it had an outcome
+    public synchronized void onCancelled() {
+        trialInFlight = false;
+    }
+    
+    public synchronized State getState() {
+        if (state == State.OPEN && currentTimeMillis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+    
+    // Requests refused while open
+    public synchronized long getRejected() {
+        return rejected;
+    }
+    
+    // Overridden in tests
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
\ No newline at end of file
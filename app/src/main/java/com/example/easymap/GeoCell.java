@@ -0,0 +1,54 @@
+package com.example.easymap;
+
+public final class GeoCell {
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    
+    // 6 characters is roughly a 1.2 km x 0.6 km cell, i.e. "the same few blocks"
+    public static final int DEFAULT_PRECISION = 6;
+    
+    private GeoCell() {
+    }
+    
+    public static String encode(double latitude, double longitude) {
+        return encode(latitude, longitude, DEFAULT_PRECISION);
+    }
+    
+    // Standard geohash: interleave longitude/latitude bisection bits, 5 bits per character
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        char[] hash = new char[precision];
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+        int pos = 0;
+        while (pos < precision) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLng = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                hash[pos++] = BASE32[ch];
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return new String(hash);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.example.easymap;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.brotli.BrotliInterceptor;
+
+// Application-wide HTTP transport. One OkHttpClient (and so one connection pool
+// and dispatcher) is shared by every search, and prewarm() lets callers open the
+// connection to the backend before the first query needs it.
+public final class HttpTransport {
+    static final int MAX_IDLE_CONNECTIONS = 4;
+    static final long KEEP_ALIVE_MINUTES = 5;
+    static final long CONNECT_TIMEOUT_SECONDS = 5;
+    static final long WRITE_TIMEOUT_SECONDS = 10;
+    // The AI backend can take a while to generate its answer
+    static final long READ_TIMEOUT_SECONDS = 30;
+    static final long CALL_TIMEOUT_SECONDS = 45;
+    
+    private static volatile HttpTransport instance;
+    
+    private final OkHttpClient client;
+    
+    HttpTransport(OkHttpClient client) {
+        this.client = client;
+    }
+    
+    public static HttpTransport get() {
+        if (instance == null) {
+            synchronized (HttpTransport.class) {
+                if (instance == null) {
+                    instance = new HttpTransport(newClientBuilder().build());
+                }
+            }
+        }
+        return instance;
+    }
+    
+    static OkHttpClient.Builder newClientBuilder() {
+        return new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .writeTimeout(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .callTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            // HTTP/2 is negotiated over TLS via ALPN; plain-http backends stay on HTTP/1.1 keep-alive
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .retryOnConnectionFailure(true)
+            // Advertises "br,gzip" and transparently decodes either
+            .addInterceptor(BrotliInterceptor.INSTANCE);
+    }
+    
+    public OkHttpClient client() {
+        return client;
+    }
+    
+    // Opens (DNS, TCP, TLS) a pooled connection to the host serving the given URL
+    // with a cheap HEAD request, so the first real search skips the handshake.
+    // The response status does not matter; only the kept-alive connection does.
+    public Call prewarm(String url) {
+        HttpUrl target = HttpUrl.get(url);
+        HttpUrl root = new HttpUrl.Builder()
+            .scheme(target.scheme())
+            .host(target.host())
+            .port(target.port())
+            .build();
+        Call call = client.newCall(new Request.Builder().url(root).head().build());
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                // Best effort: the real search will connect on its own
+            }
+            
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
+        return call;
+    }
+}
\ No newline at end of file
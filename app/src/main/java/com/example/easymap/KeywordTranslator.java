@@ -0,0 +1,198 @@
+package com.example.easymap;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// On-device phrase -> AMap search keyword table, so everyday queries like
+// "dumplings" or "metro station" need no /chat round trip. Seeded from a bundled
+// TSV (phrase<TAB>keyword, # for comments) and extended with the keywords the
+// backend reports for the queries it translated; learned entries are appended
+// to a file and override the seed when reloaded.
+//
+// Lookups work on the normalized query: exact match, then with filler words
+// ("near me", "nearby", "best", ...) removed, then as the prefix of known
+// phrases that all map to the same keyword, for half-typed queries. A query
+// already written in Chinese is its own keyword only if it is short and a
+// single term, or a keyword the table already uses; sentences go to the backend.
+public class KeywordTranslator {
+    // Shorter prefixes are too ambiguous to resolve locally
+    static final int MIN_PREFIX_CHARS = 4;
+    // Longer queries are sentences; learning them would only ever match themselves
+    static final int MAX_LEARNED_WORDS = 4;
+    static final int MAX_LEARNED_ENTRIES = 2000;
+    // Longer Chinese queries are sentences ("附近有什么好吃的"), not POI keywords
+    static final int MAX_CHINESE_KEYWORD_CHARS = 4;
+    // Prefix lookups look at no more than this many candidate phrases
+    private static final int MAX_PREFIX_CANDIDATES = 8;
+    private static final Set<String> FILLER = new HashSet<>(Arrays.asList(
+        "a", "an", "the", "some", "any", "find", "where", "is", "near", "me", "nearby", "around", "here",
+        "closest", "nearest", "best", "good"));
+    
+    private final File learnedFile;
+    // Sorted, so every phrase sharing a prefix is one contiguous range
+    private final TreeMap<String, String> phrases = new TreeMap<>();
+    // Every keyword the table maps to
+    private final Set<String> keywords = new HashSet<>();
+    private int learned;
+    
+    // learnedFile may be null to keep learned entries in memory only
+    public KeywordTranslator(File learnedFile) {
+        this.learnedFile = learnedFile;
+    }
+    
+    // Adds the entries of a phrase<TAB>keyword table
+    public synchronized void load(Reader table) throws IOException {
+        BufferedReader lines = new BufferedReader(table);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            if (tab <= 0) {
+                continue;
+            }
+            String phrase = QueryNormalizer.normalize(line.substring(0, tab));
+            String keyword = line.substring(tab + 1).trim();
+            if (!phrase.isEmpty() && !keyword.isEmpty()) {
+                phrases.put(phrase, keyword);
+                keywords.add(keyword);
+            }
+        }
+    }
+    
+    // Adds what earlier sessions learned; later lines win
+    public synchronized void loadLearned() throws IOException {
+        if (learnedFile == null || !learnedFile.isFile()) {
+            return;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(learnedFile), StandardCharsets.UTF_8)) {
+            int before = phrases.size();
+            load(reader);
+            learned += phrases.size() - before;
+        }
+    }
+    
+    public synchronized int size() {
+        return phrases.size();
+    }
+    
+    // The keyword to search for, or null if the query needs the backend
+    public synchronized String translate(String query) {
+        if (query == null) {
+            return null;
+        }
+        if (isChinese(query)) {
+            String trimmed = query.trim();
+            return keywords.contains(trimmed) || isSingleTerm(trimmed) ? trimmed : null;
+        }
+        String normalized = QueryNormalizer.normalize(query);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        String keyword = phrases.get(normalized);
+        if (keyword != null) {
+            return keyword;
+        }
+        String stripped = stripFiller(normalized);
+        if (stripped.isEmpty()) {
+            return null;
+        }
+        keyword = phrases.get(stripped);
+        if (keyword != null) {
+            return keyword;
+        }
+        return stripped.length() >= MIN_PREFIX_CHARS ? byPrefix(stripped) : null;
+    }
+    
+    // Records the keyword the backend chose for a query. Returns true if the
+    // table changed; the entry is persisted when a learned file is configured.
+    public synchronized boolean learn(String query, String keyword) throws IOException {
+        if (query == null || keyword == null || isChinese(query)) {
+            return false;
+        }
+        String phrase = QueryNormalizer.normalize(query);
+        String clean = keyword.replaceAll("\\s+", " ").trim();
+        if (phrase.isEmpty() || clean.isEmpty() || phrase.split(" ").length > MAX_LEARNED_WORDS
+                || clean.equals(phrases.get(phrase)) || learned >= MAX_LEARNED_ENTRIES) {
+            return false;
+        }
+        phrases.put(phrase, clean);
+        keywords.add(clean);
+        learned++;
+        if (learnedFile != null) {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(learnedFile, true), StandardCharsets.UTF_8)) {
+                out.write(phrase + "\t" + clean + "\n");
+            }
+        }
+        return true;
+    }
+    
+    // Only answers when every known phrase starting with the prefix agrees
+    private String byPrefix(String prefix) {
+        String keyword = null;
+        int seen = 0;
+        for (Map.Entry<String, String> entry : phrases.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            if (keyword != null && !keyword.equals(entry.getValue()) || ++seen > MAX_PREFIX_CANDIDATES) {
+                return null;
+            }
+            keyword = entry.getValue();
+        }
+        return keyword;
+    }
+    
+    private static String stripFiller(String normalized) {
+        StringBuilder out = new StringBuilder(normalized.length());
+        for (String word : normalized.split(" ")) {
+            if (!FILLER.contains(word)) {
+                if (out.length() > 0) {
+                    out.append(' ');
+                }
+                out.append(word);
+            }
+        }
+        return out.toString();
+    }
+    
+    // Letters and digits only, and short enough to be a name rather than a sentence
+    private static boolean isSingleTerm(String text) {
+        if (text.isEmpty() || text.codePointCount(0, text.length()) > MAX_CHINESE_KEYWORD_CHARS) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(codePoint)) {
+                return false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return true;
+    }
+    
+    static boolean isChinese(String text) {
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN) {
+                return true;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return false;
+    }
+}
\ No newline at end of file
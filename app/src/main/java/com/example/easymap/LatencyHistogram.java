@@ -0,0 +1,94 @@
+package com.example.easymap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fixed-size, lock-free latency histogram in microseconds. Buckets are
+// log-linear: exact below 8 us, then 8 buckets per power of two, so any
+// percentile is reported within 12.5% of the true value. Recording is a couple
+// of bit operations and one atomic increment; memory is constant no matter how
+// many samples are recorded.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values are clamped below 2^40 us (~12 days)
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    
+    public void recordMicros(long micros) {
+        long value = Math.max(0, Math.min(MAX_VALUE, micros));
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+    
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+    
+    public long getCount() {
+        return count.get();
+    }
+    
+    public long getMaxMicros() {
+        return max.get();
+    }
+    
+    public double getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+    
+    // Upper bound of the bucket holding the given percentile (0-100], capped at the
+    // largest recorded value; 0 when empty
+    public long percentileMicros(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+    
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+    
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+    
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lower + width - 1;
+    }
+}
\ No newline at end of file
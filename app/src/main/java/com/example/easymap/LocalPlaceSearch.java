@@ -0,0 +1,93 @@
+package com.example.easymap;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.amap.api.services.core.AMapException;
+import com.amap.api.services.core.LatLonPoint;
+import com.amap.api.services.core.PoiItem;
+import com.amap.api.services.core.ServiceSettings;
+import com.amap.api.services.poisearch.PoiResult;
+import com.amap.api.services.poisearch.PoiSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Keyword search against AMap's POI service straight from the device: the fast
+// path for queries KeywordTranslator resolves, skipping the /chat backend
+public class LocalPlaceSearch {
+    private static final String TAG = "LocalPlaceSearch";
+    
+    public interface Callback {
+        // Called on the main thread; may be empty
+        void onResults(List<PlaceResult> places);
+        void onError(String error);
+    }
+    
+    private final Context context;
+    private final int radiusMeters;
+    private final int pageSize;
+    
+    public LocalPlaceSearch(Context context, int radiusMeters, int pageSize) {
+        this.context = context.getApplicationContext();
+        this.radiusMeters = radiusMeters;
+        this.pageSize = pageSize;
+        ServiceSettings.updatePrivacyShow(this.context, true, true);
+        ServiceSettings.updatePrivacyAgree(this.context, true);
+    }
+    
+    // Places matching the keyword around the given point, nearest first. The
+    // returned handle suppresses the callback; the SDK request itself runs on.
+    public SearchCoordinator.Cancellable search(String keyword, double latitude, double longitude, Callback callback) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        PoiSearch.Query query = new PoiSearch.Query(keyword, "", "");
+        query.setPageSize(pageSize);
+        query.setPageNum(1);
+        query.setDistanceSort(true);
+        try {
+            PoiSearch search = new PoiSearch(context, query);
+            search.setBound(new PoiSearch.SearchBound(new LatLonPoint(latitude, longitude), radiusMeters));
+            search.setOnPoiSearchListener(new PoiSearch.OnPoiSearchListener() {
+                @Override
+                public void onPoiSearched(PoiResult result, int code) {
+                    if (cancelled.get()) {
+                        return;
+                    }
+                    if (code != AMapException.CODE_AMAP_SUCCESS || result == null) {
+                        callback.onError("POI search failed: " + code);
+                        return;
+                    }
+                    callback.onResults(toPlaces(result.getPois()));
+                }
+                
+                @Override
+                public void onPoiItemSearched(PoiItem item, int code) {
+                }
+            });
+            search.searchPOIAsyn();
+        } catch (AMapException e) {
+            Log.e(TAG, "Failed to start POI search", e);
+            callback.onError(e.getErrorMessage());
+        }
+        return () -> cancelled.set(true);
+    }
+    
+    private static List<PlaceResult> toPlaces(List<PoiItem> items) {
+        List<PlaceResult> places = new ArrayList<>();
+        if (items == null) {
+            return places;
+        }
+        StringPool pool = StringPool.shared();
+        for (PoiItem item : items) {
+            LatLonPoint point = item.getLatLonPoint();
+            if (item.getTitle() == null || point == null) {
+                continue;
+            }
+            String address = item.getSnippet() != null ? item.getSnippet() : "";
+            places.add(new PlaceResult(item.getTitle(), pool.intern(address), point.getLatitude(),
+                point.getLongitude(), PlaceResult.UNKNOWN_DISTANCE, pool.intern(item.getTypeDes())));
+        }
+        return places;
+    }
+}
\ No newline at end of file
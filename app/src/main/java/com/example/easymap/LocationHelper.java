@@ -2,6 +2,7 @@ package com.example.easymap;
 
 import android.content.Context;
 import android.location.Location;
+import android.os.BatteryManager;
 import android.util.Log;
 
 import com.amap.api.location.AMapLocation;
@@ -12,17 +13,53 @@ import com.amap.api.location.AMapLocationListener;
 public class LocationHelper {
     private static final String TAG = "LocationHelper";
     
+    private static final int FAST_HTTP_TIMEOUT_MS = 8000;
+    
+    private final Context context;
     private AMapLocationClient locationClient;
     private LocationCallback callback;
     private boolean isInitialized = false;
     
+    // Progressive mode: a second client answers the fast network request while
+    // locationClient runs the high-accuracy one
+    private AMapLocationClient fastClient;
+    private volatile ProgressiveLocator.FixCallback fastCallback;
+    private volatile ProgressiveLocator.FixCallback preciseCallback;
+    private ProgressiveLocator progressiveLocator;
+    
+    // Continuous tracking runs on its own client so one-shot requests can coexist
+    private AMapLocationClient trackingClient;
+    private TrackingPolicy trackingPolicy;
+    private long appliedTrackingInterval;
+    private boolean appliedTrackingHighAccuracy;
+    
     public interface LocationCallback {
         void onLocationSuccess(AMapLocation location);
         void onLocationFailed(String error);
     }
     
+    // For getProgressiveLocation: a coarse fix first, then the precise one
+    public interface ProgressiveLocationCallback extends LocationCallback {
+        // A recent cached or network fix; accuracy is location.getAccuracy()
+        void onProvisionalLocation(AMapLocation location, long ageMillis);
+        
+        // The high-accuracy fix; movedSignificantly is false when it is within noise
+        // of the provisional one, so callers can skip re-searching or re-ranking
+        default void onLocationRefined(AMapLocation location, boolean movedSignificantly) {
+            onLocationSuccess(location);
+        }
+    }
+    
+    // For startTracking: onLocationSuccess reports moves past the movement threshold
+    public interface TrackingCallback extends LocationCallback {
+        // Moved past the refresh distance since the last refresh; called instead of
+        // onLocationSuccess for that fix
+        void onRefreshNeeded(AMapLocation location);
+    }
+    
     public LocationHelper(Context context) {
         Log.d(TAG, "Initializing LocationHelper...");
+        this.context = context.getApplicationContext();
         try {
             // Initialize AMapLocationClient
             AMapLocationClient.updatePrivacyShow(context, true, true);
@@ -39,6 +76,12 @@ public class LocationHelper {
                 @Override
                 public void onLocationChanged(AMapLocation aMapLocation) {
                     Log.d(TAG, "Location changed callback received");
+                    ProgressiveLocator.FixCallback precise = preciseCallback;
+                    if (precise != null) {
+                        preciseCallback = null;
+                        deliver(aMapLocation, precise);
+                        return;
+                    }
                     if (aMapLocation != null && aMapLocation.getErrorCode() == 0) {
                         Log.d(TAG, "Location success: " + aMapLocation.getLatitude() + ", " + aMapLocation.getLongitude());
                         if (callback != null) {
@@ -67,6 +110,7 @@ public class LocationHelper {
     public void getCurrentLocation(LocationCallback callback) {
         Log.d(TAG, "getCurrentLocation called, isInitialized: " + isInitialized);
         this.callback = callback;
+        preciseCallback = null;
         
         if (!isInitialized || locationClient == null) {
             Log.e(TAG, "Location client not initialized");
@@ -77,17 +121,7 @@ public class LocationHelper {
         }
         
         try {
-            AMapLocationClientOption option = new AMapLocationClientOption();
-            option.setLocationMode(AMapLocationClientOption.AMapLocationMode.Hight_Accuracy);
-            option.setOnceLocation(true);
-            option.setOnceLocationLatest(true);
-            option.setNeedAddress(true);
-            option.setWifiActiveScan(true);
-            option.setMockEnable(false);
-            option.setHttpTimeOut(20000);
-            option.setLocationCacheEnable(false);
-            
-            locationClient.setLocationOption(option);
+            locationClient.setLocationOption(highAccuracyOption());
             Log.d(TAG, "Starting location request...");
             locationClient.startLocation();
             
@@ -99,6 +133,222 @@ public class LocationHelper {
         }
     }
     
+    // Delivers a recent cached or network fix as soon as one is available, then
+    // the high-accuracy fix; see ProgressiveLocator for the policy
+    public void getProgressiveLocation(ProgressiveLocationCallback callback) {
+        Log.d(TAG, "getProgressiveLocation called, isInitialized: " + isInitialized);
+        this.callback = callback;
+        
+        if (!isInitialized || locationClient == null) {
+            Log.e(TAG, "Location client not initialized");
+            callback.onLocationFailed("Location client not initialized");
+            return;
+        }
+        
+        if (progressiveLocator == null) {
+            progressiveLocator = new ProgressiveLocator(new AMapSource());
+        }
+        progressiveLocator.start(new ProgressiveLocator.Listener() {
+            @Override
+            public void onProvisional(ProgressiveLocator.Fix fix, long ageMillis) {
+                Log.d(TAG, "Provisional location: age " + ageMillis + " ms, accuracy " + fix.getAccuracy() + " m");
+                callback.onProvisionalLocation((AMapLocation) fix.getTag(), ageMillis);
+            }
+            
+            @Override
+            public void onRefined(ProgressiveLocator.Fix fix, boolean movedSignificantly) {
+                Log.d(TAG, "Refined location: accuracy " + fix.getAccuracy() + " m, moved " + movedSignificantly);
+                callback.onLocationRefined((AMapLocation) fix.getTag(), movedSignificantly);
+            }
+            
+            @Override
+            public void onFailed(String error) {
+                Log.e(TAG, error);
+                callback.onLocationFailed(error);
+            }
+        });
+    }
+    
+    // Continuous updates whose interval and positioning mode adapt to speed and
+    // battery; fixes closer than minMovementMeters to the last reported one are dropped
+    public void startTracking(double minMovementMeters, double refreshDistanceMeters, TrackingCallback callback) {
+        if (!isInitialized) {
+            callback.onLocationFailed("Location client not initialized");
+            return;
+        }
+        stopTracking();
+        trackingPolicy = new TrackingPolicy(minMovementMeters, refreshDistanceMeters);
+        updateBattery();
+        try {
+            trackingClient = new AMapLocationClient(context);
+            trackingClient.setLocationListener(location -> onTrackingFix(location, callback));
+            applyTrackingOption();
+            Log.d(TAG, "Tracking started");
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to start tracking", e);
+            trackingClient = null;
+            callback.onLocationFailed("Failed to start tracking: " + e.getMessage());
+        }
+    }
+    
+    public void stopTracking() {
+        if (trackingClient == null) {
+            return;
+        }
+        try {
+            trackingClient.stopLocation();
+            trackingClient.onDestroy();
+            Log.d(TAG, "Tracking stopped");
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to stop tracking", e);
+        }
+        trackingClient = null;
+    }
+    
+    public boolean isTracking() {
+        return trackingClient != null;
+    }
+    
+    private void onTrackingFix(AMapLocation location, TrackingCallback callback) {
+        if (trackingClient == null) {
+            return;
+        }
+        if (location == null || location.getErrorCode() != 0) {
+            // Transient while tracking (tunnels, indoors); the next interval retries
+            Log.w(TAG, "Tracking fix failed: " + (location != null ? location.getErrorInfo() : "Unknown error"));
+            return;
+        }
+        updateBattery();
+        switch (trackingPolicy.onFix(toFix(location))) {
+            case REFRESH:
+                callback.onRefreshNeeded(location);
+                break;
+            case UPDATE:
+                callback.onLocationSuccess(location);
+                break;
+            default:
+                break;
+        }
+        if (trackingPolicy.needsReconfigure(appliedTrackingInterval, appliedTrackingHighAccuracy)) {
+            applyTrackingOption();
+        }
+    }
+    
+    private void applyTrackingOption() {
+        appliedTrackingInterval = trackingPolicy.intervalMillis();
+        appliedTrackingHighAccuracy = trackingPolicy.highAccuracy();
+        AMapLocationClientOption option = new AMapLocationClientOption();
+        option.setLocationMode(appliedTrackingHighAccuracy
+            ? AMapLocationClientOption.AMapLocationMode.Hight_Accuracy
+            : AMapLocationClientOption.AMapLocationMode.Battery_Saving);
+        option.setOnceLocation(false);
+        option.setInterval(appliedTrackingInterval);
+        option.setNeedAddress(false);
+        option.setMockEnable(false);
+        option.setLocationCacheEnable(true);
+        Log.d(TAG, "Tracking every " + appliedTrackingInterval + " ms, high accuracy " + appliedTrackingHighAccuracy
+            + ", speed " + trackingPolicy.getSpeed() + " m/s");
+        // Option changes only take effect on a restart
+        trackingClient.stopLocation();
+        trackingClient.setLocationOption(option);
+        trackingClient.startLocation();
+    }
+    
+    private void updateBattery() {
+        BatteryManager battery = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        if (battery != null) {
+            trackingPolicy.setBattery(battery.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY),
+                battery.isCharging());
+        }
+    }
+    
+    private static AMapLocationClientOption highAccuracyOption() {
+        AMapLocationClientOption option = new AMapLocationClientOption();
+        option.setLocationMode(AMapLocationClientOption.AMapLocationMode.Hight_Accuracy);
+        option.setOnceLocation(true);
+        option.setOnceLocationLatest(true);
+        option.setNeedAddress(true);
+        option.setWifiActiveScan(true);
+        option.setMockEnable(false);
+        option.setHttpTimeOut(20000);
+        option.setLocationCacheEnable(false);
+        return option;
+    }
+    
+    // Network positioning only, and the SDK's own cache may answer
+    private static AMapLocationClientOption fastOption() {
+        AMapLocationClientOption option = new AMapLocationClientOption();
+        option.setLocationMode(AMapLocationClientOption.AMapLocationMode.Battery_Saving);
+        option.setOnceLocation(true);
+        option.setNeedAddress(true);
+        option.setMockEnable(false);
+        option.setHttpTimeOut(FAST_HTTP_TIMEOUT_MS);
+        option.setLocationCacheEnable(true);
+        return option;
+    }
+    
+    private static ProgressiveLocator.Fix toFix(AMapLocation location) {
+        return new ProgressiveLocator.Fix(location.getLatitude(), location.getLongitude(),
+            location.getAccuracy(), location.getTime(), location);
+    }
+    
+    private static void deliver(AMapLocation location, ProgressiveLocator.FixCallback callback) {
+        if (location != null && location.getErrorCode() == 0) {
+            callback.onFix(toFix(location));
+        } else {
+            callback.onError("Location failed: " + (location != null ? location.getErrorInfo() : "Unknown error"));
+        }
+    }
+    
+    // ProgressiveLocator source backed by the two AMap clients
+    private class AMapSource implements ProgressiveLocator.Source {
+        @Override
+        public ProgressiveLocator.Fix lastKnown() {
+            AMapLocation last = locationClient != null ? locationClient.getLastKnownLocation() : null;
+            return last != null && last.getErrorCode() == 0 ? toFix(last) : null;
+        }
+        
+        @Override
+        public void request(boolean highAccuracy, ProgressiveLocator.FixCallback fixCallback) {
+            try {
+                if (highAccuracy) {
+                    preciseCallback = fixCallback;
+                    locationClient.setLocationOption(highAccuracyOption());
+                    locationClient.startLocation();
+                    return;
+                }
+                if (fastClient == null) {
+                    fastClient = new AMapLocationClient(context);
+                    fastClient.setLocationListener(location -> {
+                        ProgressiveLocator.FixCallback fast = fastCallback;
+                        fastCallback = null;
+                        if (fast != null) {
+                            deliver(location, fast);
+                        }
+                    });
+                }
+                fastCallback = fixCallback;
+                fastClient.setLocationOption(fastOption());
+                fastClient.startLocation();
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to start location", e);
+                fixCallback.onError("Failed to start location: " + e.getMessage());
+            }
+        }
+        
+        @Override
+        public void cancel() {
+            fastCallback = null;
+            preciseCallback = null;
+            if (fastClient != null) {
+                fastClient.stopLocation();
+            }
+            if (locationClient != null) {
+                locationClient.stopLocation();
+            }
+        }
+    }
+    
     public void stopLocation() {
         if (locationClient != null && isInitialized) {
             try {
@@ -111,6 +361,14 @@ public class LocationHelper {
     }
     
     public void destroy() {
+        stopTracking();
+        if (progressiveLocator != null) {
+            progressiveLocator.cancel();
+        }
+        if (fastClient != null) {
+            fastClient.onDestroy();
+            fastClient = null;
+        }
         if (locationClient != null && isInitialized) {
             try {
                 locationClient.onDestroy();
@@ -126,4 +384,4 @@ public class LocationHelper {
     public boolean isInitialized() {
         return isInitialized;
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -1,11 +1,18 @@
 package com.example.easymap;
 
 import android.Manifest;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.View;
-import android.widget.EditText;
+import android.view.ViewTreeObserver;
+import android.widget.AutoCompleteTextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -18,42 +25,137 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.amap.api.location.AMapLocation;
 import com.amap.api.maps.AMap;
 import com.amap.api.maps.MapView;
+import com.amap.api.maps.model.BitmapDescriptorFactory;
+import com.amap.api.maps.model.CameraPosition;
 import com.amap.api.maps.model.LatLng;
+import com.amap.api.maps.model.LatLngBounds;
 import com.amap.api.maps.model.Marker;
 import com.amap.api.maps.model.MarkerOptions;
 import com.google.android.material.button.MaterialButton;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
-import okhttp3.Callback;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
     private static final int PERMISSION_REQUEST_CODE = 1001;
     private static final String BACKEND_URL = "http://10.194.27.176:9000/chat";
+    private static final int SEARCH_CACHE_MEMORY_ENTRIES = 32;
+    private static final long SEARCH_CACHE_DISK_BYTES = 2 * 1024 * 1024;
+    private static final long SEARCH_CACHE_TTL_MS = 30 * 60 * 1000;
+    private static final ProximityRanker.Mode RANKING_MODE = ProximityRanker.Mode.WEIGHTED;
+    private static final int SESSION_NEARBY_LIMIT = 30;
+    private static final long OFFLINE_STORE_BYTES = 4 * 1024 * 1024;
+    private static final int OFFLINE_STORE_RECORDS = 20_000;
+    private static final int OFFLINE_RESULT_LIMIT = 50;
+    // Log the latency table after every this many completed searches
+    private static final int METRICS_LOG_EVERY = 10;
+    // The metrics file is rotated past this size, one previous file kept
+    private static final long METRICS_FILE_MAX_BYTES = 64 * 1024;
+    // Streamed answers are drawn at most this often, or sooner once this many places are waiting
+    private static final long STREAM_BATCH_INTERVAL_MS = 150;
+    private static final int STREAM_BATCH_MAX = 10;
+    // Hedging waits for this many measured responses before trusting their p95
+    private static final int HEDGE_MIN_SAMPLES = 20;
+    // Padding around the results the camera is fitted to
+    private static final int CAMERA_FIT_PADDING_PX = 120;
+    private static final int SUGGESTION_LIMIT = 8;
+    // History changes are written at most this long after the last one, in one go
+    private static final long HISTORY_SAVE_DELAY_MS = 2000;
+    // How long onDestroy waits for pending history and offline writes before closing the store
+    private static final long SHUTDOWN_WAIT_MS = 500;
+    // Where recent queries were kept before the search history; read once to migrate
+    private static final String SEARCH_PREFS = "search";
+    private static final String PREF_RECENT_QUERIES = "recent_queries";
     
     private MapView mapView;
     private AMap aMap;
     private LocationHelper locationHelper;
-    private EditText searchInput;
+    private AutoCompleteTextView searchInput;
     private MaterialButton searchButton;
     private RecyclerView resultsRecyclerView;
     private List<PlaceResult> searchResults;
-    private AMapLocation currentLocation;
+    // The results on screen in the order the backend gave them, which WEIGHTED
+    // ranking scores relevance by; UI thread only
+    private List<PlaceResult> shownBackendOrder = new ArrayList<>();
+    private volatile AMapLocation currentLocation;
     private ResultsAdapter resultsAdapter;
+    // Set once the first precise fix is in; tracking then follows the activity lifecycle
+    private boolean trackingWanted;
+    
+    private StartupScheduler startupScheduler;
+    private ExecutorService startupExecutor;
+    private StartupScheduler.Task<OkHttpClient> httpClient;
+    private StartupScheduler.Task<SearchCache> searchCache;
+    private StartupScheduler.Task<KeywordTranslator> keywordTranslator;
+    private StartupScheduler.Task<SearchHistory> searchHistory;
+    // Deadline, retries, hedging and circuit breaker around /chat
+    private StartupScheduler.Task<ResilientCaller> chatCaller;
+    // Prefetches: the same breaker and deadline, no retries or hedging
+    private StartupScheduler.Task<ResilientCaller> prefetchCaller;
+    private ScheduledExecutorService resilienceTimer;
+    // Created with the location helper; null if local search is disabled
+    private volatile LocalPlaceSearch localPlaceSearch;
+    private ExecutorService searchExecutor;
+    // Opened and written on searchExecutor; null if the file could not be opened
+    private volatile OfflinePlaceStore offlineStore;
+    private final SearchCoordinator searchCoordinator = new SearchCoordinator();
+    // Every query runs location -> fetch -> parse -> rank -> render on these
+    private SearchPipeline searchPipeline;
+    private ThreadPoolExecutor fetchExecutor;
+    private ThreadPoolExecutor parseExecutor;
+    private ThreadPoolExecutor rankExecutor;
+    // Batchers of streamed answers still arriving, by generation
+    private final Map<Long, ResultBatcher> streams = new ConcurrentHashMap<>();
+    // Places of searches between rank and render, in backend order, by generation
+    private final Map<Long, List<PlaceResult>> backendOrders = new ConcurrentHashMap<>();
+    private final SearchMetrics searchMetrics = new SearchMetrics();
+    private final long createdNanos = System.nanoTime();
+    private boolean locationFixRecorded;
+    // Every place any search returned this session, for lookups that need no backend call
+    private final PlaceIndex sessionIndex = new PlaceIndex();
+    // Null when prefetch is disabled
+    private PrefetchScheduler prefetchScheduler;
+    // Location the queued prefetches are keyed to
+    private volatile AMapLocation prefetchLocation;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable typeaheadSearch = this::onTypeaheadDebounced;
+    private final Runnable saveHistory = this::flushHistory;
     
-    private OkHttpClient httpClient;
+    private final MarkerClusterer markerClusterer = new MarkerClusterer();
+    private MarkerRegistry<Marker> markerRegistry;
+    private Marker userLocationMarker;
+    private ExecutorService clusterExecutor;
+    private int clusterRenderVersion;
+    // Renders markers for the visible area only, throttled while the camera moves
+    private ViewportRenderer viewportRenderer;
+    private int maxMarkers;
+    // Generation whose streamed answer is on screen; UI thread only
+    private long streamedGeneration = -1;
+    // Query whose results are on screen, for recording picked places; UI thread only
+    private String shownQuery;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -79,11 +181,88 @@ public class MainActivity extends AppCompatActivity {
         
         Log.d(TAG, "Views initialized successfully");
         
-        // Initialize HTTP client
-        httpClient = new OkHttpClient();
-        
-        // Initialize location helper
+        // Startup: only the map and the search UI are needed for the first frame.
+        // The HTTP client and offline store are built in the background, location
+        // starts after the first frame, and the search cache on first search.
+        startupExecutor = Executors.newFixedThreadPool(2);
+        startupScheduler = new StartupScheduler(mainHandler::post, startupExecutor);
+        httpClient = startupScheduler.add("http", StartupScheduler.Phase.BACKGROUND, () -> {
+            // Open the backend connection while map and location initialize
+            HttpTransport.get().prewarm(BACKEND_URL);
+            return HttpTransport.get().client();
+        });
+        startupScheduler.add("offline store", StartupScheduler.Phase.BACKGROUND, () -> {
+            openOfflineStore();
+            return null;
+        });
+        keywordTranslator = startupScheduler.add("keywords", StartupScheduler.Phase.BACKGROUND,
+            this::loadKeywordTranslator);
+        searchHistory = startupScheduler.add("search history", StartupScheduler.Phase.BACKGROUND,
+            this::loadSearchHistory);
+        // Memory LRU + disk tier under cacheDir
+        searchCache = startupScheduler.add("search cache", StartupScheduler.Phase.LAZY, () -> new SearchCache(
+            new File(getCacheDir(), "search_cache"),
+            SEARCH_CACHE_MEMORY_ENTRIES, SEARCH_CACHE_DISK_BYTES, SEARCH_CACHE_TTL_MS));
+        StartupScheduler.Task<Boolean> map = startupScheduler.add("map", StartupScheduler.Phase.BEFORE_FIRST_DRAW,
+            () -> initMap(savedInstanceState));
+        startupScheduler.add("search ui", StartupScheduler.Phase.BEFORE_FIRST_DRAW, () -> {
+            if (map.get()) {
+                initSearchUi();
+            }
+            return null;
+        });
+        startupScheduler.add("location", StartupScheduler.Phase.AFTER_FIRST_DRAW, () -> {
+            initLocation();
+            return null;
+        });
+        resilienceTimer = Executors.newSingleThreadScheduledExecutor();
+        chatCaller = startupScheduler.add("chat caller", StartupScheduler.Phase.LAZY, this::createChatCaller);
+        prefetchCaller = startupScheduler.add("prefetch caller", StartupScheduler.Phase.LAZY,
+            this::createPrefetchCaller);
+        searchExecutor = Executors.newSingleThreadExecutor();
+        searchPipeline = createSearchPipeline();
+        if (getResources().getBoolean(R.bool.prefetch_enabled)) {
+            prefetchScheduler = new PrefetchScheduler(new PrefetchFetcher(),
+                getResources().getInteger(R.integer.prefetch_max_concurrent),
+                getResources().getInteger(R.integer.prefetch_budget_kb) * 1024L);
+        }
+        startupScheduler.start();
+        Log.d(TAG, "Before first draw: "
+            + startupScheduler.getPhaseNanos(StartupScheduler.Phase.BEFORE_FIRST_DRAW) / 1_000_000 + " ms");
+        if (!map.get()) {
+            return;
+        }
+        runAfterFirstDraw();
+    }
+    
+    private void runAfterFirstDraw() {
+        View decor = getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean seen;
+            
+            @Override
+            public void onDraw() {
+                if (seen) {
+                    return;
+                }
+                seen = true;
+                // Draw listeners cannot be removed from inside onDraw
+                mainHandler.post(() -> {
+                    decor.getViewTreeObserver().removeOnDrawListener(this);
+                    startupScheduler.onFirstDraw();
+                    // Queued behind the after-first-draw tasks
+                    mainHandler.post(() -> Log.d(TAG, "Startup: " + startupScheduler.getSummary()));
+                });
+            }
+        });
+    }
+    
+    private void initLocation() {
         locationHelper = new LocationHelper(this);
+        if (getResources().getBoolean(R.bool.local_search_enabled)) {
+            localPlaceSearch = new LocalPlaceSearch(this, getResources().getInteger(R.integer.local_search_radius_m),
+                getResources().getInteger(R.integer.local_search_page_size));
+        }
         
         if (!locationHelper.isInitialized()) {
             Log.e(TAG, "LocationHelper failed to initialize");
@@ -92,7 +271,12 @@ public class MainActivity extends AppCompatActivity {
             Log.d(TAG, "LocationHelper initialized successfully");
         }
         
-        // Initialize map
+        Log.d(TAG, "Requesting permissions and location");
+        // Request permissions and get location
+        requestPermissionsAndGetLocation();
+    }
+    
+    private boolean initMap(Bundle savedInstanceState) {
         try {
             mapView.onCreate(savedInstanceState);
             aMap = mapView.getMap();
@@ -100,7 +284,7 @@ public class MainActivity extends AppCompatActivity {
             if (aMap == null) {
                 Log.e(TAG, "AMap is null after initialization!");
                 Toast.makeText(this, "Map initialization failed", Toast.LENGTH_LONG).show();
-                return;
+                return false;
             }
             
             Log.d(TAG, "Map initialized successfully");
@@ -108,47 +292,144 @@ public class MainActivity extends AppCompatActivity {
             // Enable location button
             aMap.setMyLocationEnabled(true);
             
+            markerRegistry = new MarkerRegistry<>(new MarkerRegistry.MarkerFactory<Marker>() {
+                @Override
+                public Marker add(MarkerRegistry.MarkerSpec spec) {
+                    Marker marker = aMap.addMarker(markerOptionsFor(spec));
+                    marker.setObject(spec.getKey());
+                    return marker;
+                }
+                
+                @Override
+                public void update(Marker marker, MarkerRegistry.MarkerSpec spec) {
+                    marker.setPosition(new LatLng(spec.getLatitude(), spec.getLongitude()));
+                    marker.setTitle(spec.getTitle());
+                    marker.setSnippet(spec.getSnippet());
+                    marker.setIcon(spec.isCluster()
+                        ? BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_ORANGE)
+                        : BitmapDescriptorFactory.defaultMarker());
+                }
+                
+                @Override
+                public void remove(Marker marker) {
+                    marker.remove();
+                }
+                
+                @Override
+                public void hide(Marker marker) {
+                    marker.setVisible(false);
+                }
+                
+                @Override
+                public void reuse(Marker marker, MarkerRegistry.MarkerSpec spec) {
+                    update(marker, spec);
+                    marker.setObject(spec.getKey());
+                    marker.setVisible(true);
+                }
+            }, getResources().getInteger(R.integer.map_recycled_markers));
+            
+            // Re-render result markers for the area in view as the camera moves and zooms
+            clusterExecutor = Executors.newSingleThreadExecutor();
+            maxMarkers = getResources().getInteger(R.integer.map_max_markers);
+            viewportRenderer = new ViewportRenderer(mainHandler::postDelayed,
+                getResources().getInteger(R.integer.map_render_throttle_ms),
+                getResources().getInteger(R.integer.map_viewport_margin_percent) / 100.0, this::renderClusters);
+            aMap.setOnCameraChangeListener(new AMap.OnCameraChangeListener() {
+                @Override
+                public void onCameraChange(CameraPosition position) {
+                    viewportRenderer.onCameraChange(visibleViewport(), position.zoom);
+                }
+                
+                @Override
+                public void onCameraChangeFinish(CameraPosition position) {
+                    viewportRenderer.onCameraChangeFinish(visibleViewport(), position.zoom);
+                }
+            });
+            aMap.setOnMarkerClickListener(marker -> {
+                MarkerRegistry.MarkerSpec spec = marker.getObject() instanceof String
+                    ? markerRegistry.get((String) marker.getObject()) : null;
+                if (spec != null && spec.isCluster()) {
+                    // Tapping a cluster zooms in until it splits
+                    aMap.animateCamera(com.amap.api.maps.CameraUpdateFactory.newLatLngZoom(marker.getPosition(),
+                        aMap.getCameraPosition().zoom + 2));
+                    return true;
+                }
+                return false;
+            });
+            // Long-press: everything found this session near that point, straight from memory
+            aMap.setOnMapLongClickListener(this::showNearbyFromSession);
+        
         } catch (Exception e) {
             Log.e(TAG, "Failed to initialize map", e);
             Toast.makeText(this, "Map initialization failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
-            return;
+            return false;
         }
-        
+        return true;
+    }
+    
+    private void initSearchUi() {
         // Setup RecyclerView
         searchResults = new ArrayList<>();
         resultsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        resultsAdapter = new ResultsAdapter(searchResults, new ResultsAdapter.OnItemClickListener() {
+        resultsAdapter = new ResultsAdapter(new ResultsAdapter.OnItemClickListener() {
             @Override
             public void onItemClick(PlaceResult result) {
                 LatLng latLng = new LatLng(result.getLatitude(), result.getLongitude());
                 aMap.moveCamera(com.amap.api.maps.CameraUpdateFactory.newLatLngZoom(latLng, 18));
+                recordSelection(result);
             }
         });
         resultsRecyclerView.setAdapter(resultsAdapter);
         
+        // Suggestions from search history on every keystroke; picking one reuses stored places
+        searchInput.setAdapter(new SuggestionAdapter(this, searchHistory, SUGGESTION_LIMIT));
+        searchInput.setOnItemClickListener((parent, view, position, id) -> {
+            SearchHistory.Entry entry = (SearchHistory.Entry) parent.getItemAtPosition(position);
+            // Filling in the text also restarted the typeahead debounce
+            mainHandler.removeCallbacks(typeaheadSearch);
+            performSearch(entry.getQuery(), SearchPipeline.Trigger.SUGGESTION);
+        });
+        
         // Setup search button
         searchButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 String query = searchInput.getText().toString().trim();
                 if (!query.isEmpty()) {
-                    performSearch(query);
+                    mainHandler.removeCallbacks(typeaheadSearch);
+                    searchInput.dismissDropDown();
+                    performSearch(query, SearchPipeline.Trigger.SUBMIT);
                 } else {
                     Toast.makeText(MainActivity.this, R.string.enter_search_term, Toast.LENGTH_SHORT).show();
                 }
             }
         });
         
-        Log.d(TAG, "Requesting permissions and location");
-        // Request permissions and get location
-        requestPermissionsAndGetLocation();
+        // Optional search-as-you-type: searches fire once typing pauses for the debounce window
+        if (getResources().getBoolean(R.bool.typeahead_enabled)) {
+            searchInput.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+                
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+                
+                @Override
+                public void afterTextChanged(Editable s) {
+                    mainHandler.removeCallbacks(typeaheadSearch);
+                    mainHandler.postDelayed(typeaheadSearch, getResources().getInteger(R.integer.typeahead_debounce_ms));
+                }
+            });
+        }
     }
     
     private void requestPermissionsAndGetLocation() {
-        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) 
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
                 != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this, 
-                new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, 
+            ActivityCompat.requestPermissions(this,
+                new String[]{Manifest.permission.ACCESS_FINE_LOCATION},
                 PERMISSION_REQUEST_CODE);
         } else {
             getCurrentLocation();
@@ -157,35 +438,45 @@ public class MainActivity extends AppCompatActivity {
     
     private void getCurrentLocation() {
         Log.d(TAG, "Getting current location...");
-        locationHelper.getCurrentLocation(new LocationHelper.LocationCallback() {
+        locationHelper.getProgressiveLocation(new LocationHelper.ProgressiveLocationCallback() {
             @Override
-            public void onLocationSuccess(AMapLocation location) {
+            public void onProvisionalLocation(AMapLocation location, long ageMillis) {
+                // Good enough to center the map and key searches; the precise fix follows
                 currentLocation = location;
-                Log.d(TAG, "Location obtained: " + location.getLatitude() + ", " + location.getLongitude());
-                
+                recordLocationFix();
+                Log.d(TAG, "Provisional location: " + location.getLatitude() + ", " + location.getLongitude()
+                    + " (" + ageMillis + " ms old, " + location.getAccuracy() + " m)");
+                runOnUiThread(() -> showUserLocation(location, true));
+            }
+            
+            @Override
+            public void onLocationRefined(AMapLocation location, boolean movedSignificantly) {
+                currentLocation = location;
+                recordLocationFix();
+                Log.d(TAG, "Refined location: " + location.getLatitude() + ", " + location.getLongitude()
+                    + (movedSignificantly ? " (moved)" : ""));
                 runOnUiThread(() -> {
-                    try {
-                        // Move map to current location
-                        LatLng latLng = new LatLng(location.getLatitude(), location.getLongitude());
-                        aMap.moveCamera(com.amap.api.maps.CameraUpdateFactory.newLatLngZoom(latLng, 15));
-                        
-                        // Add current location marker
-                        aMap.addMarker(new MarkerOptions()
-                            .position(latLng)
-                            .title(getString(R.string.your_location))
-                            .snippet(location.getAddress()));
-                        
-                        Toast.makeText(MainActivity.this, "Location obtained successfully", Toast.LENGTH_SHORT).show();
-                    } catch (Exception e) {
-                        Log.e(TAG, "Failed to update map with location", e);
-                        Toast.makeText(MainActivity.this, "Failed to update map: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                    showUserLocation(location, movedSignificantly);
+                    if (movedSignificantly) {
+                        refreshResultDistances();
+                    }
+                    if (!trackingWanted) {
+                        trackingWanted = true;
+                        startTracking();
+                        schedulePrefetch(location);
                     }
                 });
             }
             
+            @Override
+            public void onLocationSuccess(AMapLocation location) {
+                onLocationRefined(location, true);
+            }
+            
             @Override
             public void onLocationFailed(String error) {
                 Log.e(TAG, "Location failed: " + error);
+                searchMetrics.increment(SearchMetrics.Counter.LOCATION_FAILED);
                 runOnUiThread(() -> {
                     Toast.makeText(MainActivity.this, "Failed to get location: " + error, Toast.LENGTH_LONG).show();
                 });
@@ -193,75 +484,852 @@ public class MainActivity extends AppCompatActivity {
         });
     }
     
-    private void performSearch(String query) {
-        // First, send query to AI chatbot backend
-        sendToChatbot(query);
+    // Time to the first usable fix, provisional or precise
+    private synchronized void recordLocationFix() {
+        if (!locationFixRecorded) {
+            locationFixRecorded = true;
+            searchMetrics.record(SearchMetrics.Stage.LOCATION_FIX, System.nanoTime() - createdNanos);
+        }
     }
     
-    private void sendToChatbot(String query) {
-        String jsonBody = "{\"message\": \"" + query + "\"}";
-        RequestBody body = RequestBody.create(jsonBody, MediaType.get("application/json; charset=utf-8"));
-        
-        Request request = new Request.Builder()
-            .url(BACKEND_URL)
-            .post(body)
-            .build();
-        
-        httpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NonNull Call call, @NonNull IOException e) {
-                Log.e(TAG, "AI connection failed", e);
-                runOnUiThread(() -> Toast.makeText(MainActivity.this, "Failed to connect to AI", Toast.LENGTH_LONG).show());
-            }
-            
-            @Override
-            public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    String responseBody = response.body().string();
-                    List<PlaceResult> places = parseAIResponse(responseBody);
-                    runOnUiThread(() -> showSearchResults(places));
-                } else {
-                    runOnUiThread(() -> Toast.makeText(MainActivity.this, "AI service error", Toast.LENGTH_LONG).show());
+    private void startTracking() {
+        locationHelper.startTracking(getResources().getInteger(R.integer.tracking_min_movement_m),
+            getResources().getInteger(R.integer.tracking_refresh_distance_m), new LocationHelper.TrackingCallback() {
+                @Override
+                public void onLocationSuccess(AMapLocation location) {
+                    currentLocation = location;
+                    runOnUiThread(() -> showUserLocation(location, false));
+                }
+                
+                @Override
+                public void onRefreshNeeded(AMapLocation location) {
+                    currentLocation = location;
+                    Log.d(TAG, "Moved past refresh distance: " + location.getLatitude() + ", " + location.getLongitude());
+                    runOnUiThread(() -> {
+                        showUserLocation(location, false);
+                        onUserMoved();
+                    });
+                }
+                
+                @Override
+                public void onLocationFailed(String error) {
+                    Log.e(TAG, "Tracking failed: " + error);
                 }
+            });
+    }
+    
+    // Refresh hook for everything that depends on where the user is
+    private void onUserMoved() {
+        refreshResultDistances();
+        AMapLocation location = currentLocation;
+        if (location != null) {
+            schedulePrefetch(location);
+        }
+    }
+    
+    // Warms the cache for the user's recent queries and the common categories
+    // around this location, unless the network is metered or Data Saver is on
+    private void schedulePrefetch(AMapLocation location) {
+        if (prefetchScheduler == null) {
+            return;
+        }
+        if (!canPrefetch()) {
+            Log.d(TAG, "Prefetch skipped on metered or restricted network");
+            return;
+        }
+        prefetchLocation = location;
+        List<String> categories = Arrays.asList(getResources().getStringArray(R.array.prefetch_categories));
+        int recentLimit = getResources().getInteger(R.integer.prefetch_recent_queries);
+        searchExecutor.execute(() -> {
+            List<String> queries = new ArrayList<>(searchHistory.get().recent(recentLimit));
+            queries.addAll(categories);
+            prefetchScheduler.schedule(queries);
+            Log.d(TAG, "Prefetch scheduled: " + prefetchScheduler.getInFlight() + " running, "
+                + prefetchScheduler.getQueued() + " queued, " + prefetchScheduler.getBytesUsed() + " bytes used");
+        });
+    }
+    
+    private boolean canPrefetch() {
+        // Leave a struggling backend alone
+        if (chatCaller.isDone() && chatCaller.get().getBreaker().getState() != CircuitBreaker.State.CLOSED) {
+            return false;
+        }
+        ConnectivityManager connectivity = getSystemService(ConnectivityManager.class);
+        if (connectivity == null) {
+            return false;
+        }
+        if (connectivity.isActiveNetworkMetered() && !getResources().getBoolean(R.bool.prefetch_on_metered)) {
+            return false;
+        }
+        return connectivity.getRestrictBackgroundStatus() != ConnectivityManager.RESTRICT_BACKGROUND_STATUS_ENABLED;
+    }
+    
+    // A user search has finished one way or another; prefetch may use the network again.
+    // Posted to searchExecutor because resuming checks the disk cache.
+    private void resumePrefetch() {
+        if (prefetchScheduler != null && !searchExecutor.isShutdown()) {
+            searchExecutor.execute(prefetchScheduler::resume);
+        }
+    }
+    
+    // Background startup task. Recent queries kept in preferences by older versions
+    // are moved into the history once.
+    private SearchHistory loadSearchHistory() {
+        SearchHistory history = new SearchHistory(new File(getFilesDir(), "search_history.bin"),
+            SearchHistory.DEFAULT_MAX_ENTRIES);
+        history.load();
+        SharedPreferences prefs = getSharedPreferences(SEARCH_PREFS, MODE_PRIVATE);
+        String legacy = prefs.getString(PREF_RECENT_QUERIES, null);
+        if (legacy != null) {
+            List<String> queries = Arrays.asList(legacy.split("\n"));
+            try {
+                // Stored most recent first
+                for (int i = queries.size() - 1; i >= 0; i--) {
+                    if (history.get(queries.get(i)) == null) {
+                        history.record(queries.get(i));
+                    }
+                }
+                history.flush();
+                prefs.edit().remove(PREF_RECENT_QUERIES).apply();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to migrate recent queries", e);
+            }
+        }
+        Log.d(TAG, "Search history loaded with " + history.size() + " queries");
+        return history;
+    }
+    
+    // Off the search path: the history is updated on searchExecutor and the file
+    // written once changes stop coming in for HISTORY_SAVE_DELAY_MS
+    private void recordSearch(String query) {
+        if (searchExecutor.isShutdown()) {
+            return;
+        }
+        searchExecutor.execute(() -> {
+            searchHistory.get().record(query);
+            scheduleHistorySave();
+        });
+    }
+    
+    private void recordSelection(PlaceResult place) {
+        String query = shownQuery;
+        if (query == null || searchExecutor.isShutdown()) {
+            return;
+        }
+        searchExecutor.execute(() -> {
+            searchHistory.get().recordSelection(query, place);
+            scheduleHistorySave();
+        });
+    }
+    
+    private void scheduleHistorySave() {
+        mainHandler.removeCallbacks(saveHistory);
+        mainHandler.postDelayed(saveHistory, HISTORY_SAVE_DELAY_MS);
+    }
+    
+    // Posted to searchExecutor, where the history is changed
+    private void flushHistory() {
+        mainHandler.removeCallbacks(saveHistory);
+        if (searchHistory == null || !searchHistory.isDone() || searchExecutor.isShutdown()) {
+            return;
+        }
+        searchExecutor.execute(() -> {
+            try {
+                searchHistory.get().flush();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to save search history", e);
             }
         });
     }
     
-    private List<PlaceResult> parseAIResponse(String response) {
-        List<PlaceResult> results = new ArrayList<>();
+    private void showUserLocation(AMapLocation location, boolean moveCamera) {
         try {
-            JSONObject json = new JSONObject(response);
-            JSONArray arr = json.getJSONArray("results");
-            for (int i = 0; i < arr.length(); i++) {
-                JSONObject obj = arr.getJSONObject(i);
-                String name = obj.getString("name");
-                String address = obj.getString("address");
-                double lat = obj.getDouble("latitude");
-                double lng = obj.getDouble("longitude");
-                results.add(new PlaceResult(name, address, lat, lng, address));
+            LatLng latLng = new LatLng(location.getLatitude(), location.getLongitude());
+            if (moveCamera) {
+                aMap.moveCamera(com.amap.api.maps.CameraUpdateFactory.newLatLngZoom(latLng, 15));
+            }
+            
+            // Add or move the current location marker; it is not part of the result set
+            if (userLocationMarker == null) {
+                userLocationMarker = aMap.addMarker(new MarkerOptions()
+                    .position(latLng)
+                    .title(getString(R.string.your_location))
+                    .snippet(location.getAddress()));
+                Toast.makeText(MainActivity.this, "Location obtained successfully", Toast.LENGTH_SHORT).show();
+            } else {
+                userLocationMarker.setPosition(latLng);
+                userLocationMarker.setSnippet(location.getAddress());
             }
         } catch (Exception e) {
+            Log.e(TAG, "Failed to update map with location", e);
+            Toast.makeText(MainActivity.this, "Failed to update map: " + e.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+    
+    // Re-ranks the results on screen against the latest position without a new search
+    private void refreshResultDistances() {
+        if (searchResults.isEmpty()) {
+            return;
+        }
+        List<PlaceResult> shown = new ArrayList<>(searchResults);
+        // Ranked from the backend order: the shown order already has one ranking folded in
+        List<PlaceResult> backendOrder = new ArrayList<>(shownBackendOrder);
+        searchExecutor.execute(() -> {
+            List<PlaceResult> ranked = rankByProximity(backendOrder);
+            runOnUiThread(() -> {
+                // Skip if a search replaced the list in the meantime
+                if (!isDestroyed() && searchResults.equals(shown)) {
+                    searchResults.clear();
+                    searchResults.addAll(ranked);
+                    resultsAdapter.updateResults(searchResults);
+                }
+            });
+        });
+    }
+    
+    private void onTypeaheadDebounced() {
+        String query = searchInput.getText().toString().trim();
+        if (query.length() >= getResources().getInteger(R.integer.typeahead_min_chars)) {
+            performSearch(query, SearchPipeline.Trigger.TYPEAHEAD);
+        }
+    }
+    
+    // Only searches the user submitted or picked go into the history; typeahead
+    // fires on fragments like "dum". A picked suggestion may be answered from the
+    // places stored for it before any network call.
+    private void performSearch(String query, SearchPipeline.Trigger trigger) {
+        if (trigger.isSubmitted()) {
+            // Even if it is coalesced into the same query typeahead already started
+            recordSearch(query);
+        }
+        long generation = searchCoordinator.begin(query);
+        if (generation < 0) {
+            Log.d(TAG, "Coalesced duplicate search: " + query);
+            return;
+        }
+        shownQuery = query;
+        searchMetrics.start(generation);
+        if (prefetchScheduler != null) {
+            // Background fetches give way until this search is done
+            prefetchScheduler.yieldToUser();
+        }
+        SearchPipeline.Search search = searchPipeline.start(generation, query, trigger);
+        // The next query (or onDestroy) cancels every stage of this one
+        searchCoordinator.attach(generation, search.getToken());
+    }
+    
+    // location -> fetch -> parse -> rank -> render, each stage on its own bounded executor
+    private SearchPipeline createSearchPipeline() {
+        int queue = getResources().getInteger(R.integer.search_stage_queue);
+        fetchExecutor = SearchPipeline.newStageExecutor("search-fetch", 1, queue);
+        parseExecutor = SearchPipeline.newStageExecutor("search-parse", 1, queue);
+        rankExecutor = SearchPipeline.newStageExecutor("search-rank", 1, queue);
+        return new SearchPipeline(fetchExecutor, parseExecutor, rankExecutor, mainHandler::post,
+            this::locateSearch, new ChatFetchStage(), this::parseSearch, this::rankSearch, new SearchRenderStage(),
+            searchMetrics);
+    }
+    
+    // Pins the position a search is cached and ranked against
+    private void locateSearch(SearchPipeline.Search search) {
+        AMapLocation location = currentLocation;
+        if (location != null) {
+            search.setLocation(location.getLatitude(), location.getLongitude());
+        } else {
+            searchMetrics.increment(SearchMetrics.Counter.SEARCHES_WITHOUT_LOCATION);
+        }
+    }
+    
+    private static String cacheKey(SearchPipeline.Search search) {
+        return search.hasLocation()
+            ? SearchCache.key(search.getQuery(), search.getLatitude(), search.getLongitude())
+            : SearchCache.key(search.getQuery());
+    }
+    
+    // The cache first (a memory miss reads from disk), then places stored for a
+    // picked suggestion, then AMap's POI search for phrases the device can
+    // translate, then the AI chatbot backend. The offline store answers when
+    // /chat fails.
+    private class ChatFetchStage implements SearchPipeline.FetchStage {
+        @Override
+        public void fetch(SearchPipeline.Search search, SearchPipeline.FetchCallback callback) {
+            String query = search.getQuery();
+            String cacheKey = cacheKey(search);
+            SearchCache cache = searchCache.get();
+            List<PlaceResult> cached = cache.get(cacheKey);
+            searchMetrics.stage(search.getGeneration(), SearchMetrics.Stage.CACHE);
+            Log.d(TAG, "Search cache " + (cached != null ? "hit" : "miss") + " for " + cacheKey
+                + " (" + cache.getStats() + ")");
+            if (cached != null) {
+                searchMetrics.increment(SearchMetrics.Counter.CACHE_HITS);
+                sessionIndex.addAll(cached);
+                callback.onFetched(SearchPipeline.Fetched.places(SearchPipeline.Origin.CACHE, cached));
+                return;
+            }
+            List<PlaceResult> stored = search.isFromHistory() ? storedPlaces(query) : null;
+            if (stored != null && !stored.isEmpty()) {
+                Log.d(TAG, "Answered from history: " + query);
+                searchMetrics.increment(SearchMetrics.Counter.HISTORY_ANSWERS);
+                sessionIndex.addAll(stored);
+                callback.onFetched(SearchPipeline.Fetched.places(SearchPipeline.Origin.HISTORY, stored));
+                return;
+            }
+            // Phrases the device can translate skip the AI backend entirely
+            String keyword = keywordTranslator.get().translate(query);
+            if (keyword != null && search.hasLocation() && localPlaceSearch != null) {
+                searchLocally(search, keyword, callback);
+            } else {
+                sendToChatbot(search, callback);
+            }
+        }
+        
+        // An empty or failed POI search falls back to /chat. LocalPlaceSearch calls
+        // back on the main thread, so the fallback goes back to the fetch executor:
+        // the chat caller may still have to be built.
+        private void searchLocally(SearchPipeline.Search search, String keyword,
+                                   SearchPipeline.FetchCallback callback) {
+            String query = search.getQuery();
+            Log.d(TAG, "Local search for " + query + " as " + keyword);
+            search.getToken().onCancel(localPlaceSearch.search(keyword, search.getLatitude(), search.getLongitude(),
+                new LocalPlaceSearch.Callback() {
+                    @Override
+                    public void onResults(List<PlaceResult> places) {
+                        if (search.isCancelled()) {
+                            return;
+                        }
+                        if (places.isEmpty()) {
+                            Log.d(TAG, "No local results, asking the backend: " + query);
+                            callback.continueFetch(() -> sendToChatbot(search, callback));
+                            return;
+                        }
+                        searchMetrics.stage(search.getGeneration(), SearchMetrics.Stage.NETWORK);
+                        searchMetrics.increment(SearchMetrics.Counter.LOCAL_ANSWERS);
+                        sessionIndex.addAll(places);
+                        searchExecutor.execute(() -> {
+                            searchCache.get().put(cacheKey(search), places);
+                            if (search.isSubmitted()) {
+                                storeOffline(query, places);
+                            }
+                        });
+                        callback.onFetched(SearchPipeline.Fetched.places(SearchPipeline.Origin.LOCAL, places));
+                    }
+                    
+                    @Override
+                    public void onError(String error) {
+                        Log.e(TAG, "Local search failed, asking the backend: " + error);
+                        callback.continueFetch(() -> sendToChatbot(search, callback));
+                    }
+                }));
+        }
+        
+        private void sendToChatbot(SearchPipeline.Search search, SearchPipeline.FetchCallback callback) {
+            RequestBody body = RequestBody.create(ChatRequest.body(search.getQuery()),
+                MediaType.get(ChatRequest.MEDIA_TYPE));
+            
+            Request request = new Request.Builder()
+                .url(BACKEND_URL)
+                .header("Accept", ChatRequest.ACCEPT)
+                .post(body)
+                .build();
+            
+            // Cancelling the search cancels every attempt; no callback follows then
+            long sentNanos = System.nanoTime();
+            search.getToken().onCancel(chatCaller.get().enqueue(request, new ResilientCaller.Callback() {
+                @Override
+                public void onFailure(ResilientCaller.Failure failure, IOException e) {
+                    Log.e(TAG, "AI request failed: " + failure, e);
+                    searchMetrics.increment(counterFor(failure));
+                    // Whatever earlier searches stored beats an error message
+                    searchExecutor.execute(() -> answerOffline(search, callback));
+                }
+                
+                @Override
+                public void onResponse(Call call, Response response) {
+                    searchMetrics.stage(search.getGeneration(), SearchMetrics.Stage.NETWORK);
+                    searchMetrics.record(SearchMetrics.Stage.CHAT, System.nanoTime() - sentNanos);
+                    if (!response.isSuccessful()) {
+                        response.close();
+                        searchMetrics.increment(SearchMetrics.Counter.SERVICE_ERROR);
+                        callback.onFailed(new IOException("AI service error"));
+                        return;
+                    }
+                    // Decoded on the parse stage; the deadline still bounds reading the body
+                    callback.onFetched(SearchPipeline.Fetched.body(response.body().charStream(),
+                        response.header("Content-Type"), response));
+                }
+            }));
+        }
+    }
+    
+    // Runs on the parse executor. Only a complete, uncancelled answer is cached
+    // and stored offline: a cancelled call leaves a truncated body behind.
+    private List<PlaceResult> parseSearch(SearchPipeline.Search search, SearchPipeline.Fetched fetched,
+                                          PlaceResultParser.Listener progress) {
+        String query = search.getQuery();
+        String contentType = fetched.getContentType();
+        List<PlaceResult> places = new ArrayList<>();
+        // A streamed answer is drawn batch by batch while the backend is still generating
+        boolean complete = parseAIResponse(query, fetched.getBody(), contentType,
+            PlaceStreamParser.isStreaming(contentType) ? progress : null, places);
+        if (complete && !places.isEmpty() && !search.isCancelled()) {
+            searchCache.get().put(cacheKey(search), places);
+            if (search.isSubmitted()) {
+                searchExecutor.execute(() -> storeOffline(query, places));
+            }
+        }
+        sessionIndex.addAll(places);
+        return places;
+    }
+    
+    // Runs on the rank executor; the order is unchanged for a search without a fix
+    private List<PlaceResult> rankSearch(SearchPipeline.Search search, List<PlaceResult> places) {
+        long generation = search.getGeneration();
+        backendOrders.put(generation, places);
+        search.getToken().onCancel(() -> backendOrders.remove(generation));
+        if (!search.hasLocation() || places.isEmpty()) {
+            return places;
+        }
+        return ProximityRanker.rank(places, search.getLatitude(), search.getLongitude(), RANKING_MODE);
+    }
+    
+    // render and onFailed run on the main thread, and never for a cancelled
+    // search. onProgress runs on the parse executor: no UI work there, it only
+    // hands places to the batcher, which posts to the main thread.
+    private class SearchRenderStage implements SearchPipeline.RenderStage {
+        @Override
+        public void onProgress(SearchPipeline.Search search, PlaceResult place) {
+            long generation = search.getGeneration();
+            ResultBatcher batcher = streams.get(generation);
+            if (batcher == null) {
+                ResultBatcher created = new ResultBatcher(mainHandler::postDelayed, STREAM_BATCH_INTERVAL_MS,
+                    STREAM_BATCH_MAX, (batch, first) -> showStreamedResults(generation, batch, first));
+                streams.put(generation, created);
+                search.getToken().onCancel(() -> {
+                    streams.remove(generation);
+                    created.cancel();
+                });
+                batcher = created;
+            }
+            batcher.add(place);
+        }
+        
+        @Override
+        public void render(SearchPipeline.Search search, List<PlaceResult> places, SearchPipeline.Origin origin) {
+            long generation = search.getGeneration();
+            searchCoordinator.finish(generation);
+            if (origin == SearchPipeline.Origin.OFFLINE) {
+                Toast.makeText(MainActivity.this, "Offline: showing saved places", Toast.LENGTH_SHORT).show();
+            }
+            List<PlaceResult> backendOrder = backendOrders.remove(generation);
+            List<PlaceResult> unranked = backendOrder != null ? backendOrder : places;
+            ResultBatcher batcher = streams.remove(generation);
+            if (batcher != null) {
+                // The ranked list replaces the arrival-order one after the last batch
+                batcher.finish(() -> showSearchResults(generation, places, unranked));
+            } else {
+                showSearchResults(generation, places, unranked);
+            }
+        }
+        
+        @Override
+        public void onFailed(SearchPipeline.Search search, Exception error) {
+            searchCoordinator.finish(search.getGeneration());
+            ResultBatcher batcher = streams.remove(search.getGeneration());
+            if (batcher != null) {
+                batcher.cancel();
+            }
+            resumePrefetch();
+            Toast.makeText(MainActivity.this, error.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+    
+    // The counter a /chat failure is reported under
+    private static SearchMetrics.Counter counterFor(ResilientCaller.Failure failure) {
+        switch (failure) {
+            case CIRCUIT_OPEN:
+                return SearchMetrics.Counter.CIRCUIT_OPEN;
+            case DEADLINE:
+                return SearchMetrics.Counter.DEADLINE_EXCEEDED;
+            case SERVER_ERROR:
+                return SearchMetrics.Counter.SERVICE_ERROR;
+            default:
+                return SearchMetrics.Counter.CONNECT_FAILED;
+        }
+    }
+    
+    private ResilientCaller createChatCaller() {
+        int hedgeMinMillis = getResources().getInteger(R.integer.chat_hedge_min_ms);
+        boolean hedging = getResources().getBoolean(R.bool.chat_hedge_enabled);
+        return new ResilientCaller(httpClient.get(),
+            new CircuitBreaker(getResources().getInteger(R.integer.chat_breaker_failures),
+                getResources().getInteger(R.integer.chat_breaker_open_ms)),
+            resilienceTimer,
+            getResources().getInteger(R.integer.chat_deadline_ms),
+            getResources().getInteger(R.integer.chat_max_attempts),
+            getResources().getInteger(R.integer.chat_backoff_ms),
+            getResources().getInteger(R.integer.chat_max_backoff_ms),
+            () -> hedging ? hedgeDelayMillis(hedgeMinMillis) : 0);
+    }
+    
+    // Shares the chat caller's breaker: prefetches stop while it is open and their
+    // failures count towards opening it. A prefetch is not worth a retry or a hedge.
+    private ResilientCaller createPrefetchCaller() {
+        return new ResilientCaller(httpClient.get(), chatCaller.get().getBreaker(), resilienceTimer,
+            getResources().getInteger(R.integer.chat_deadline_ms), 1, 0, 0, null);
+    }
+    
+    // Hedge once the first request has waited longer than 95% of recent /chat
+    // requests did. Not NETWORK: on-device POI answers there are far faster.
+    private long hedgeDelayMillis(int minMillis) {
+        LatencyHistogram chat = searchMetrics.histogram(SearchMetrics.Stage.CHAT);
+        if (chat.getCount() < HEDGE_MIN_SAMPLES) {
+            return 0;
+        }
+        return Math.max(minMillis, chat.percentileMicros(95) / 1000);
+    }
+    
+    // Adds the places decoded to results; progress, if given, sees each one as
+    // soon as it is decoded. False if the body broke off or was malformed.
+    private boolean parseAIResponse(String query, Reader response, String contentType,
+                                    PlaceResultParser.Listener progress, List<PlaceResult> results) {
+        List<String> keywords = new ArrayList<>();
+        boolean complete = true;
+        try {
+            // Decode straight off the response stream; places parsed before an error are kept
+            PlaceStreamParser.parse(response, contentType, new PlaceResultParser.Listener() {
+                @Override
+                public void onPlace(PlaceResult place) {
+                    results.add(place);
+                    if (progress != null) {
+                        progress.onPlace(place);
+                    }
+                }
+                
+                @Override
+                public void onKeywords(List<String> found) {
+                    keywords.addAll(found);
+                }
+            });
+        } catch (IOException e) {
             Log.e(TAG, "Failed to parse AI response", e);
+            searchMetrics.increment(SearchMetrics.Counter.PARSE_ERROR);
+            complete = false;
+        }
+        // A keyword that found places is worth answering locally next time
+        if (!keywords.isEmpty() && !results.isEmpty()) {
+            learnKeyword(query, keywords.get(0));
         }
-        return results;
+        return complete;
     }
     
-    private void showSearchResults(List<PlaceResult> places) {
-        searchResults.clear();
-        aMap.clear();
-        for (PlaceResult place : places) {
-            searchResults.add(place);
-            LatLng latLng = new LatLng(place.getLatitude(), place.getLongitude());
-            aMap.addMarker(new MarkerOptions()
-                .position(latLng)
-                .title(place.getName())
-                .snippet(place.getAddress()));
+    private void learnKeyword(String query, String keyword) {
+        try {
+            if (keywordTranslator.get().learn(query, keyword)) {
+                searchMetrics.increment(SearchMetrics.Counter.KEYWORDS_LEARNED);
+                Log.d(TAG, "Learned keyword " + keyword + " for " + query);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save learned keyword", e);
         }
+    }
+    
+    // Bundled seed table plus whatever the backend taught earlier sessions
+    private KeywordTranslator loadKeywordTranslator() {
+        KeywordTranslator translator = new KeywordTranslator(new File(getFilesDir(), "learned_keywords.tsv"));
+        try (Reader seed = new InputStreamReader(getResources().openRawResource(R.raw.keyword_seed),
+                StandardCharsets.UTF_8)) {
+            translator.load(seed);
+            translator.loadLearned();
+            Log.d(TAG, "Keyword table loaded with " + translator.size() + " phrases");
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to load keyword table", e);
+        }
+        return translator;
+    }
+    
+    private void openOfflineStore() {
+        try {
+            offlineStore = new OfflinePlaceStore(new File(getFilesDir(), "offline_places.bin"),
+                OFFLINE_STORE_BYTES, OFFLINE_STORE_RECORDS);
+            Log.d(TAG, "Offline store opened with " + offlineStore.size() + " places");
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open offline store", e);
+        }
+    }
+    
+    // Runs on searchExecutor. Only for queries the user submitted or picked (and
+    // prefetches): a typeahead fragment like "caf" would be stored as a query term.
+    private void storeOffline(String query, List<PlaceResult> places) {
+        if (offlineStore == null) {
+            return;
+        }
+        AMapLocation location = currentLocation;
+        try {
+            offlineStore.putAll(query, places, location != null ? location.getLatitude() : Double.NaN,
+                location != null ? location.getLongitude() : Double.NaN);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to store places offline", e);
+        }
+    }
+    
+    // Places picked from this query before come first, then whatever the offline
+    // store holds for it
+    private List<PlaceResult> storedPlaces(String query) {
+        SearchHistory.Entry entry = searchHistory.get().get(query);
+        Map<Long, PlaceResult> stored = new LinkedHashMap<>();
+        if (entry != null) {
+            for (PlaceResult place : entry.getPlaces()) {
+                stored.put(place.getId(), place);
+            }
+        }
+        if (offlineStore != null) {
+            for (PlaceResult place : offlineStore.search(query, OFFLINE_RESULT_LIMIT)) {
+                stored.putIfAbsent(place.getId(), place);
+            }
+        }
+        return new ArrayList<>(stored.values());
+    }
+    
+    // Runs on searchExecutor when the backend is unreachable
+    private void answerOffline(SearchPipeline.Search search, SearchPipeline.FetchCallback callback) {
+        String query = search.getQuery();
+        List<PlaceResult> places = offlineStore != null
+            ? offlineStore.search(query, OFFLINE_RESULT_LIMIT) : new ArrayList<>();
+        if (places.isEmpty()) {
+            callback.onFailed(new IOException("Failed to connect to AI"));
+            return;
+        }
+        Log.d(TAG, "Answered offline with " + places.size() + " stored places: " + query);
+        searchMetrics.increment(SearchMetrics.Counter.OFFLINE_ANSWERS);
+        callback.onFetched(SearchPipeline.Fetched.places(SearchPipeline.Origin.OFFLINE, places));
+    }
+    
+    // Fetches a prefetch query like sendToChatbot but off the user's critical path:
+    // results go into the search cache under the prefetch location's key, the
+    // offline store and the session index, and nothing is shown
+    private class PrefetchFetcher implements PrefetchScheduler.Fetcher {
+        @Override
+        public boolean isWarm(String query) {
+            return searchCache.get().get(prefetchKey(query)) != null;
+        }
+        
+        @Override
+        public SearchCoordinator.Cancellable fetch(String query, PrefetchScheduler.Callback callback) {
+            String cacheKey = prefetchKey(query);
+            Request request = new Request.Builder()
+                .url(BACKEND_URL)
+                .post(RequestBody.create(ChatRequest.body(query), MediaType.get(ChatRequest.MEDIA_TYPE)))
+                .build();
+            // Refused at once while the breaker is open; the deadline also bounds reading the body
+            return prefetchCaller.get().enqueue(request, new ResilientCaller.Callback() {
+                @Override
+                public void onFailure(ResilientCaller.Failure failure, IOException e) {
+                    Log.d(TAG, "Prefetch failed (" + failure + "): " + query, e);
+                    callback.onFailed();
+                }
+                
+                @Override
+                public void onResponse(Call call, Response response) {
+                    byte[] bytes;
+                    String contentType = response.header("Content-Type");
+                    try (Response r = response) {
+                        if (!r.isSuccessful()) {
+                            callback.onFailed();
+                            return;
+                        }
+                        bytes = r.body().bytes();
+                    } catch (IOException e) {
+                        // Thrown from here OkHttp would not report it, and the slot would never free up
+                        callback.onFailed();
+                        return;
+                    }
+                    Reader body = new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8);
+                    List<PlaceResult> places = new ArrayList<>();
+                    parseAIResponse(query, body, contentType, null, places);
+                    if (!places.isEmpty() && !call.isCanceled()) {
+                        searchCache.get().put(cacheKey, places);
+                        sessionIndex.addAll(places);
+                        searchExecutor.execute(() -> storeOffline(query, places));
+                    }
+                    searchMetrics.increment(SearchMetrics.Counter.PREFETCHES);
+                    Log.d(TAG, "Prefetched " + places.size() + " places (" + bytes.length + " bytes): " + query);
+                    callback.onComplete(bytes.length);
+                }
+            });
+        }
+        
+        private String prefetchKey(String query) {
+            AMapLocation location = prefetchLocation;
+            return location != null
+                ? SearchCache.key(query, location.getLatitude(), location.getLongitude())
+                : SearchCache.key(query);
+        }
+    }
+    
+    private void showNearbyFromSession(LatLng center) {
+        List<PlaceResult> nearby = sessionIndex.nearest(center.latitude, center.longitude, SESSION_NEARBY_LIMIT);
+        if (nearby.isEmpty()) {
+            return;
+        }
+        long generation = searchCoordinator.begin("session@" + center.latitude + "," + center.longitude);
+        if (generation < 0) {
+            return;
+        }
+        searchCoordinator.finish(generation);
+        shownQuery = null;
+        Toast.makeText(this, "Showing " + nearby.size() + " places found this session", Toast.LENGTH_SHORT).show();
+        showSearchResults(generation, rankByProximity(nearby), nearby);
+    }
+    
+    // Runs on the calling background thread; the result set is unchanged until we have a fix
+    private List<PlaceResult> rankByProximity(List<PlaceResult> places) {
+        AMapLocation location = currentLocation;
+        if (location == null || places.isEmpty()) {
+            return places;
+        }
+        return ProximityRanker.rank(places, location.getLatitude(), location.getLongitude(), RANKING_MODE);
+    }
+    
+    // backendOrder is places before ranking, for re-ranking when the user moves
+    private void showSearchResults(long generation, List<PlaceResult> places, List<PlaceResult> backendOrder) {
+        // A newer query has started since this one was issued; drop the stale results
+        if (!searchCoordinator.isCurrent(generation)) {
+            searchMetrics.abandon(generation);
+            return;
+        }
+        shownBackendOrder = backendOrder;
+        searchResults.clear();
+        searchResults.addAll(places);
         resultsAdapter.updateResults(searchResults);
+        
         if (!places.isEmpty()) {
-            LatLng first = new LatLng(places.get(0).getLatitude(), places.get(0).getLongitude());
-            aMap.moveCamera(com.amap.api.maps.CameraUpdateFactory.newLatLngZoom(first, 15));
+            fitCameraTo(places);
+        }
+        // Projected on clusterExecutor, ahead of the render the invalidate queues there
+        clusterExecutor.execute(() -> markerClusterer.setPlaces(places));
+        viewportRenderer.invalidate(visibleViewport(), aMap.getCameraPosition().zoom);
+        
+        searchMetrics.stage(generation, SearchMetrics.Stage.RENDER);
+        if (streamedGeneration != generation) {
+            // Single-shot answers: the first marker appears with all the others
+            searchMetrics.mark(generation, SearchMetrics.Stage.FIRST_RESULT);
+        }
+        searchMetrics.finish(generation);
+        long completed = searchMetrics.histogram(SearchMetrics.Stage.TOTAL).getCount();
+        if (completed > 0 && completed % METRICS_LOG_EVERY == 0) {
+            Log.d(TAG, "Search latency:\n" + searchMetrics.dump());
+        }
+        resumePrefetch();
+    }
+    
+    // Appends one batch of a streamed answer, in arrival order
+    private void showStreamedResults(long generation, List<PlaceResult> batch, boolean first) {
+        if (!searchCoordinator.isCurrent(generation)) {
+            return;
+        }
+        if (first) {
+            streamedGeneration = generation;
+            searchMetrics.mark(generation, SearchMetrics.Stage.FIRST_RESULT);
+            searchResults.clear();
+            shownBackendOrder = new ArrayList<>();
+            fitCameraTo(batch);
+        }
+        searchResults.addAll(batch);
+        shownBackendOrder.addAll(batch);
+        resultsAdapter.updateResults(searchResults);
+        // Only the new batch is projected; earlier ones keep their cells
+        clusterExecutor.execute(first
+            ? () -> markerClusterer.setPlaces(batch)
+            : () -> markerClusterer.addPlaces(batch));
+        viewportRenderer.invalidate(visibleViewport(), aMap.getCameraPosition().zoom);
+    }
+    
+    // Frames the top results rather than jumping to the first one
+    private void fitCameraTo(List<PlaceResult> places) {
+        Viewport bounds = Viewport.around(places, getResources().getInteger(R.integer.map_fit_results));
+        if (bounds.isPoint()) {
+            LatLng latLng = new LatLng(bounds.getSouth(), bounds.getWest());
+            aMap.moveCamera(com.amap.api.maps.CameraUpdateFactory.newLatLngZoom(latLng, 15));
+            return;
         }
+        LatLngBounds latLngBounds = new LatLngBounds(new LatLng(bounds.getSouth(), bounds.getWest()),
+            new LatLng(bounds.getNorth(), bounds.getEast()));
+        aMap.moveCamera(com.amap.api.maps.CameraUpdateFactory.newLatLngBounds(latLngBounds, CAMERA_FIT_PADDING_PX));
+    }
+    
+    private Viewport visibleViewport() {
+        LatLngBounds bounds = aMap.getProjection().getVisibleRegion().latLngBounds;
+        return new Viewport(bounds.southwest.latitude, bounds.southwest.longitude, bounds.northeast.latitude,
+            bounds.northeast.longitude);
+    }
+    
+    // Clusters are computed and cut down to the area on clusterExecutor; only the
+    // markers for that area are added on the UI thread
+    private void renderClusters(Viewport area, float zoom) {
+        if (isDestroyed()) {
+            return;
+        }
+        int version = ++clusterRenderVersion;
+        clusterExecutor.execute(() -> {
+            List<MarkerClusterer.Cluster> visible = ViewportRenderer.select(markerClusterer.clustersFor(zoom), area,
+                maxMarkers);
+            runOnUiThread(() -> {
+                if (version == clusterRenderVersion && !isDestroyed()) {
+                    drawClusters(visible);
+                    if (visible.size() >= maxMarkers) {
+                        viewportRenderer.onTruncated(area);
+                    }
+                }
+            });
+        });
+    }
+    
+    // Diffs against the markers already on the map: unchanged places keep their marker
+    private void drawClusters(List<MarkerClusterer.Cluster> clusters) {
+        List<MarkerRegistry.MarkerSpec> specs = new ArrayList<>(clusters.size());
+        for (MarkerClusterer.Cluster cluster : clusters) {
+            if (cluster.isSingleton()) {
+                PlaceResult place = cluster.getPlaces().get(0);
+                specs.add(new MarkerRegistry.MarkerSpec(cluster.getKey(), place.getLatitude(), place.getLongitude(),
+                    place.getName(), place.getAddress(), false, place));
+            } else {
+                specs.add(new MarkerRegistry.MarkerSpec(cluster.getKey(), cluster.getLatitude(), cluster.getLongitude(),
+                    cluster.size() + " places", cluster.getPlaces().get(0).getName() + ", …", true, cluster));
+            }
+        }
+        markerRegistry.update(specs);
+        Log.d(TAG, "Markers: +" + markerRegistry.getLastAdded() + " -" + markerRegistry.getLastRemoved()
+            + " ~" + markerRegistry.getLastUpdated() + " reused " + markerRegistry.getLastReused()
+            + " total " + markerRegistry.size());
+    }
+    
+    // Logcat plus a size-capped file that survives across sessions
+    private void dumpSearchMetrics() {
+        if (searchMetrics.count(SearchMetrics.Counter.SEARCHES) == 0 || searchExecutor == null) {
+            return;
+        }
+        Log.d(TAG, "Search latency:\n" + searchMetrics.dump());
+        if (chatCaller.isDone()) {
+            Log.d(TAG, "Chat resilience: " + chatCaller.get().getSummary());
+        }
+        File file = new File(getFilesDir(), "search_metrics.txt");
+        searchExecutor.execute(() -> {
+            try {
+                searchMetrics.appendTo(file, METRICS_FILE_MAX_BYTES);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write search metrics", e);
+            }
+        });
+    }
+    
+    private static MarkerOptions markerOptionsFor(MarkerRegistry.MarkerSpec spec) {
+        MarkerOptions options = new MarkerOptions()
+            .position(new LatLng(spec.getLatitude(), spec.getLongitude()))
+            .title(spec.getTitle())
+            .snippet(spec.getSnippet());
+        if (spec.isCluster()) {
+            options.icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_ORANGE));
+        }
+        return options;
     }
     
     @Override
@@ -280,18 +1348,76 @@ public class MainActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
         mapView.onResume();
+        if (trackingWanted && locationHelper != null && !locationHelper.isTracking()) {
+            startTracking();
+        }
     }
     
     @Override
     protected void onPause() {
         super.onPause();
         mapView.onPause();
+        dumpSearchMetrics();
+        // Whatever the last searches changed, before the process may be killed
+        flushHistory();
+        // No background tracking; resumes in onResume
+        if (locationHelper != null) {
+            locationHelper.stopTracking();
+        }
     }
     
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        mainHandler.removeCallbacks(typeaheadSearch);
+        searchCoordinator.cancelAll();
+        // Nothing of a cancelled search reaches the UI; also drop whatever is already posted
+        if (searchPipeline != null) {
+            searchPipeline.cancelAll();
+        }
+        mainHandler.removeCallbacksAndMessages(null);
+        if (prefetchScheduler != null) {
+            prefetchScheduler.cancelAll();
+        }
         mapView.onDestroy();
+        // Let queued history flushes and offline writes finish before the store is closed
+        boolean searchIdle = true;
+        if (searchExecutor != null) {
+            flushHistory();
+            searchExecutor.shutdown();
+            try {
+                searchIdle = searchExecutor.awaitTermination(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                searchIdle = false;
+                Thread.currentThread().interrupt();
+            }
+            if (!searchIdle) {
+                Log.w(TAG, "Search executor still busy after " + SHUTDOWN_WAIT_MS + " ms");
+                searchExecutor.shutdownNow();
+            }
+        }
+        if (searchPipeline != null) {
+            fetchExecutor.shutdownNow();
+            parseExecutor.shutdownNow();
+            rankExecutor.shutdownNow();
+        }
+        if (startupExecutor != null) {
+            startupExecutor.shutdownNow();
+        }
+        if (resilienceTimer != null) {
+            resilienceTimer.shutdownNow();
+        }
+        // A write still running would race the close; the process exit releases the file instead
+        if (offlineStore != null && searchIdle) {
+            try {
+                offlineStore.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close offline store", e);
+            }
+        }
+        if (clusterExecutor != null) {
+            clusterExecutor.shutdownNow();
+        }
         if (locationHelper != null) {
             locationHelper.destroy();
         }
@@ -302,4 +1428,4 @@ public class MainActivity extends AppCompatActivity {
         super.onSaveInstanceState(outState);
         mapView.onSaveInstanceState(outState);
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
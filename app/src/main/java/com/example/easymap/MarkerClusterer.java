@@ -0,0 +1,143 @@
+package com.example.easymap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Grid-based marker clustering in Web Mercator pixel space. Each place is
+// projected once into grid cells at MAX_ZOOM; since a cell at zoom z is exactly
+// the cell at z + 1 shifted right by one bit, every coarser level is derived by
+// shifting instead of re-projecting. Results are cached per integer zoom, so
+// fractional zoom changes and zooming back to a seen level cost nothing.
+// addPlaces() projects only the places it is given, so a streamed answer costs
+// one projection per place however many batches it arrives in.
+// Plain Java with no Android types so it can run on a background thread and on the JVM.
+public class MarkerClusterer {
+    public static final int MIN_ZOOM = 3;
+    public static final int MAX_ZOOM = 20;
+    public static final int DEFAULT_CELL_SIZE_PX = 96;
+    private static final double TILE_SIZE_PX = 256;
+    
+    public static class Cluster {
+        private final String key;
+        private final double latitude;
+        private final double longitude;
+        private final List<PlaceResult> places;
+        
+        Cluster(String key, double latitude, double longitude, List<PlaceResult> places) {
+            this.key = key;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.places = places;
+        }
+        
+        public String getKey() { return key; }
+        public double getLatitude() { return latitude; }
+        public double getLongitude() { return longitude; }
+        public List<PlaceResult> getPlaces() { return places; }
+        public int size() { return places.size(); }
+        public boolean isSingleton() { return places.size() == 1; }
+    }
+    
+    private final int cellSizePx;
+    private List<PlaceResult> places = new ArrayList<>();
+    private int[] cellX = new int[0];
+    private int[] cellY = new int[0];
+    private final Map<Integer, List<Cluster>> clustersByZoom = new HashMap<>();
+    
+    public MarkerClusterer() {
+        this(DEFAULT_CELL_SIZE_PX);
+    }
+    
+    public MarkerClusterer(int cellSizePx) {
+        this.cellSizePx = cellSizePx;
+    }
+    
+    public synchronized void setPlaces(List<PlaceResult> newPlaces) {
+        places = new ArrayList<>(newPlaces.size());
+        cellX = new int[newPlaces.size()];
+        cellY = new int[newPlaces.size()];
+        addPlaces(newPlaces);
+    }
+    
+    // Appends to the places already set; those keep their projected cells
+    public synchronized void addPlaces(List<PlaceResult> batch) {
+        int start = places.size();
+        int n = start + batch.size();
+        if (n > cellX.length) {
+            int capacity = Math.max(n, cellX.length * 2);
+            cellX = Arrays.copyOf(cellX, capacity);
+            cellY = Arrays.copyOf(cellY, capacity);
+        }
+        double worldPx = TILE_SIZE_PX * (1 << MAX_ZOOM);
+        for (int i = start; i < n; i++) {
+            PlaceResult place = batch.get(i - start);
+            places.add(place);
+            cellX[i] = (int) Math.floor(mercatorX(place.getLongitude()) * worldPx / cellSizePx);
+            cellY[i] = (int) Math.floor(mercatorY(place.getLatitude()) * worldPx / cellSizePx);
+        }
+        clustersByZoom.clear();
+    }
+    
+    public synchronized List<Cluster> clustersFor(float cameraZoom) {
+        int zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, (int) Math.floor(cameraZoom)));
+        List<Cluster> cached = clustersByZoom.get(zoom);
+        if (cached == null) {
+            cached = Collections.unmodifiableList(buildClusters(zoom));
+            clustersByZoom.put(zoom, cached);
+        }
+        return cached;
+    }
+    
+    private List<Cluster> buildClusters(int zoom) {
+        int shift = MAX_ZOOM - zoom;
+        Map<Long, List<Integer>> cells = new LinkedHashMap<>();
+        for (int i = 0; i < places.size(); i++) {
+            long cell = ((long) (cellX[i] >> shift) << 32) | ((cellY[i] >> shift) & 0xFFFFFFFFL);
+            List<Integer> members = cells.get(cell);
+            if (members == null) {
+                members = new ArrayList<>(4);
+                cells.put(cell, members);
+            }
+            members.add(i);
+        }
+        
+        List<Cluster> clusters = new ArrayList<>(cells.size());
+        for (Map.Entry<Long, List<Integer>> entry : cells.entrySet()) {
+            List<Integer> members = entry.getValue();
+            List<PlaceResult> clustered = new ArrayList<>(members.size());
+            double latSum = 0;
+            double lngSum = 0;
+            for (int index : members) {
+                PlaceResult place = places.get(index);
+                clustered.add(place);
+                latSum += place.getLatitude();
+                lngSum += place.getLongitude();
+            }
+            String key;
+            if (clustered.size() == 1) {
+                key = clustered.get(0).getKey();
+            } else {
+                key = "c:" + zoom + ":" + Long.toHexString(entry.getKey());
+            }
+            clusters.add(new Cluster(key, latSum / clustered.size(), lngSum / clustered.size(),
+                Collections.unmodifiableList(clustered)));
+        }
+        return clusters;
+    }
+    
+    // Normalized Web Mercator coordinates in [0, 1)
+    static double mercatorX(double longitude) {
+        return (longitude + 180.0) / 360.0;
+    }
+    
+    static double mercatorY(double latitude) {
+        double clamped = Math.max(-85.05112878, Math.min(85.05112878, latitude));
+        double sin = Math.sin(Math.toRadians(clamped));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+}
\ No newline at end of file
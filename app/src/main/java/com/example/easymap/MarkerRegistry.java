@@ -0,0 +1,179 @@
+package com.example.easymap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// Keeps the result markers on the map in sync with the latest result set by
+// stable key. update() removes only markers whose key disappeared, adds only
+// new keys and touches existing markers only when what they show changed.
+// Overlays that are not part of the result set (e.g. the user's own location)
+// are never registered here and therefore never removed. With recycling on,
+// removed markers are hidden and kept (up to maxRecycled) to be reused for the
+// next new key, so scrolling the map does not keep creating native markers.
+public class MarkerRegistry<M> {
+    
+    // Creates, changes and removes the native markers; the map side of the registry
+    public interface MarkerFactory<M> {
+        M add(MarkerSpec spec);
+        void update(M marker, MarkerSpec spec);
+        void remove(M marker);
+        
+        // Only called when recycling: hide a marker leaving the map, show a reused one
+        default void hide(M marker) {
+        }
+        
+        default void reuse(M marker, MarkerSpec spec) {
+            update(marker, spec);
+        }
+    }
+    
+    public static final class MarkerSpec {
+        private final String key;
+        private final double latitude;
+        private final double longitude;
+        private final String title;
+        private final String snippet;
+        private final boolean cluster;
+        private final Object tag;
+        
+        public MarkerSpec(String key, double latitude, double longitude, String title, String snippet,
+                          boolean cluster, Object tag) {
+            this.key = key;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.title = title;
+            this.snippet = snippet;
+            this.cluster = cluster;
+            this.tag = tag;
+        }
+        
+        public String getKey() { return key; }
+        public double getLatitude() { return latitude; }
+        public double getLongitude() { return longitude; }
+        public String getTitle() { return title; }
+        public String getSnippet() { return snippet; }
+        public boolean isCluster() { return cluster; }
+        public Object getTag() { return tag; }
+        
+        boolean looksTheSameAs(MarkerSpec other) {
+            return latitude == other.latitude
+                && longitude == other.longitude
+                && cluster == other.cluster
+                && Objects.equals(title, other.title)
+                && Objects.equals(snippet, other.snippet);
+        }
+    }
+    
+    private static final class Entry<M> {
+        final M marker;
+        MarkerSpec spec;
+        
+        Entry(M marker, MarkerSpec spec) {
+            this.marker = marker;
+            this.spec = spec;
+        }
+    }
+    
+    private final MarkerFactory<M> factory;
+    private final int maxRecycled;
+    private final Map<String, Entry<M>> entries = new HashMap<>();
+    // Hidden markers waiting to be reused
+    private final Deque<M> recycled = new ArrayDeque<>();
+    
+    private int lastAdded;
+    private int lastRemoved;
+    private int lastUpdated;
+    private int lastReused;
+    
+    public MarkerRegistry(MarkerFactory<M> factory) {
+        this(factory, 0);
+    }
+    
+    public MarkerRegistry(MarkerFactory<M> factory, int maxRecycled) {
+        this.factory = factory;
+        this.maxRecycled = maxRecycled;
+    }
+    
+    public void update(List<MarkerSpec> specs) {
+        lastAdded = 0;
+        lastRemoved = 0;
+        lastUpdated = 0;
+        lastReused = 0;
+        
+        Set<String> wanted = new HashSet<>(specs.size() * 2);
+        for (MarkerSpec spec : specs) {
+            wanted.add(spec.getKey());
+        }
+        Iterator<Map.Entry<String, Entry<M>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry<M>> existing = it.next();
+            if (!wanted.contains(existing.getKey())) {
+                release(existing.getValue().marker);
+                it.remove();
+                lastRemoved++;
+            }
+        }
+        
+        for (MarkerSpec spec : specs) {
+            Entry<M> entry = entries.get(spec.getKey());
+            if (entry == null) {
+                M marker = recycled.pollFirst();
+                if (marker != null) {
+                    factory.reuse(marker, spec);
+                    lastReused++;
+                } else {
+                    marker = factory.add(spec);
+                    lastAdded++;
+                }
+                entries.put(spec.getKey(), new Entry<>(marker, spec));
+            } else {
+                if (!entry.spec.looksTheSameAs(spec)) {
+                    factory.update(entry.marker, spec);
+                    lastUpdated++;
+                }
+                entry.spec = spec;
+            }
+        }
+    }
+    
+    public MarkerSpec get(String key) {
+        Entry<M> entry = entries.get(key);
+        return entry != null ? entry.spec : null;
+    }
+    
+    public void clear() {
+        for (Entry<M> entry : entries.values()) {
+            factory.remove(entry.marker);
+        }
+        entries.clear();
+        for (M marker : recycled) {
+            factory.remove(marker);
+        }
+        recycled.clear();
+    }
+    
+    public int size() { return entries.size(); }
+    public int recycledSize() { return recycled.size(); }
+    
+    // Counts from the most recent update(), for logging
+    public int getLastAdded() { return lastAdded; }
+    public int getLastRemoved() { return lastRemoved; }
+    public int getLastUpdated() { return lastUpdated; }
+    public int getLastReused() { return lastReused; }
+    
+    private void release(M marker) {
+        if (recycled.size() < maxRecycled) {
+            factory.hide(marker);
+            recycled.addFirst(marker);
+        } else {
+            factory.remove(marker);
+        }
+    }
+}
\ No newline at end of file
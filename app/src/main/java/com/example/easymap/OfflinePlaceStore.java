@@ -0,0 +1,378 @@
+package com.example.easymap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// On-device store of every place the backend has returned, together with the
+// normalized query that produced it, so searches can still be answered offline.
+//
+// The file is a 16-byte header followed by append-only records:
+//   int length | long savedAt | double lat | double lng | byte flags |
+//   terms | name | address | type      (strings: unsigned short byte length + UTF-8,
+//                                       0xFFFF for null)
+// The file is memory-mapped read-write with zero-filled room past the last
+// record, grown by doubling, so a put copies its records into the map in place
+// and only a grow remaps. A zero length ends the record walk: each batch is
+// copied with its first length zeroed and that length written last, so dying
+// mid-put loses the batch instead of leaving a torn record. close() trims the
+// spare room. Opening only walks the record lengths to build an offset table,
+// and a search compares the query's UTF-8 tokens against each record's term
+// bytes in place; only matching records are decoded into PlaceResults. When
+// the records outgrow the limits the file is rewritten keeping the newest and
+// nearest ones.
+public class OfflinePlaceStore implements Closeable {
+    private static final int MAGIC = 0x45504F49; // "EPOI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    // savedAt + lat + lng + flags
+    private static final int FIXED_RECORD_BYTES = 8 + 8 + 8 + 1;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final int FLAG_PROMOTED = 1;
+    // Compaction keeps this fraction of the limits so it does not run on every put
+    private static final double COMPACT_TARGET = 0.75;
+    // Eviction score: one hour of age weighs as much as this many km of distance
+    private static final double KM_PER_HOUR_OF_AGE = 0.5;
+    
+    private final File file;
+    private final long maxBytes;
+    private final int maxRecords;
+    
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int[] offsets = new int[0];
+    private int count;
+    // End of the last record; the map runs on into zero-filled room
+    private int end;
+    
+    public OfflinePlaceStore(File file, long maxBytes, int maxRecords) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxRecords = maxRecords;
+        open();
+    }
+    
+    private void open() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        if (channel.size() < HEADER_BYTES || !hasValidHeader()) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(0).flip();
+            channel.write(header, 0);
+        }
+        remap(channel.size());
+        indexRecords(HEADER_BYTES);
+        // A torn record at the end (the app died mid-append) and any spare room are cut off
+        if (end < map.limit()) {
+            channel.truncate(end);
+            remap(end);
+        }
+    }
+    
+    private boolean hasValidHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        channel.read(header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+    }
+    
+    // Mapping past the end of the file grows it with zeros
+    private void remap(long size) throws IOException {
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    
+    // Walks record lengths from the given offset up to a zero or torn one
+    private void indexRecords(int from) {
+        int limit = map.limit();
+        int pos = from;
+        while (pos + 4 <= limit) {
+            int length = map.getInt(pos);
+            if (length < FIXED_RECORD_BYTES + 8 || pos + 4 + length > limit) {
+                break;
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(16, count * 2));
+            }
+            offsets[count++] = pos;
+            pos += 4 + length;
+        }
+        end = pos;
+    }
+    
+    public synchronized int size() {
+        return count;
+    }
+    
+    // Header and records; the file may run ahead by spare room until close()
+    public synchronized long sizeBytes() {
+        return end;
+    }
+    
+    // Appends the places returned for a query. The reference location (may be NaN)
+    // decides what counts as "far away" if the store has to evict.
+    public synchronized void putAll(String query, List<PlaceResult> places, double refLat, double refLng)
+            throws IOException {
+        if (places.isEmpty()) {
+            return;
+        }
+        byte[] terms = utf8(QueryNormalizer.normalize(query));
+        long now = currentTimeMillis();
+        ByteBuffer batch = ByteBuffer.allocate(places.size() * 256);
+        for (PlaceResult place : places) {
+            byte[] name = utf8(place.getName());
+            byte[] address = utf8(place.getAddress());
+            byte[] type = utf8(place.getType());
+            int length = FIXED_RECORD_BYTES + 8 + len(terms) + len(name) + len(address) + len(type);
+            if (batch.remaining() < 4 + length) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(batch.capacity() * 2, batch.position() + 4 + length));
+                batch.flip();
+                bigger.put(batch);
+                batch = bigger;
+            }
+            batch.putInt(length)
+                .putLong(now)
+                .putDouble(place.getLatitude())
+                .putDouble(place.getLongitude())
+                .put((byte) (place.isPromoted() ? FLAG_PROMOTED : 0));
+            putString(batch, terms);
+            putString(batch, name);
+            putString(batch, address);
+            putString(batch, type);
+        }
+        batch.flip();
+        int start = end;
+        if (start + batch.remaining() > map.limit()) {
+            remap(Math.max(start + batch.remaining(), Math.min(map.limit() * 2L, maxBytes)));
+        }
+        int firstLength = batch.getInt(0);
+        batch.putInt(0, 0);
+        ByteBuffer target = map.duplicate();
+        target.position(start);
+        target.put(batch);
+        map.putInt(start, firstLength);
+        indexRecords(start);
+        
+        if (end > maxBytes || count > maxRecords) {
+            compact(refLat, refLng, now);
+        }
+    }
+    
+    // Places stored for queries containing every token of this query, newest first,
+    // one per place. Pass the result through ProximityRanker for distance order.
+    public synchronized List<PlaceResult> search(String query, int limit) {
+        String normalized = QueryNormalizer.normalize(query);
+        List<PlaceResult> results = new ArrayList<>();
+        if (normalized.isEmpty()) {
+            return results;
+        }
+        String[] tokens = normalized.split(" ");
+        byte[][] tokenBytes = new byte[tokens.length][];
+        for (int i = 0; i < tokens.length; i++) {
+            tokenBytes[i] = tokens[i].getBytes(StandardCharsets.UTF_8);
+        }
+        
+        Set<Long> seen = new HashSet<>();
+        for (int i = count - 1; i >= 0 && results.size() < limit; i--) {
+            int termsPos = offsets[i] + 4 + FIXED_RECORD_BYTES;
+            if (!containsAllTokens(termsPos, tokenBytes)) {
+                continue;
+            }
+            PlaceResult place = decode(offsets[i]);
+            if (seen.add(place.getId())) {
+                results.add(place);
+            }
+        }
+        return results;
+    }
+    
+    private boolean containsAllTokens(int termsPos, byte[][] tokens) {
+        int termsLen = map.getShort(termsPos) & 0xFFFF;
+        if (termsLen == NULL_STRING) {
+            return false;
+        }
+        int begin = termsPos + 2;
+        int end = begin + termsLen;
+        for (byte[] token : tokens) {
+            if (!containsWord(begin, end, token)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Whole-word match of token within the space-separated bytes [begin, end)
+    private boolean containsWord(int begin, int end, byte[] token) {
+        int wordStart = begin;
+        for (int i = begin; i <= end; i++) {
+            if (i == end || map.get(i) == ' ') {
+                if (i - wordStart == token.length) {
+                    boolean match = true;
+                    for (int j = 0; j < token.length; j++) {
+                        if (map.get(wordStart + j) != token[j]) {
+                            match = false;
+                            break;
+                        }
+                    }
+                    if (match) {
+                        return true;
+                    }
+                }
+                wordStart = i + 1;
+            }
+        }
+        return false;
+    }
+    
+    private PlaceResult decode(int offset) {
+        int pos = offset + 4;
+        double lat = map.getDouble(pos + 8);
+        double lng = map.getDouble(pos + 16);
+        boolean promoted = (map.get(pos + 24) & FLAG_PROMOTED) != 0;
+        pos += FIXED_RECORD_BYTES;
+        pos = skipString(pos);
+        String name = readString(pos);
+        pos = skipString(pos);
+        String address = readString(pos);
+        pos = skipString(pos);
+        String type = readString(pos);
+        StringPool pool = StringPool.shared();
+        return new PlaceResult(name, pool.intern(address), lat, lng, PlaceResult.UNKNOWN_DISTANCE, pool.intern(type),
+            promoted);
+    }
+    
+    private String readString(int pos) {
+        int len = map.getShort(pos) & 0xFFFF;
+        if (len == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++) {
+            bytes[i] = map.get(pos + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private int skipString(int pos) {
+        int len = map.getShort(pos) & 0xFFFF;
+        return pos + 2 + (len == NULL_STRING ? 0 : len);
+    }
+    
+    // Rewrites the file keeping the best-scoring record per (place, query): recent
+    // and close to the reference location win
+    private void compact(double refLat, double refLng, long now) throws IOException {
+        Map<String, Integer> latest = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            int termsPos = offsets[i] + 4 + FIXED_RECORD_BYTES;
+            latest.put(readString(termsPos) + "|" + decode(offsets[i]).getKey(), i);
+        }
+        Integer[] survivors = latest.values().toArray(new Integer[0]);
+        double[] scores = new double[count];
+        boolean hasReference = !Double.isNaN(refLat) && !Double.isNaN(refLng);
+        for (int index : survivors) {
+            int pos = offsets[index] + 4;
+            double ageHours = (now - map.getLong(pos)) / 3_600_000.0;
+            double km = hasReference
+                ? ProximityRanker.distance(refLat, refLng, map.getDouble(pos + 8), map.getDouble(pos + 16)) / 1000 : 0;
+            scores[index] = ageHours + km / KM_PER_HOUR_OF_AGE;
+        }
+        Arrays.sort(survivors, (a, b) -> Double.compare(scores[a], scores[b]));
+        
+        long byteBudget = (long) (maxBytes * COMPACT_TARGET) - HEADER_BYTES;
+        int recordBudget = (int) (maxRecords * COMPACT_TARGET);
+        List<Integer> kept = new ArrayList<>();
+        long bytes = 0;
+        for (int index : survivors) {
+            int recordBytes = 4 + map.getInt(offsets[index]);
+            if (kept.size() >= recordBudget || bytes + recordBytes > byteBudget) {
+                break;
+            }
+            kept.add(index);
+            bytes += recordBytes;
+        }
+        // Keep file order (oldest first) so "newest first" scans still hold
+        kept.sort(null);
+        
+        File tmp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            out.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(kept.size()).putInt(0).flip();
+            FileChannel outChannel = out.getChannel();
+            outChannel.write(header);
+            for (int index : kept) {
+                ByteBuffer record = map.duplicate();
+                record.position(offsets[index]);
+                record.limit(offsets[index] + 4 + map.getInt(offsets[index]));
+                while (record.hasRemaining()) {
+                    outChannel.write(record);
+                }
+            }
+        }
+        close();
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+        count = 0;
+        offsets = new int[0];
+        open();
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.truncate(end);
+            channel.close();
+        }
+        if (raf != null) {
+            raf.close();
+        }
+    }
+    
+    // Overridden in tests
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+    
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < NULL_STRING) {
+            return bytes;
+        }
+        // Cut before the character the limit falls in, not through its continuation bytes
+        int cut = NULL_STRING - 1;
+        while (cut > 0 && (bytes[cut] & 0xC0) == 0x80) {
+            cut--;
+        }
+        return Arrays.copyOf(bytes, cut);
+    }
+    
+    private static int len(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+    
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) NULL_STRING);
+            return;
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+}
\ No newline at end of file
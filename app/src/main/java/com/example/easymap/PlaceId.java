@@ -0,0 +1,32 @@
+package com.example.easymap;
+
+// Stable 64-bit identity of a place: FNV-1a over the name and the coordinates
+// rounded to ~1 m, the same inputs as PlaceResult.getKey(). The same place from
+// two responses gets the same id without a key string being built per place.
+public final class PlaceId {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    private PlaceId() {
+    }
+    
+    public static long of(String name, double latitude, double longitude) {
+        long hash = FNV_OFFSET;
+        if (name != null) {
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+                hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+            }
+        }
+        hash = mix(hash, Math.round(latitude * 1e5));
+        return mix(hash, Math.round(longitude * 1e5));
+    }
+    
+    private static long mix(long hash, long value) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((value >>> shift) & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,219 @@
+package com.example.easymap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Session-wide spatial index over every place any search has returned, so
+// "what have I found near here" and bounding-box lookups need no backend call.
+// Places are bucketed into fixed lat/lng grid cells; a nearest-neighbour query
+// walks rings of cells outward from the query point and stops as soon as the
+// next ring cannot contain anything closer than the k-th best found so far.
+public class PlaceIndex {
+    // ~1.1 km of latitude; a city district is a handful of cells
+    static final double DEFAULT_CELL_DEGREES = 0.01;
+    private static final double METERS_PER_DEGREE = 111_195;
+    
+    private final double cellDegrees;
+    private final Map<Long, List<PlaceResult>> cells = new HashMap<>();
+    private final Map<Long, Long> cellById = new HashMap<>();
+    private int minCellX = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE;
+    private int minCellY = Integer.MAX_VALUE;
+    private int maxCellY = Integer.MIN_VALUE;
+    
+    public PlaceIndex() {
+        this(DEFAULT_CELL_DEGREES);
+    }
+    
+    public PlaceIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+    }
+    
+    // Adds or replaces (by PlaceResult.getId()) each place
+    public synchronized void addAll(Collection<PlaceResult> places) {
+        for (PlaceResult place : places) {
+            add(place);
+        }
+    }
+    
+    public synchronized void add(PlaceResult place) {
+        long id = place.getId();
+        Long previousCell = cellById.get(id);
+        if (previousCell != null) {
+            removeFromCell(previousCell, id);
+        }
+        int cx = cellX(place.getLongitude());
+        int cy = cellY(place.getLatitude());
+        long cell = cellKey(cx, cy);
+        List<PlaceResult> bucket = cells.get(cell);
+        if (bucket == null) {
+            bucket = new ArrayList<>(4);
+            cells.put(cell, bucket);
+        }
+        bucket.add(place);
+        cellById.put(id, cell);
+        minCellX = Math.min(minCellX, cx);
+        maxCellX = Math.max(maxCellX, cx);
+        minCellY = Math.min(minCellY, cy);
+        maxCellY = Math.max(maxCellY, cy);
+    }
+    
+    public synchronized int size() {
+        return cellById.size();
+    }
+    
+    public synchronized void clear() {
+        cells.clear();
+        cellById.clear();
+        minCellX = Integer.MAX_VALUE;
+        maxCellX = Integer.MIN_VALUE;
+        minCellY = Integer.MAX_VALUE;
+        maxCellY = Integer.MIN_VALUE;
+    }
+    
+    // Up to k places, nearest first
+    public synchronized List<PlaceResult> nearest(double latitude, double longitude, int k) {
+        List<PlaceResult> result = new ArrayList<>(Math.min(k, cellById.size()));
+        if (k <= 0 || cellById.isEmpty()) {
+            return result;
+        }
+        // Max-heap on distance holding the best k so far
+        PriorityQueue<double[]> best = new PriorityQueue<>(k + 1, (a, b) -> Double.compare(b[0], a[0]));
+        List<PlaceResult> candidates = new ArrayList<>();
+        
+        int cx = cellX(longitude);
+        int cy = cellY(latitude);
+        int maxRing = Math.max(Math.max(Math.abs(cx - minCellX), Math.abs(cx - maxCellX)),
+            Math.max(Math.abs(cy - minCellY), Math.abs(cy - maxCellY)));
+        
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Everything in this ring is at least ring - 1 whole cells away; stop once
+            // that lower bound is beyond the k-th best distance found so far
+            if (best.size() == k && (ring - 1) * narrowestCellMeters(latitude, ring) > best.peek()[0]) {
+                break;
+            }
+            if (8L * ring > cells.size()) {
+                // The ring now has more cells than the index has buckets (query far from
+                // everything): a single pass over the occupied buckets is cheaper
+                best.clear();
+                candidates.clear();
+                for (List<PlaceResult> bucket : cells.values()) {
+                    offer(bucket, latitude, longitude, k, best, candidates);
+                }
+                break;
+            }
+            if (ring == 0) {
+                offer(cells.get(cellKey(cx, cy)), latitude, longitude, k, best, candidates);
+                continue;
+            }
+            for (int x = cx - ring; x <= cx + ring; x++) {
+                offer(cells.get(cellKey(x, cy - ring)), latitude, longitude, k, best, candidates);
+                offer(cells.get(cellKey(x, cy + ring)), latitude, longitude, k, best, candidates);
+            }
+            for (int y = cy - ring + 1; y <= cy + ring - 1; y++) {
+                offer(cells.get(cellKey(cx - ring, y)), latitude, longitude, k, best, candidates);
+                offer(cells.get(cellKey(cx + ring, y)), latitude, longitude, k, best, candidates);
+            }
+        }
+        
+        double[][] ordered = best.toArray(new double[0][]);
+        Arrays.sort(ordered, (a, b) -> Double.compare(a[0], b[0]));
+        for (double[] entry : ordered) {
+            result.add(candidates.get((int) entry[1]));
+        }
+        return result;
+    }
+    
+    private static void offer(List<PlaceResult> bucket, double latitude, double longitude, int k,
+                              PriorityQueue<double[]> best, List<PlaceResult> candidates) {
+        if (bucket == null) {
+            return;
+        }
+        for (PlaceResult place : bucket) {
+            double d = ProximityRanker.distance(latitude, longitude, place.getLatitude(), place.getLongitude());
+            if (best.size() < k || d < best.peek()[0]) {
+                best.add(new double[]{d, candidates.size()});
+                candidates.add(place);
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+        }
+    }
+    
+    public synchronized List<PlaceResult> within(double minLat, double minLng, double maxLat, double maxLng) {
+        List<PlaceResult> result = new ArrayList<>();
+        int x0 = cellX(minLng);
+        int x1 = cellX(maxLng);
+        int y0 = cellY(minLat);
+        int y1 = cellY(maxLat);
+        long boxCells = (long) (x1 - x0 + 1) * (y1 - y0 + 1);
+        if (boxCells > cells.size()) {
+            // Zoomed far out: cheaper to walk the occupied cells than the box
+            for (List<PlaceResult> bucket : cells.values()) {
+                addInside(bucket, minLat, minLng, maxLat, maxLng, result);
+            }
+            return result;
+        }
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                List<PlaceResult> bucket = cells.get(cellKey(x, y));
+                if (bucket != null) {
+                    addInside(bucket, minLat, minLng, maxLat, maxLng, result);
+                }
+            }
+        }
+        return result;
+    }
+    
+    private static void addInside(List<PlaceResult> bucket, double minLat, double minLng, double maxLat,
+                                  double maxLng, List<PlaceResult> out) {
+        for (PlaceResult place : bucket) {
+            double lat = place.getLatitude();
+            double lng = place.getLongitude();
+            if (lat >= minLat && lat <= maxLat && lng >= minLng && lng <= maxLng) {
+                out.add(place);
+            }
+        }
+    }
+    
+    private void removeFromCell(long cell, long id) {
+        List<PlaceResult> bucket = cells.get(cell);
+        if (bucket == null) {
+            return;
+        }
+        for (int i = 0; i < bucket.size(); i++) {
+            if (bucket.get(i).getId() == id) {
+                bucket.remove(i);
+                break;
+            }
+        }
+        if (bucket.isEmpty()) {
+            cells.remove(cell);
+        }
+    }
+    
+    // Lower bound on a cell side in metres anywhere within the ring: longitude cells
+    // narrow towards the poles, and 1% covers great-circle vs. parallel-arc slack
+    private double narrowestCellMeters(double latitude, int ring) {
+        double farthestLat = Math.min(89, Math.abs(latitude) + (ring + 1) * cellDegrees);
+        return 0.99 * cellDegrees * METERS_PER_DEGREE * Math.cos(Math.toRadians(farthestLat));
+    }
+    
+    private int cellX(double longitude) {
+        return (int) Math.floor(longitude / cellDegrees);
+    }
+    
+    private int cellY(double latitude) {
+        return (int) Math.floor(latitude / cellDegrees);
+    }
+    
+    private static long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+}
\ No newline at end of file
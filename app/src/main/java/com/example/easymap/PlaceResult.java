@@ -1,32 +1,44 @@
 package com.example.easymap;
 
+// One search result. Immutable: ranking hands out copies with a new distance
+// label instead of touching places that may already be on screen or cached.
+// Decoders take address and type strings from StringPool, and identity is the
+// primitive PlaceId rather than a key string per place.
 public class PlaceResult {
-    private String name;
-    private String address;
-    private double latitude;
-    private double longitude;
-    private String distance;
-    private String type;
-    private boolean isPromoted;
+    public static final String UNKNOWN_DISTANCE = "未知距离";
+    
+    private final String name;
+    private final String address;
+    private final double latitude;
+    private final double longitude;
+    private final String distance;
+    private final String type;
+    private final boolean isPromoted;
+    private final long id;
+    // Built on first use
+    private String subtitle;
+    private String key;
     
     public PlaceResult(String name, String address, double latitude, double longitude, String distance, String type) {
+        this(name, address, latitude, longitude, distance, type, false);
+    }
+    
+    public PlaceResult(String name, String address, double latitude, double longitude, String distance, String type,
+                       boolean promoted) {
+        this(name, address, latitude, longitude, distance, type, promoted, PlaceId.of(name, latitude, longitude));
+    }
+    
+    // For copies, which already know their id
+    PlaceResult(String name, String address, double latitude, double longitude, String distance, String type,
+                boolean promoted, long id) {
         this.name = name;
         this.address = address;
         this.latitude = latitude;
         this.longitude = longitude;
         this.distance = distance;
         this.type = type;
-        this.isPromoted = false;
-    }
-    
-    public PlaceResult(String title, String snippet, double latitude, double longitude, String address) {
-        this.name = title;
-        this.address = address;
-        this.latitude = latitude;
-        this.longitude = longitude;
-        this.distance = "未知距离";
-        this.type = snippet;
-        this.isPromoted = false;
+        this.isPromoted = promoted;
+        this.id = id;
     }
     
     // Getters
@@ -37,17 +49,35 @@ public class PlaceResult {
     public String getDistance() { return distance; }
     public String getType() { return type; }
     public boolean isPromoted() { return isPromoted; }
+    public long getId() { return id; }
+    
+    // "address • distance" for the results list, built once and reused on every bind
+    public String getSubtitle() {
+        if (subtitle == null) {
+            subtitle = address + " • " + distance;
+        }
+        return subtitle;
+    }
+    
+    // Copy of this place with a different distance label
+    public PlaceResult withDistance(String distance) {
+        return new PlaceResult(name, address, latitude, longitude, distance, type, isPromoted, id);
+    }
+    
+    public PlaceResult withPromoted(boolean promoted) {
+        return new PlaceResult(name, address, latitude, longitude, distance, type, promoted, id);
+    }
+    
+    // Stable identity of a place across result sets: name plus coordinates
+    // rounded to ~1 m, so the same place from two responses maps to one marker
+    public String getKey() {
+        if (key == null) {
+            key = name + "@" + Math.round(latitude * 1e5) + "," + Math.round(longitude * 1e5);
+        }
+        return key;
+    }
     
     // Additional getters for compatibility
     public String getTitle() { return name; }
     public String getSnippet() { return type; }
-    
-    // Setters
-    public void setName(String name) { this.name = name; }
-    public void setAddress(String address) { this.address = address; }
-    public void setLatitude(double latitude) { this.latitude = latitude; }
-    public void setLongitude(double longitude) { this.longitude = longitude; }
-    public void setDistance(String distance) { this.distance = distance; }
-    public void setType(String type) { this.type = type; }
-    public void setPromoted(boolean promoted) { isPromoted = promoted; }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,205 @@
+package com.example.easymap;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streaming parser for the /chat response body:
+//   {"results": [{"name": ..., "address": ..., "latitude": ..., "longitude": ...,
+//                 "type" or "category": ..., "promoted": ...}, ...],
+//    "keywords": "..." or ["...", ...]}
+// Places are handed to the listener as soon as each object is decoded; unknown
+// fields are skipped without being materialized. Addresses and types repeat a
+// lot across results and are deduplicated through StringPool.
+public final class PlaceResultParser {
+    public interface Listener {
+        void onPlace(PlaceResult place);
+        
+        // The search keywords the backend translated the query into, if it reports them
+        default void onKeywords(List<String> keywords) {
+        }
+    }
+    
+    private PlaceResultParser() {
+    }
+    
+    public static List<PlaceResult> parse(Reader reader) throws IOException {
+        List<PlaceResult> results = new ArrayList<>();
+        parse(reader, results::add);
+        return results;
+    }
+    
+    // Returns the number of places emitted. Places emitted before a malformed
+    // token are kept by the listener; the error is reported as an IOException.
+    public static int parse(Reader reader, Listener listener) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        try {
+            int count = 0;
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if ("results".equals(name) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                    count += readResults(json, listener);
+                } else if ("keywords".equals(name)) {
+                    readKeywords(json, listener);
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            return count;
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Unexpected /chat response: " + e.getMessage(), e);
+        }
+    }
+    
+    // One chunk of a streamed response (an NDJSON line or SSE event): either a
+    // single place object or an envelope with "results" and/or "keywords" like
+    // the single-shot body. Returns the number of places emitted.
+    public static int parseChunk(String chunk, Listener listener) throws IOException {
+        JsonReader json = new JsonReader(new StringReader(chunk));
+        int[] count = new int[1];
+        Listener counting = new Listener() {
+            @Override
+            public void onPlace(PlaceResult place) {
+                count[0]++;
+                listener.onPlace(place);
+            }
+            
+            @Override
+            public void onKeywords(List<String> keywords) {
+                listener.onKeywords(keywords);
+            }
+        };
+        try {
+            PlaceResult place = readObject(json, counting);
+            if (place != null) {
+                counting.onPlace(place);
+            }
+            return count[0];
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Unexpected /chat chunk: " + e.getMessage(), e);
+        }
+    }
+    
+    private static int readResults(JsonReader json, Listener listener) throws IOException {
+        int count = 0;
+        json.beginArray();
+        while (json.hasNext()) {
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            PlaceResult place = readPlace(json);
+            if (place != null) {
+                listener.onPlace(place);
+                count++;
+            }
+        }
+        json.endArray();
+        return count;
+    }
+    
+    // A single string or an array of strings; anything else is ignored
+    private static void readKeywords(JsonReader json, Listener listener) throws IOException {
+        List<String> keywords = new ArrayList<>();
+        if (json.peek() == JsonToken.STRING) {
+            keywords.add(json.nextString());
+        } else if (json.peek() == JsonToken.BEGIN_ARRAY) {
+            json.beginArray();
+            while (json.hasNext()) {
+                if (json.peek() == JsonToken.STRING) {
+                    keywords.add(json.nextString());
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endArray();
+        } else {
+            json.skipValue();
+        }
+        if (!keywords.isEmpty()) {
+            listener.onKeywords(keywords);
+        }
+    }
+    
+    // Entries missing a name, address or coordinates are dropped
+    private static PlaceResult readPlace(JsonReader json) throws IOException {
+        return readObject(json, null);
+    }
+    
+    // Reads an object as a place. Given a listener, its "results" and "keywords"
+    // fields are also handled the way the top-level envelope's are.
+    private static PlaceResult readObject(JsonReader json, Listener envelope) throws IOException {
+        String name = null;
+        String address = null;
+        double lat = Double.NaN;
+        double lng = Double.NaN;
+        String type = null;
+        boolean promoted = false;
+        
+        json.beginObject();
+        while (json.hasNext()) {
+            String field = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.skipValue();
+                continue;
+            }
+            switch (field) {
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "address":
+                    address = json.nextString();
+                    break;
+                case "latitude":
+                    lat = json.nextDouble();
+                    break;
+                case "longitude":
+                    lng = json.nextDouble();
+                    break;
+                case "type":
+                case "category":
+                    type = json.nextString();
+                    break;
+                case "promoted":
+                    if (json.peek() == JsonToken.BOOLEAN) {
+                        promoted = json.nextBoolean();
+                    } else {
+                        json.skipValue();
+                    }
+                    break;
+                case "results":
+                    if (envelope != null && json.peek() == JsonToken.BEGIN_ARRAY) {
+                        readResults(json, envelope);
+                    } else {
+                        json.skipValue();
+                    }
+                    break;
+                case "keywords":
+                    if (envelope != null) {
+                        readKeywords(json, envelope);
+                    } else {
+                        json.skipValue();
+                    }
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        
+        if (name == null || address == null || Double.isNaN(lat) || Double.isNaN(lng)) {
+            return null;
+        }
+        StringPool pool = StringPool.shared();
+        return new PlaceResult(name, pool.intern(address), lat, lng, PlaceResult.UNKNOWN_DISTANCE, pool.intern(type),
+            promoted);
+    }
+}
\ No newline at end of file
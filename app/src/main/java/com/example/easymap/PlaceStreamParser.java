@@ -0,0 +1,120 @@
+package com.example.easymap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+// Reads a /chat response in whichever format the backend answered with, handing
+// each place to the listener as soon as its line or event has arrived:
+//   application/x-ndjson   one JSON object per line
+//   text/event-stream      server-sent events carrying one JSON object each;
+//                          "data: [DONE]" ends the stream
+//   anything else          the single-shot {"results": [...]} body
+// A streamed object is a single place or a {"results": [...], "keywords": ...}
+// batch (see PlaceResultParser.parseChunk).
+public final class PlaceStreamParser {
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String EVENT_STREAM = "text/event-stream";
+    private static final String DONE = "[DONE]";
+    
+    enum Format {
+        NDJSON,
+        EVENT_STREAM,
+        JSON
+    }
+    
+    private PlaceStreamParser() {
+    }
+    
+    static Format formatOf(String contentType) {
+        if (contentType == null) {
+            return Format.JSON;
+        }
+        int params = contentType.indexOf(';');
+        String type = (params >= 0 ? contentType.substring(0, params) : contentType).trim().toLowerCase(Locale.ROOT);
+        switch (type) {
+            case NDJSON:
+            case "application/jsonl":
+            case "application/jsonlines":
+                return Format.NDJSON;
+            case EVENT_STREAM:
+                return Format.EVENT_STREAM;
+            default:
+                return Format.JSON;
+        }
+    }
+    
+    public static boolean isStreaming(String contentType) {
+        return formatOf(contentType) != Format.JSON;
+    }
+    
+    // Returns the number of places emitted. As with PlaceResultParser, places
+    // emitted before a malformed chunk are kept and the error is thrown.
+    public static int parse(Reader body, String contentType, PlaceResultParser.Listener listener)
+            throws IOException {
+        switch (formatOf(contentType)) {
+            case NDJSON:
+                return parseLines(new BufferedReader(body), listener);
+            case EVENT_STREAM:
+                return parseEvents(new BufferedReader(body), listener);
+            default:
+                return PlaceResultParser.parse(body, listener);
+        }
+    }
+    
+    private static int parseLines(BufferedReader reader, PlaceResultParser.Listener listener) throws IOException {
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                count += PlaceResultParser.parseChunk(line, listener);
+            }
+        }
+        return count;
+    }
+    
+    // Only "data" fields matter; event names, ids and retry hints are ignored
+    private static int parseEvents(BufferedReader reader, PlaceResultParser.Listener listener) throws IOException {
+        int count = 0;
+        StringBuilder data = new StringBuilder();
+        boolean hasData = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (hasData) {
+                    String event = data.toString();
+                    if (DONE.equals(event.trim())) {
+                        return count;
+                    }
+                    count += PlaceResultParser.parseChunk(event, listener);
+                    data.setLength(0);
+                    hasData = false;
+                }
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String field = colon >= 0 ? line.substring(0, colon) : line;
+            if (!"data".equals(field)) {
+                continue;
+            }
+            String value = colon >= 0 ? line.substring(colon + 1) : "";
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            if (hasData) {
+                data.append('\n');
+            }
+            data.append(value);
+            hasData = true;
+        }
+        // Tolerate a last event without its terminating blank line
+        if (hasData && !DONE.equals(data.toString().trim())) {
+            count += PlaceResultParser.parseChunk(data.toString(), listener);
+        }
+        return count;
+    }
+}
\ No newline at end of file
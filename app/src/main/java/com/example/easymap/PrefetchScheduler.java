@@ -0,0 +1,182 @@
+package com.example.easymap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Low-priority background fetches of queries the user is likely to run next,
+// so the first real search hits a warm cache. At most maxConcurrent fetches
+// run at once, nothing new starts once the byte budget is spent, queries that
+// are already warm are skipped, and a real user search preempts everything:
+// in-flight prefetches are cancelled and re-queued until resume().
+//
+// Fetcher.isWarm may touch the disk cache, so call schedule() and resume()
+// off the main thread.
+public class PrefetchScheduler {
+    public interface Fetcher {
+        // Whether results for this query are already cached for the current location
+        boolean isWarm(String query);
+        
+        // Starts the fetch and stores its results; reports back exactly once
+        // unless cancelled
+        SearchCoordinator.Cancellable fetch(String query, Callback callback);
+    }
+    
+    public interface Callback {
+        void onComplete(long bytes);
+        void onFailed();
+    }
+    
+    private final Fetcher fetcher;
+    private final int maxConcurrent;
+    private final long byteBudget;
+    
+    private final Deque<String> queue = new ArrayDeque<>();
+    // Normalized queries cancelled by yieldToUser() and not restarted yet
+    private final Set<String> preempted = new HashSet<>();
+    // Normalized query -> fetch, in start order
+    private final Map<String, Fetch> inFlight = new LinkedHashMap<>();
+    private long bytesUsed;
+    private int completed;
+    private int failed;
+    private boolean paused;
+    
+    public PrefetchScheduler(Fetcher fetcher, int maxConcurrent, long byteBudget) {
+        this.fetcher = fetcher;
+        this.maxConcurrent = maxConcurrent;
+        this.byteBudget = byteBudget;
+    }
+    
+    // Replaces whatever is still queued, except fetches a user search preempted:
+    // those stay in front. In-flight fetches carry on. Earlier queries have
+    // priority; duplicates (after normalization) are dropped.
+    public synchronized void schedule(List<String> queries) {
+        List<String> kept = new ArrayList<>();
+        for (String query : queue) {
+            if (preempted.contains(QueryNormalizer.normalize(query))) {
+                kept.add(query);
+            }
+        }
+        queue.clear();
+        Set<String> seen = new HashSet<>(inFlight.keySet());
+        for (String query : kept) {
+            if (seen.add(QueryNormalizer.normalize(query))) {
+                queue.add(query);
+            }
+        }
+        for (String query : queries) {
+            if (seen.add(QueryNormalizer.normalize(query))) {
+                queue.add(query);
+            }
+        }
+        dispatch();
+    }
+    
+    // A user search is starting: stop competing with it for bandwidth
+    public synchronized void yieldToUser() {
+        paused = true;
+        List<Fetch> cancelled = new ArrayList<>(inFlight.values());
+        inFlight.clear();
+        // Back to the front of the queue in their original order
+        for (int i = cancelled.size() - 1; i >= 0; i--) {
+            Fetch fetch = cancelled.get(i);
+            fetch.call.cancel();
+            queue.addFirst(fetch.query);
+            preempted.add(fetch.key);
+        }
+    }
+    
+    public synchronized void resume() {
+        paused = false;
+        dispatch();
+    }
+    
+    public synchronized void cancelAll() {
+        queue.clear();
+        preempted.clear();
+        for (Fetch fetch : inFlight.values()) {
+            fetch.call.cancel();
+        }
+        inFlight.clear();
+    }
+    
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+    
+    public synchronized long getBytesUsed() {
+        return bytesUsed;
+    }
+    
+    public synchronized int getCompleted() {
+        return completed;
+    }
+    
+    public synchronized int getFailed() {
+        return failed;
+    }
+    
+    public synchronized int getInFlight() {
+        return inFlight.size();
+    }
+    
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+    
+    private void dispatch() {
+        while (!paused && inFlight.size() < maxConcurrent && bytesUsed < byteBudget && !queue.isEmpty()) {
+            String query = queue.poll();
+            preempted.remove(QueryNormalizer.normalize(query));
+            if (fetcher.isWarm(query)) {
+                continue;
+            }
+            Fetch fetch = new Fetch(query);
+            inFlight.put(fetch.key, fetch);
+            fetch.call = fetcher.fetch(query, fetch);
+        }
+    }
+    
+    private synchronized void onFetchDone(Fetch fetch, long bytes, boolean success) {
+        // Late callbacks from cancelled fetches (possibly since re-queued) do not count
+        if (fetch.done || inFlight.get(fetch.key) != fetch) {
+            return;
+        }
+        fetch.done = true;
+        inFlight.remove(fetch.key);
+        bytesUsed += bytes;
+        if (success) {
+            completed++;
+        } else {
+            failed++;
+        }
+        dispatch();
+    }
+    
+    private final class Fetch implements Callback {
+        private final String query;
+        private final String key;
+        private SearchCoordinator.Cancellable call;
+        private boolean done;
+        
+        Fetch(String query) {
+            this.query = query;
+            this.key = QueryNormalizer.normalize(query);
+        }
+        
+        @Override
+        public void onComplete(long bytes) {
+            onFetchDone(this, bytes, true);
+        }
+        
+        @Override
+        public void onFailed() {
+            onFetchDone(this, 0, false);
+        }
+    }
+}
\ No newline at end of file
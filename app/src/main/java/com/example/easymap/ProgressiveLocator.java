@@ -0,0 +1,202 @@
+package com.example.easymap;
+
+// Two-stage location: answer immediately with whatever coarse position is at
+// hand (a recent cached fix, otherwise a network fix), then replace it with a
+// high-accuracy fix and say whether the position moved enough to matter.
+// Both requests run in parallel; the source is abstract so the policy can be
+// driven by a fake in tests.
+public class ProgressiveLocator {
+    // A cached fix older than this is not worth showing
+    static final long MAX_CACHED_AGE_MS = 2 * 60 * 1000;
+    // Coarser than this (metres) and a provisional fix misleads more than it helps
+    static final float MAX_PROVISIONAL_ACCURACY_M = 1500;
+    // The refined fix only counts as a move when it is at least this far from the
+    // provisional one, and further than its own accuracy radius
+    static final double SIGNIFICANT_DISTANCE_M = 50;
+    
+    public static final class Fix {
+        private final double latitude;
+        private final double longitude;
+        private final float accuracy;
+        private final long time;
+        private final Object tag;
+        
+        public Fix(double latitude, double longitude, float accuracy, long time, Object tag) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = accuracy;
+            this.time = time;
+            this.tag = tag;
+        }
+        
+        public double getLatitude() {
+            return latitude;
+        }
+        
+        public double getLongitude() {
+            return longitude;
+        }
+        
+        // Metres; 0 when unknown
+        public float getAccuracy() {
+            return accuracy;
+        }
+        
+        // Epoch millis when the fix was taken
+        public long getTime() {
+            return time;
+        }
+        
+        // The platform location object this fix came from
+        public Object getTag() {
+            return tag;
+        }
+    }
+    
+    public interface FixCallback {
+        void onFix(Fix fix);
+        void onError(String error);
+    }
+    
+    public interface Source {
+        // Most recent fix the platform remembers, or null
+        Fix lastKnown();
+        // One-shot request; highAccuracy=false should be fast (network/cell, cache allowed)
+        void request(boolean highAccuracy, FixCallback callback);
+        void cancel();
+    }
+    
+    public interface Listener {
+        void onProvisional(Fix fix, long ageMillis);
+        void onRefined(Fix fix, boolean movedSignificantly);
+        // Only when no fix at all could be obtained
+        void onFailed(String error);
+    }
+    
+    private final Source source;
+    private int session;
+    private Fix provisional;
+    private boolean refined;
+    private boolean fastPending;
+    private boolean precisePending;
+    
+    public ProgressiveLocator(Source source) {
+        this.source = source;
+    }
+    
+    public void start(Listener listener) {
+        int current;
+        Fix cached = source.lastKnown();
+        long now = currentTimeMillis();
+        boolean useCached = cached != null && now - cached.getTime() <= MAX_CACHED_AGE_MS
+            && cached.getAccuracy() <= MAX_PROVISIONAL_ACCURACY_M;
+        synchronized (this) {
+            current = ++session;
+            provisional = useCached ? cached : null;
+            refined = false;
+            fastPending = !useCached;
+            precisePending = true;
+        }
+        if (useCached) {
+            listener.onProvisional(cached, Math.max(0, now - cached.getTime()));
+        } else {
+            source.request(false, new FixCallback() {
+                @Override
+                public void onFix(Fix fix) {
+                    onFastFix(current, fix, listener);
+                }
+                
+                @Override
+                public void onError(String error) {
+                    onFastError(current, error, listener);
+                }
+            });
+        }
+        source.request(true, new FixCallback() {
+            @Override
+            public void onFix(Fix fix) {
+                onPreciseFix(current, fix, listener);
+            }
+            
+            @Override
+            public void onError(String error) {
+                onPreciseError(current, error, listener);
+            }
+        });
+    }
+    
+    public void cancel() {
+        synchronized (this) {
+            session++;
+        }
+        source.cancel();
+    }
+    
+    private void onFastFix(int current, Fix fix, Listener listener) {
+        synchronized (this) {
+            if (current != session) {
+                return;
+            }
+            fastPending = false;
+            // The precise fix beat it, or it is too coarse to show
+            if (refined || provisional != null || fix.getAccuracy() > MAX_PROVISIONAL_ACCURACY_M) {
+                return;
+            }
+            provisional = fix;
+        }
+        listener.onProvisional(fix, Math.max(0, currentTimeMillis() - fix.getTime()));
+    }
+    
+    private void onFastError(int current, String error, Listener listener) {
+        boolean failed;
+        synchronized (this) {
+            if (current != session) {
+                return;
+            }
+            fastPending = false;
+            failed = !precisePending && !refined && provisional == null;
+        }
+        if (failed) {
+            listener.onFailed(error);
+        }
+    }
+    
+    private void onPreciseFix(int current, Fix fix, Listener listener) {
+        boolean moved;
+        synchronized (this) {
+            if (current != session) {
+                return;
+            }
+            precisePending = false;
+            refined = true;
+            moved = provisional == null || movedSignificantly(provisional, fix);
+        }
+        listener.onRefined(fix, moved);
+    }
+    
+    private void onPreciseError(int current, String error, Listener listener) {
+        boolean failed;
+        synchronized (this) {
+            if (current != session) {
+                return;
+            }
+            precisePending = false;
+            // A provisional fix already on screen stays; the fast request may still answer
+            failed = !fastPending && provisional == null;
+        }
+        if (failed) {
+            listener.onFailed(error);
+        }
+    }
+    
+    static boolean movedSignificantly(Fix from, Fix to) {
+        double meters = ProximityRanker.distance(from.getLatitude(), from.getLongitude(),
+            to.getLatitude(), to.getLongitude());
+        return meters > Math.max(SIGNIFICANT_DISTANCE_M, to.getAccuracy());
+    }
+    
+    // Overridden in tests
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,121 @@
+package com.example.easymap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Orders a result set by great-circle distance from the user in a single pass.
+// The hot loop works on primitive lat/lng/score arrays, and the sort is a plain
+// long[] sort with the score and original index packed into each element, so
+// ranking thousands of places allocates no per-place objects until the final list.
+public final class ProximityRanker {
+    static final double EARTH_RADIUS_M = 6_371_008.8;
+    // WEIGHTED mode: each step down the backend's own ordering costs this many metres
+    static final double BACKEND_RANK_WEIGHT_M = 25;
+    // WEIGHTED mode: promoted places rank as if they were this much closer
+    static final double PROMOTED_DISTANCE_FACTOR = 0.5;
+    
+    public enum Mode {
+        // Nearest first
+        DISTANCE,
+        // Distance blended with the backend's relevance order and promotion
+        WEIGHTED
+    }
+    
+    private ProximityRanker() {
+    }
+    
+    public static List<PlaceResult> rank(List<PlaceResult> places, double originLat, double originLng, Mode mode) {
+        int n = places.size();
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        boolean[] promoted = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            PlaceResult place = places.get(i);
+            lats[i] = place.getLatitude();
+            lngs[i] = place.getLongitude();
+            promoted[i] = place.isPromoted();
+        }
+        
+        double[] meters = new double[n];
+        int[] order = rank(lats, lngs, promoted, n, originLat, originLng, mode, meters);
+        List<PlaceResult> ranked = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int index = order[i];
+            PlaceResult place = places.get(index);
+            String distance = formatDistance(meters[index]);
+            // A fresh copy rather than setDistance(): the same instance may already be
+            // on screen (e.g. from the cache) and the list differ compares by content
+            ranked.add(distance.equals(place.getDistance()) ? place : place.withDistance(distance));
+        }
+        return ranked;
+    }
+    
+    private static int[] rank(double[] lats, double[] lngs, boolean[] promoted, int n, double originLat,
+                              double originLng, Mode mode, double[] meters) {
+        distances(originLat, originLng, lats, lngs, n, meters);
+        double[] scores = meters;
+        if (mode == Mode.WEIGHTED) {
+            scores = new double[n];
+            for (int i = 0; i < n; i++) {
+                double distance = promoted[i] ? meters[i] * PROMOTED_DISTANCE_FACTOR : meters[i];
+                scores[i] = distance + BACKEND_RANK_WEIGHT_M * i;
+            }
+        }
+        return order(scores, n);
+    }
+    
+    // Haversine distance in metres from the origin to each of the first n points
+    public static void distances(double originLat, double originLng, double[] lats, double[] lngs, int n,
+                                 double[] out) {
+        double originLatRad = Math.toRadians(originLat);
+        double originLngRad = Math.toRadians(originLng);
+        double cosOrigin = Math.cos(originLatRad);
+        for (int i = 0; i < n; i++) {
+            double latRad = Math.toRadians(lats[i]);
+            double sinDLat = Math.sin((latRad - originLatRad) * 0.5);
+            double sinDLng = Math.sin((Math.toRadians(lngs[i]) - originLngRad) * 0.5);
+            double a = sinDLat * sinDLat + cosOrigin * Math.cos(latRad) * sinDLng * sinDLng;
+            out[i] = 2 * EARTH_RADIUS_M * Math.asin(Math.sqrt(Math.min(1, a)));
+        }
+    }
+    
+    public static double distance(double lat1, double lng1, double lat2, double lng2) {
+        double lat1Rad = Math.toRadians(lat1);
+        double lat2Rad = Math.toRadians(lat2);
+        double sinDLat = Math.sin((lat2Rad - lat1Rad) * 0.5);
+        double sinDLng = Math.sin(Math.toRadians(lng2 - lng1) * 0.5);
+        double a = sinDLat * sinDLat + Math.cos(lat1Rad) * Math.cos(lat2Rad) * sinDLng * sinDLng;
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.sqrt(Math.min(1, a)));
+    }
+    
+    // Indices of the first n scores in ascending order; ties keep their original order.
+    // Non-negative floats sort the same as their raw bits, so each (score, index) pair
+    // packs into one long and a primitive sort does the work.
+    public static int[] order(double[] scores, int n) {
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            double score = scores[i];
+            float key = Double.isNaN(score) || score < 0 ? Float.MAX_VALUE : (float) Math.min(score, Float.MAX_VALUE);
+            packed[i] = ((long) Float.floatToIntBits(key) << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) packed[i];
+        }
+        return order;
+    }
+    
+    public static String formatDistance(double meters) {
+        if (Double.isNaN(meters)) {
+            return PlaceResult.UNKNOWN_DISTANCE;
+        }
+        if (meters < 1000) {
+            return Math.round(meters) + " m";
+        }
+        // One decimal without String.format, which is slow enough to show up per place
+        long tenths = Math.round(meters / 100);
+        return (tenths / 10) + "." + (tenths % 10) + " km";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.example.easymap;
+
+import java.util.Locale;
+
+public final class QueryNormalizer {
+    
+    private QueryNormalizer() {
+    }
+    
+    // Lower-cases, collapses punctuation and whitespace and folds simple English
+    // plurals so that "Coffee  shops" and "coffee shop" end up as the same key.
+    public static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        String lower = query.toLowerCase(Locale.ROOT);
+        StringBuilder out = new StringBuilder(lower.length());
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c);
+            } else if (token.length() > 0) {
+                appendToken(out, token);
+            }
+        }
+        if (token.length() > 0) {
+            appendToken(out, token);
+        }
+        return out.toString();
+    }
+    
+    // Like normalize() but without plural folding, for matching what is still
+    // being typed: "bus" must stay a prefix of "bus station", not become "bu"
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder out = new StringBuilder(lower.length());
+        boolean space = false;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && out.length() > 0) {
+                    out.append(' ');
+                }
+                out.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return out.toString();
+    }
+    
+    private static void appendToken(StringBuilder out, StringBuilder token) {
+        if (out.length() > 0) {
+            out.append(' ');
+        }
+        out.append(singular(token.toString()));
+        token.setLength(0);
+    }
+    
+    static String singular(String word) {
+        int len = word.length();
+        if (len <= 3) {
+            return word;
+        }
+        if (word.endsWith("ies")) {
+            return word.substring(0, len - 3) + "y";
+        }
+        if (word.endsWith("ches") || word.endsWith("shes") || word.endsWith("sses") || word.endsWith("xes")) {
+            return word.substring(0, len - 2);
+        }
+        if (word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us") && !word.endsWith("is")) {
+            return word.substring(0, len - 1);
+        }
+        return word;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,302 @@
+package com.example.easymap;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Sends a request with a bounded tail latency instead of leaning on OkHttp's
+// generous timeouts:
+//  - one deadline for the whole exchange, reading the body included; when it
+//    passes every call is cancelled
+//  - up to maxAttempts attempts on connection failures, 429 and 5xx, spaced by
+//    full-jitter exponential backoff that never runs past the deadline
+//  - optionally a hedged second attempt once the first has waited longer than
+//    HedgeDelay (the backend's recent p95); whichever answers first wins
+//  - a CircuitBreaker that fails fast while the backend keeps failing
+// Only use it for requests that are safe to repeat (/chat only reads).
+public class ResilientCaller {
+    public enum Failure {
+        // Not sent: the backend failed too often recently
+        CIRCUIT_OPEN,
+        DEADLINE,
+        // Connection failures on every attempt
+        NETWORK,
+        // 429 or 5xx on the last attempt
+        SERVER_ERROR
+    }
+    
+    public interface Callback {
+        // The winning response: 2xx, or a status not worth retrying. The caller
+        // closes it; reading the body is still bounded by the deadline.
+        void onResponse(Call call, Response response) throws IOException;
+        void onFailure(Failure failure, IOException cause);
+    }
+    
+    public interface HedgeDelay {
+        // How long the first attempt may wait before a second one is sent; <= 0 disables hedging
+        long millis();
+    }
+    
+    private final OkHttpClient client;
+    private final CircuitBreaker breaker;
+    private final ScheduledExecutorService scheduler;
+    private final long deadlineMillis;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final HedgeDelay hedgeDelay;
+    
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong deadlinesMissed = new AtomicLong();
+    
+    public ResilientCaller(OkHttpClient client, CircuitBreaker breaker, ScheduledExecutorService scheduler,
+                           long deadlineMillis, int maxAttempts, long backoffMillis, long maxBackoffMillis,
+                           HedgeDelay hedgeDelay) {
+        this.client = client;
+        this.breaker = breaker;
+        this.scheduler = scheduler;
+        this.deadlineMillis = deadlineMillis;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.hedgeDelay = hedgeDelay;
+    }
+    
+    // Exactly one callback follows unless the returned handle is cancelled first.
+    // A refused request (circuit open) is reported before this returns.
+    public SearchCoordinator.Cancellable enqueue(Request request, Callback callback) {
+        if (!breaker.allowRequest()) {
+            callback.onFailure(Failure.CIRCUIT_OPEN, new IOException("Circuit open"));
+            return () -> {
+            };
+        }
+        Exchange exchange = new Exchange(request, callback);
+        exchange.start();
+        return exchange::cancel;
+    }
+    
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+    
+    public long getRetries() {
+        return retries.get();
+    }
+    
+    public long getHedges() {
+        return hedges.get();
+    }
+    
+    // Hedged attempts that answered before the original
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+    
+    public long getDeadlinesMissed() {
+        return deadlinesMissed.get();
+    }
+    
+    public String getSummary() {
+        return "breaker " + breaker.getState() + " (" + breaker.getRejected() + " rejected), "
+            + retries.get() + " retries, " + hedges.get() + " hedges (" + hedgeWins.get() + " won), "
+            + deadlinesMissed.get() + " deadlines missed";
+    }
+    
+    // Full jitter: uniform in [0, bound]. Overridden in tests.
+    long jitter(long bound) {
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+    
+    private final class Exchange {
+        private final Request request;
+        private final Callback callback;
+        private final long deadlineAt;
+        private final List<Call> inFlight = new ArrayList<>(2);
+        private final List<ScheduledFuture<?>> timers = new ArrayList<>();
+        private ScheduledFuture<?> deadline;
+        private Call hedge;
+        private Call winner;
+        private int attempts;
+        private boolean done;
+        
+        Exchange(Request request, Callback callback) {
+            this.request = request;
+            this.callback = callback;
+            this.deadlineAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        }
+        
+        synchronized void start() {
+            deadline = scheduler.schedule(this::onDeadline, deadlineMillis, TimeUnit.MILLISECONDS);
+            startAttempt(false);
+        }
+        
+        // Holding the lock
+        private void startAttempt(boolean hedged) {
+            attempts++;
+            Call call = client.newCall(request);
+            inFlight.add(call);
+            if (hedged) {
+                hedge = call;
+            }
+            call.enqueue(new okhttp3.Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    onAttemptFailed(call, Failure.NETWORK, e);
+                }
+                
+                @Override
+                public void onResponse(Call call, Response response) throws IOException {
+                    onAttemptResponse(call, response);
+                }
+            });
+            long hedgeAfter = hedgeDelay != null ? hedgeDelay.millis() : 0;
+            if (!hedged && hedgeAfter > 0 && attempts < maxAttempts && hedgeAfter < remainingMillis()) {
+                timers.add(scheduler.schedule(() -> startHedge(call), hedgeAfter, TimeUnit.MILLISECONDS));
+            }
+        }
+        
+        private synchronized void startHedge(Call slow) {
+            if (done || inFlight.size() != 1 || inFlight.get(0) != slow || attempts >= maxAttempts) {
+                return;
+            }
+            hedges.incrementAndGet();
+            startAttempt(true);
+        }
+        
+        private void onAttemptResponse(Call call, Response response) throws IOException {
+            int code = response.code();
+            if (code == 429 || code >= 500) {
+                response.close();
+                onAttemptFailed(call, Failure.SERVER_ERROR, new IOException("HTTP " + code));
+                return;
+            }
+            List<Call> losers;
+            synchronized (this) {
+                if (done) {
+                    response.close();
+                    return;
+                }
+                done = true;
+                winner = call;
+                inFlight.remove(call);
+                losers = new ArrayList<>(inFlight);
+                inFlight.clear();
+                cancelTimers();
+            }
+            if (call == hedge) {
+                hedgeWins.incrementAndGet();
+            }
+            for (Call loser : losers) {
+                loser.cancel();
+            }
+            breaker.onSuccess();
+            callback.onResponse(call, response);
+        }
+        
+        private void onAttemptFailed(Call call, Failure failure, IOException error) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                inFlight.remove(call);
+                if (!inFlight.isEmpty()) {
+                    // The other attempt may still answer
+                    return;
+                }
+                if (attempts < maxAttempts) {
+                    long backoff = jitter(Math.min(maxBackoffMillis, backoffMillis << Math.min(attempts - 1, 16)));
+                    if (backoff < remainingMillis()) {
+                        retries.incrementAndGet();
+                        timers.add(scheduler.schedule(this::retry, backoff, TimeUnit.MILLISECONDS));
+                        return;
+                    }
+                }
+                done = true;
+                deadline.cancel(false);
+                cancelTimers();
+            }
+            breaker.onFailure();
+            callback.onFailure(failure, error);
+        }
+        
+        private synchronized void retry() {
+            if (!done) {
+                startAttempt(false);
+            }
+        }
+        
+        private void onDeadline() {
+            List<Call> calls = new ArrayList<>();
+            boolean report;
+            synchronized (this) {
+                report = !done;
+                done = true;
+                calls.addAll(inFlight);
+                inFlight.clear();
+                // Still reading the body of the winner: cut it short too
+                if (winner != null) {
+                    calls.add(winner);
+                }
+                cancelTimers();
+            }
+            for (Call call : calls) {
+                call.cancel();
+            }
+            if (report) {
+                deadlinesMissed.incrementAndGet();
+                breaker.onFailure();
+                callback.onFailure(Failure.DEADLINE,
+                    new InterruptedIOException("No answer within " + deadlineMillis + " ms"));
+            }
+        }
+        
+        void cancel() {
+            List<Call> calls = new ArrayList<>();
+            boolean undecided;
+            synchronized (this) {
+                undecided = !done;
+                done = true;
+                calls.addAll(inFlight);
+                inFlight.clear();
+                if (winner != null) {
+                    calls.add(winner);
+                }
+                if (deadline != null) {
+                    deadline.cancel(false);
+                }
+                cancelTimers();
+            }
+            for (Call call : calls) {
+                call.cancel();
+            }
+            if (undecided) {
+                breaker.onCancelled();
+            }
+        }
+        
+        // Holding the lock
+        private void cancelTimers() {
+            for (ScheduledFuture<?> timer : timers) {
+                timer.cancel(false);
+            }
+            timers.clear();
+        }
+        
+        private long remainingMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(deadlineAt - System.nanoTime());
+        }
+    }
+}
\ No newline at end of file
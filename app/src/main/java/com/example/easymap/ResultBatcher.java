@@ -0,0 +1,89 @@
+package com.example.easymap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Hands places arriving one by one from a streamed response to the UI in small
+// batches: the first place goes out straight away so a marker appears as early
+// as possible, later ones are grouped per interval (or sooner once maxBatch are
+// waiting) so the list and map are not redrawn for every place.
+// add() may be called from any thread; the sink runs on the scheduler's thread.
+public class ResultBatcher {
+    public interface Scheduler {
+        // Handler::postDelayed on Android
+        boolean schedule(Runnable task, long delayMillis);
+    }
+    
+    public interface Sink {
+        void onBatch(List<PlaceResult> batch, boolean first);
+    }
+    
+    private final Scheduler scheduler;
+    private final long intervalMillis;
+    private final int maxBatch;
+    private final Sink sink;
+    private final Runnable flush = this::flush;
+    
+    private List<PlaceResult> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private boolean delivered;
+    private boolean cancelled;
+    
+    public ResultBatcher(Scheduler scheduler, long intervalMillis, int maxBatch, Sink sink) {
+        this.scheduler = scheduler;
+        this.intervalMillis = intervalMillis;
+        this.maxBatch = maxBatch;
+        this.sink = sink;
+    }
+    
+    public void add(PlaceResult place) {
+        long delay;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            pending.add(place);
+            if (flushScheduled && pending.size() < maxBatch) {
+                return;
+            }
+            delay = flushScheduled || !delivered ? 0 : intervalMillis;
+            flushScheduled = true;
+        }
+        scheduler.schedule(flush, delay);
+    }
+    
+    // Delivers whatever is still pending, then runs onDone on the scheduler's thread
+    public void finish(Runnable onDone) {
+        scheduler.schedule(() -> {
+            flush();
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+            }
+            onDone.run();
+        }, 0);
+    }
+    
+    // Drops pending places; nothing more reaches the sink
+    public synchronized void cancel() {
+        cancelled = true;
+        pending.clear();
+    }
+    
+    private void flush() {
+        List<PlaceResult> batch;
+        boolean first;
+        synchronized (this) {
+            flushScheduled = false;
+            if (cancelled || pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+            first = !delivered;
+            delivered = true;
+        }
+        sink.onBatch(batch, first);
+    }
+}
\ No newline at end of file
@@ -6,20 +6,50 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class ResultsAdapter extends RecyclerView.Adapter<ResultsAdapter.ViewHolder> {
-    private List<PlaceResult> results;
+    private final AsyncListDiffer<PlaceResult> differ;
     private OnItemClickListener listener;
     
+    // One listener for every row; the row's current position is resolved at click time
+    private final View.OnClickListener rowClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            ViewHolder holder = (ViewHolder) v.getTag();
+            int position = holder.getBindingAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                listener.onItemClick(differ.getCurrentList().get(position));
+            }
+        }
+    };
+    
+    static final DiffUtil.ItemCallback<PlaceResult> DIFF_CALLBACK = new DiffUtil.ItemCallback<PlaceResult>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull PlaceResult oldItem, @NonNull PlaceResult newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+        
+        @Override
+        public boolean areContentsTheSame(@NonNull PlaceResult oldItem, @NonNull PlaceResult newItem) {
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                && Objects.equals(oldItem.getSubtitle(), newItem.getSubtitle())
+                && oldItem.isPromoted() == newItem.isPromoted();
+        }
+    };
+    
     public interface OnItemClickListener {
         void onItemClick(PlaceResult result);
     }
     
-    public ResultsAdapter(List<PlaceResult> results, OnItemClickListener listener) {
-        this.results = results;
+    public ResultsAdapter(OnItemClickListener listener) {
+        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
         this.listener = listener;
     }
     
@@ -28,30 +58,28 @@ public class ResultsAdapter extends RecyclerView.Adapter<ResultsAdapter.ViewHold
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
             .inflate(android.R.layout.simple_list_item_2, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+        view.setTag(holder);
+        view.setOnClickListener(rowClickListener);
+        return holder;
     }
     
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        PlaceResult result = results.get(position);
+        PlaceResult result = differ.getCurrentList().get(position);
         holder.text1.setText(result.getName());
-        holder.text2.setText(result.getAddress() + " • " + result.getDistance());
-        
-        holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onItemClick(result);
-            }
-        });
+        holder.text2.setText(result.getSubtitle());
     }
     
     @Override
     public int getItemCount() {
-        return results.size();
+        return differ.getCurrentList().size();
     }
     
+    // Diffed against the current list on a background thread; only changed rows rebind.
+    // The list is copied because the differ needs a new instance to detect changes.
     public void updateResults(List<PlaceResult> newResults) {
-        this.results = newResults;
-        notifyDataSetChanged();
+        differ.submitList(new ArrayList<>(newResults));
     }
     
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -64,4 +92,4 @@ public class ResultsAdapter extends RecyclerView.Adapter<ResultsAdapter.ViewHold
             text2 = itemView.findViewById(android.R.id.text2);
         }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,284 @@
+package com.example.easymap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Two-tier cache for search results: an in-memory LRU in front of one file per
+// key on disk. Both tiers expire entries after the TTL; the disk tier is trimmed
+// oldest-first once it grows past its byte budget.
+public class SearchCache {
+    private static final int FILE_MAGIC = 0x45534331; // "ESC1"
+    private static final String FILE_SUFFIX = ".bin";
+    private static final String NO_LOCATION_CELL = "-";
+    
+    private final File directory;
+    private final int maxMemoryEntries;
+    private final long maxDiskBytes;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> memory;
+    
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    private static class Entry {
+        final List<PlaceResult> places;
+        final long createdAt;
+        
+        Entry(List<PlaceResult> places, long createdAt) {
+            this.places = places;
+            this.createdAt = createdAt;
+        }
+    }
+    
+    public SearchCache(File directory, int maxMemoryEntries, long maxDiskBytes, long ttlMillis) {
+        this.directory = directory;
+        this.maxMemoryEntries = maxMemoryEntries;
+        this.maxDiskBytes = maxDiskBytes;
+        this.ttlMillis = ttlMillis;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true);
+        if (directory != null && !directory.isDirectory()) {
+            directory.mkdirs();
+        }
+    }
+    
+    public static String key(String query, double latitude, double longitude) {
+        return QueryNormalizer.normalize(query) + "@" + GeoCell.encode(latitude, longitude);
+    }
+    
+    public static String key(String query) {
+        return QueryNormalizer.normalize(query) + "@" + NO_LOCATION_CELL;
+    }
+    
+    // Looks in memory first, then on disk. Disk hits are promoted to memory.
+    // Call off the main thread: a memory miss reads a file.
+    public List<PlaceResult> get(String key) {
+        long now = currentTimeMillis();
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (!isExpired(entry, now)) {
+                    memoryHits.incrementAndGet();
+                    return new ArrayList<>(entry.places);
+                }
+                memory.remove(key);
+            }
+        }
+        
+        Entry entry = readFromDisk(key, now);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        diskHits.incrementAndGet();
+        putInMemory(key, entry);
+        return new ArrayList<>(entry.places);
+    }
+    
+    public void put(String key, List<PlaceResult> places) {
+        Entry entry = new Entry(Collections.unmodifiableList(new ArrayList<>(places)), currentTimeMillis());
+        putInMemory(key, entry);
+        writeToDisk(key, entry);
+    }
+    
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+        File[] files = listCacheFiles();
+        for (File file : files) {
+            file.delete();
+        }
+    }
+    
+    public long getMemoryHits() { return memoryHits.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    
+    public double getHitRate() {
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+    
+    public String getStats() {
+        return "memoryHits=" + getMemoryHits()
+            + " diskHits=" + getDiskHits()
+            + " misses=" + getMisses()
+            + " evictions=" + getEvictions()
+            + " hitRate=" + String.format(Locale.US, "%.2f", getHitRate());
+    }
+    
+    // Overridden in tests to drive TTL expiry
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+    
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt > ttlMillis;
+    }
+    
+    private void putInMemory(String key, Entry entry) {
+        synchronized (memory) {
+            memory.put(key, entry);
+            Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+            while (memory.size() > maxMemoryEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+    
+    private Entry readFromDisk(String key, long now) {
+        if (directory == null) {
+            return null;
+        }
+        File file = fileFor(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || !key.equals(in.readUTF())) {
+                return null;
+            }
+            long createdAt = in.readLong();
+            int count = in.readInt();
+            List<PlaceResult> places = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = readNullableString(in);
+                String address = readNullableString(in);
+                double lat = in.readDouble();
+                double lng = in.readDouble();
+                String type = readNullableString(in);
+                StringPool pool = StringPool.shared();
+                places.add(new PlaceResult(name, pool.intern(address), lat, lng, PlaceResult.UNKNOWN_DISTANCE,
+                    pool.intern(type), in.readBoolean()));
+            }
+            Entry entry = new Entry(Collections.unmodifiableList(places), createdAt);
+            if (isExpired(entry, now)) {
+                file.delete();
+                return null;
+            }
+            // Touch so that disk trimming is least-recently-used rather than oldest-written
+            file.setLastModified(now);
+            return entry;
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+    }
+    
+    private void writeToDisk(String key, Entry entry) {
+        if (directory == null) {
+            return;
+        }
+        File file = fileFor(key);
+        File tmp = new File(directory, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeUTF(key);
+            out.writeLong(entry.createdAt);
+            out.writeInt(entry.places.size());
+            for (PlaceResult place : entry.places) {
+                writeNullableString(out, place.getName());
+                writeNullableString(out, place.getAddress());
+                out.writeDouble(place.getLatitude());
+                out.writeDouble(place.getLongitude());
+                writeNullableString(out, place.getType());
+                out.writeBoolean(place.isPromoted());
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        file.setLastModified(entry.createdAt);
+        trimDisk();
+    }
+    
+    private void trimDisk() {
+        File[] files = listCacheFiles();
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxDiskBytes) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (total <= maxDiskBytes) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+    
+    private File[] listCacheFiles() {
+        File[] files = directory != null ? directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX)) : null;
+        return files != null ? files : new File[0];
+    }
+    
+    private File fileFor(String key) {
+        return new File(directory, sha1(key) + FILE_SUFFIX);
+    }
+    
+    private static String sha1(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+    
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
\ No newline at end of file
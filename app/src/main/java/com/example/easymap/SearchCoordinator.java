@@ -0,0 +1,64 @@
+package com.example.easymap;
+
+// Decides which search is allowed to run and which results may reach the UI.
+// Every accepted query gets a new generation; starting one cancels the request
+// that was in flight, and results are only shown while their generation is
+// still the newest. A query identical to the one already pending is coalesced.
+public class SearchCoordinator {
+    
+    public interface Cancellable {
+        void cancel();
+    }
+    
+    private long generation;
+    private String activeQuery;
+    private Cancellable inFlight;
+    
+    // Returns the generation for the new search, or -1 if an identical query is
+    // already pending and this one was coalesced into it.
+    public synchronized long begin(String query) {
+        String normalized = QueryNormalizer.normalize(query);
+        if (normalized.equals(activeQuery)) {
+            return -1;
+        }
+        cancelInFlight();
+        activeQuery = normalized;
+        return ++generation;
+    }
+    
+    // Registers the request serving a generation. A request that has already been
+    // superseded is cancelled straight away.
+    public synchronized void attach(long searchGeneration, Cancellable request) {
+        if (searchGeneration != generation) {
+            request.cancel();
+            return;
+        }
+        inFlight = request;
+    }
+    
+    public synchronized boolean isCurrent(long searchGeneration) {
+        return searchGeneration == generation;
+    }
+    
+    // Marks a generation as done so the same query can be searched again
+    public synchronized void finish(long searchGeneration) {
+        if (searchGeneration == generation) {
+            activeQuery = null;
+            inFlight = null;
+        }
+    }
+    
+    // Supersedes whatever is running without starting anything new
+    public synchronized void cancelAll() {
+        cancelInFlight();
+        activeQuery = null;
+        generation++;
+    }
+    
+    private void cancelInFlight() {
+        if (inFlight != null) {
+            inFlight.cancel();
+            inFlight = null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,317 @@
+package com.example.easymap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Persisted history of searched queries and the places picked from their
+// results, with instant prefix suggestions while typing.
+//
+// Suggestions come from an immutable sorted array of folded keys: the whole
+// query plus the tail starting at each later word, so "dump" finds both
+// "dumplings" and "cheap dumplings". A lookup is a binary search to the first
+// key >= the prefix and a scan while keys still start with it; matches are
+// ordered by use count decayed by age. Writers rebuild the index and publish it
+// through a volatile field, so suggest() on the UI thread never takes a lock.
+//
+// Changes are kept in memory; flush() writes the file, so callers can batch
+// several changes into one write off the search path.
+//
+// File: int magic | int version | int count, then per entry
+//   UTF query | int count | long lastUsed | byte places | per place:
+//   UTF name | UTF address | double lat | double lng | UTF type ("" for null)
+public class SearchHistory {
+    private static final int FILE_MAGIC = 0x45534831; // "ESH1"
+    private static final int FILE_VERSION = 1;
+    static final int DEFAULT_MAX_ENTRIES = 500;
+    // Places picked from one query's results that are remembered with it
+    static final int MAX_PLACES_PER_QUERY = 5;
+    // A search's weight halves every week it is not repeated
+    static final long HALF_LIFE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    
+    public static final class Entry {
+        private final String query;
+        private final int count;
+        private final long lastUsed;
+        private final List<PlaceResult> places;
+        
+        Entry(String query, int count, long lastUsed, List<PlaceResult> places) {
+            this.query = query;
+            this.count = count;
+            this.lastUsed = lastUsed;
+            this.places = places;
+        }
+        
+        public String getQuery() { return query; }
+        public int getCount() { return count; }
+        public long getLastUsed() { return lastUsed; }
+        // Most recently picked first
+        public List<PlaceResult> getPlaces() { return places; }
+        
+        @Override
+        public String toString() {
+            // AutoCompleteTextView shows and completes with this
+            return query;
+        }
+    }
+    
+    // Sorted folded keys and, for each, the entry it points at
+    private static final class Index {
+        final String[] keys;
+        final Entry[] entries;
+        
+        Index(String[] keys, Entry[] entries) {
+            this.keys = keys;
+            this.entries = entries;
+        }
+    }
+    
+    private final File file;
+    private final int maxEntries;
+    // Keyed by QueryNormalizer.normalize(query); guarded by this
+    private final Map<String, Entry> entries = new HashMap<>();
+    private volatile Index index = new Index(new String[0], new Entry[0]);
+    // Changed since the last flush(); guarded by this
+    private boolean dirty;
+    
+    // file may be null to keep the history in memory only
+    public SearchHistory(File file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+    }
+    
+    // Reads the file; a missing or unreadable file leaves the history empty
+    public synchronized void load() {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            StringPool pool = StringPool.shared();
+            for (int i = 0; i < count; i++) {
+                String query = in.readUTF();
+                int uses = in.readInt();
+                long lastUsed = in.readLong();
+                int placeCount = in.readByte();
+                List<PlaceResult> places = new ArrayList<>(placeCount);
+                for (int p = 0; p < placeCount; p++) {
+                    String name = in.readUTF();
+                    String address = pool.intern(in.readUTF());
+                    double lat = in.readDouble();
+                    double lng = in.readDouble();
+                    String type = in.readUTF();
+                    places.add(new PlaceResult(name, address, lat, lng, PlaceResult.UNKNOWN_DISTANCE,
+                        type.isEmpty() ? null : pool.intern(type)));
+                }
+                entries.put(QueryNormalizer.normalize(query),
+                    new Entry(query, uses, lastUsed, Collections.unmodifiableList(places)));
+            }
+        } catch (IOException e) {
+            // Keep whatever was read before the damage
+        }
+        rebuild();
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    // A search was made for query
+    public synchronized void record(String query) {
+        String key = QueryNormalizer.normalize(query);
+        if (key.isEmpty()) {
+            return;
+        }
+        String display = query.trim().replaceAll("\\s+", " ");
+        Entry previous = entries.get(key);
+        entries.put(key, previous == null
+            ? new Entry(display, 1, currentTimeMillis(), Collections.emptyList())
+            : new Entry(display, previous.count + 1, currentTimeMillis(), previous.places));
+        trim();
+        rebuild();
+        dirty = true;
+    }
+    
+    // The user picked place from the results of query
+    public synchronized void recordSelection(String query, PlaceResult place) {
+        Entry previous = entries.get(QueryNormalizer.normalize(query));
+        if (previous == null) {
+            return;
+        }
+        List<PlaceResult> places = new ArrayList<>(MAX_PLACES_PER_QUERY);
+        places.add(place.withDistance(PlaceResult.UNKNOWN_DISTANCE));
+        for (PlaceResult kept : previous.places) {
+            if (kept.getId() != place.getId() && places.size() < MAX_PLACES_PER_QUERY) {
+                places.add(kept);
+            }
+        }
+        entries.put(QueryNormalizer.normalize(query), new Entry(previous.query, previous.count,
+            currentTimeMillis(), Collections.unmodifiableList(places)));
+        rebuild();
+        dirty = true;
+    }
+    
+    // Writes the file if anything changed since the last flush; returns whether it did
+    public synchronized boolean flush() throws IOException {
+        if (!dirty) {
+            return false;
+        }
+        save();
+        dirty = false;
+        return file != null;
+    }
+    
+    public Entry get(String query) {
+        String key = QueryNormalizer.normalize(query);
+        synchronized (this) {
+            return entries.get(key);
+        }
+    }
+    
+    // Most recently used first
+    public synchronized List<String> recent(int limit) {
+        List<Entry> all = new ArrayList<>(entries.values());
+        Collections.sort(all, (a, b) -> Long.compare(b.lastUsed, a.lastUsed));
+        List<String> queries = new ArrayList<>(Math.min(limit, all.size()));
+        for (int i = 0; i < all.size() && queries.size() < limit; i++) {
+            queries.add(all.get(i).query);
+        }
+        return queries;
+    }
+    
+    // Up to limit entries with a word starting with prefix, best first. Lock-free
+    // and allocation-light; safe to call on every keystroke.
+    public List<Entry> suggest(String prefix, int limit) {
+        String folded = QueryNormalizer.fold(prefix);
+        Index current = index;
+        List<Entry> matches = new ArrayList<>();
+        if (folded.isEmpty() || limit <= 0) {
+            return matches;
+        }
+        int start = Arrays.binarySearch(current.keys, folded);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        long now = currentTimeMillis();
+        double[] scores = new double[limit];
+        for (int i = start; i < current.keys.length && current.keys[i].startsWith(folded); i++) {
+            Entry entry = current.entries[i];
+            if (matches.contains(entry)) {
+                continue;
+            }
+            double score = score(entry, now);
+            int at = matches.size();
+            if (at == limit) {
+                if (score <= scores[limit - 1]) {
+                    continue;
+                }
+                matches.remove(--at);
+            }
+            // Insertion into the small best-first list
+            while (at > 0 && scores[at - 1] < score) {
+                if (at < limit) {
+                    scores[at] = scores[at - 1];
+                }
+                at--;
+            }
+            matches.add(at, entry);
+            scores[at] = score;
+        }
+        return matches;
+    }
+    
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+    
+    private static double score(Entry entry, long now) {
+        double age = Math.max(0, now - entry.lastUsed);
+        return entry.count * Math.pow(0.5, age / HALF_LIFE_MILLIS);
+    }
+    
+    // Drops the least recently used entries beyond maxEntries
+    private void trim() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        List<Map.Entry<String, Entry>> all = new ArrayList<>(entries.entrySet());
+        Collections.sort(all, (a, b) -> Long.compare(a.getValue().lastUsed, b.getValue().lastUsed));
+        for (int i = 0; i < all.size() - maxEntries; i++) {
+            entries.remove(all.get(i).getKey());
+        }
+    }
+    
+    private void rebuild() {
+        List<String> keys = new ArrayList<>(entries.size() * 2);
+        List<Entry> owners = new ArrayList<>(entries.size() * 2);
+        for (Entry entry : entries.values()) {
+            String folded = QueryNormalizer.fold(entry.query);
+            for (int i = 0; i < folded.length(); i++) {
+                if (i == 0 || folded.charAt(i - 1) == ' ') {
+                    keys.add(folded.substring(i));
+                    owners.add(entry);
+                }
+            }
+        }
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(keys::get));
+        String[] sortedKeys = new String[order.length];
+        Entry[] sortedEntries = new Entry[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedKeys[i] = keys.get(order[i]);
+            sortedEntries[i] = owners.get(order[i]);
+        }
+        index = new Index(sortedKeys, sortedEntries);
+    }
+    
+    // Whole file rewritten through a temp file; it holds at most maxEntries small entries
+    private void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries.values()) {
+                out.writeUTF(entry.query);
+                out.writeInt(entry.count);
+                out.writeLong(entry.lastUsed);
+                out.writeByte(entry.places.size());
+                for (PlaceResult place : entry.places) {
+                    out.writeUTF(place.getName() != null ? place.getName() : "");
+                    out.writeUTF(place.getAddress() != null ? place.getAddress() : "");
+                    out.writeDouble(place.getLatitude());
+                    out.writeDouble(place.getLongitude());
+                    out.writeUTF(place.getType() != null ? place.getType() : "");
+                }
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+}
\ No newline at end of file
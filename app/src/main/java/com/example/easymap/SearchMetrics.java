@@ -0,0 +1,216 @@
+package com.example.easymap;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-stage search latency and error counts. A search is identified by its
+// SearchCoordinator generation: start() opens a trace, each stage() call
+// records the time since the previous checkpoint into that stage's histogram,
+// and finish() records the end-to-end time. Traces of superseded searches are
+// dropped so cancelled work does not skew the numbers.
+public class SearchMetrics {
+    public enum Stage {
+        // Activity start until the first location fix (recorded directly, not per search)
+        LOCATION_FIX,
+        // Queueing on the fetch stage plus the cache lookup
+        CACHE,
+        // Request sent until response headers arrive, /chat or AMap POI search
+        NETWORK,
+        // /chat alone, enqueued until response headers; what hedging's p95 comes from
+        CHAT,
+        // Response body decoded into PlaceResults
+        PARSE,
+        RANK,
+        // Waiting for the main thread plus list, camera and cluster hand-off
+        RENDER,
+        // start() until the first streamed place is on screen (time to first marker)
+        FIRST_RESULT,
+        // start() to finish()
+        TOTAL
+    }
+    
+    public enum Counter {
+        SEARCHES,
+        CACHE_HITS,
+        OFFLINE_ANSWERS,
+        // Translated on device and answered by AMap's POI search, no /chat call
+        LOCAL_ANSWERS,
+        // A suggestion picked from search history, answered from stored places
+        HISTORY_ANSWERS,
+        // Keywords the backend reported that were added to the local table
+        KEYWORDS_LEARNED,
+        SEARCHES_WITHOUT_LOCATION,
+        // "Failed to connect to AI"
+        CONNECT_FAILED,
+        // "AI service error": 4xx, or 429/5xx on every attempt
+        SERVICE_ERROR,
+        // /chat gave no answer within the per-search deadline
+        DEADLINE_EXCEEDED,
+        // /chat not called because the circuit breaker was open
+        CIRCUIT_OPEN,
+        PARSE_ERROR,
+        LOCATION_FAILED,
+        // Background fetches that completed and warmed the cache
+        PREFETCHES
+    }
+    
+    // Traces still open when this many newer searches have started are abandoned
+    private static final int MAX_OPEN_TRACES = 8;
+    
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final Map<Counter, AtomicLong> counters = new EnumMap<>(Counter.class);
+    // generation -> nanoTime of the last checkpoint; element 0 is the start
+    private final Map<Long, long[]> traces = new ConcurrentHashMap<>();
+    
+    public SearchMetrics() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new AtomicLong());
+        }
+    }
+    
+    public void start(long generation) {
+        long now = nanoTime();
+        traces.put(generation, new long[]{now, now});
+        increment(Counter.SEARCHES);
+        if (traces.size() > MAX_OPEN_TRACES) {
+            for (Iterator<Long> it = traces.keySet().iterator(); it.hasNext(); ) {
+                if (it.next() <= generation - MAX_OPEN_TRACES) {
+                    it.remove();
+                }
+            }
+        }
+    }
+    
+    // Records the time since the previous checkpoint of this search into the stage
+    public void stage(long generation, Stage stage) {
+        long[] trace = traces.get(generation);
+        if (trace == null) {
+            return;
+        }
+        long now = nanoTime();
+        synchronized (trace) {
+            histograms.get(stage).recordNanos(now - trace[1]);
+            trace[1] = now;
+        }
+    }
+    
+    // Records the time since start() into the stage without moving the checkpoint
+    public void mark(long generation, Stage stage) {
+        long[] trace = traces.get(generation);
+        if (trace != null) {
+            histograms.get(stage).recordNanos(nanoTime() - trace[0]);
+        }
+    }
+    
+    public void finish(long generation) {
+        long[] trace = traces.remove(generation);
+        if (trace != null) {
+            histograms.get(Stage.TOTAL).recordNanos(nanoTime() - trace[0]);
+        }
+    }
+    
+    // The search was superseded or failed; its partial timings are kept, no total
+    public void abandon(long generation) {
+        traces.remove(generation);
+    }
+    
+    public void record(Stage stage, long nanos) {
+        histograms.get(stage).recordNanos(nanos);
+    }
+    
+    public void increment(Counter counter) {
+        counters.get(counter).incrementAndGet();
+    }
+    
+    public LatencyHistogram histogram(Stage stage) {
+        return histograms.get(stage);
+    }
+    
+    public long count(Counter counter) {
+        return counters.get(counter).get();
+    }
+    
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(pad("stage", -14)).append(pad("n", 6)).append(pad("p50", 9)).append(pad("p95", 9))
+            .append(pad("p99", 9)).append(pad("max", 9)).append("  (ms)\n");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms.get(stage);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            out.append(pad(stage.name().toLowerCase(Locale.ROOT), -14))
+                .append(pad(Long.toString(histogram.getCount()), 6))
+                .append(pad(millis(histogram.percentileMicros(50)), 9))
+                .append(pad(millis(histogram.percentileMicros(95)), 9))
+                .append(pad(millis(histogram.percentileMicros(99)), 9))
+                .append(pad(millis(histogram.getMaxMicros()), 9))
+                .append('\n');
+        }
+        for (Counter counter : Counter.values()) {
+            long value = counters.get(counter).get();
+            if (value > 0) {
+                out.append(counter.name().toLowerCase(Locale.ROOT)).append('=').append(value).append('\n');
+            }
+        }
+        return out.toString();
+    }
+    
+    public void dumpTo(Writer writer) throws IOException {
+        writer.write(dump());
+        writer.flush();
+    }
+    
+    // Appends a timestamped dump, so one file tracks a device across sessions.
+    // Once the file is past maxBytes it becomes <name>.1, replacing the one
+    // before, and a new file is started: at most about twice that is kept.
+    public void appendTo(File file, long maxBytes) throws IOException {
+        if (file.length() > maxBytes) {
+            File previous = new File(file.getPath() + ".1");
+            if ((previous.exists() && !previous.delete()) || !file.renameTo(previous)) {
+                throw new IOException("Failed to rotate " + file);
+            }
+        }
+        try (Writer writer = new FileWriter(file, true)) {
+            writer.write("# " + System.currentTimeMillis() + "\n");
+            dumpTo(writer);
+        }
+    }
+    
+    // Overridden in tests
+    long nanoTime() {
+        return System.nanoTime();
+    }
+    
+    private static String millis(long micros) {
+        long tenths = (micros + 50) / 100;
+        return (tenths / 10) + "." + (tenths % 10);
+    }
+    
+    // Right-aligned to width, or left-aligned for a negative width
+    private static String pad(String value, int width) {
+        StringBuilder padded = new StringBuilder();
+        int spaces = Math.abs(width) - value.length();
+        if (width < 0) {
+            padded.append(value);
+        }
+        for (int i = 0; i < spaces; i++) {
+            padded.append(' ');
+        }
+        if (width > 0) {
+            padded.append(value);
+        }
+        return padded.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,370 @@
+package com.example.easymap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A search as explicit stages, each an interface that can be replaced or run
+// on its own in a test:
+//
+//   location -> fetch -> parse -> rank -> render
+//
+// Location and the start of fetch run on the fetch executor, parse and rank on
+// their own executors, render on the UI executor. Fetch may finish
+// asynchronously (HTTP, POI search) and either hands over places directly
+// (cache, stored or local answers skip parse) or a response body to decode.
+// Every search carries a CancellationToken: each hand-off checks it, anything
+// a stage registers on it is cancelled with it, and a cancelled search never
+// reaches the UI executor's render or onFailed. cancelAll() cancels every
+// search still running, e.g. from onDestroy.
+//
+// The pipeline records PARSE and RANK into SearchMetrics and abandons the trace
+// of a cancelled or failed search; fetch and render record the stages only they
+// can tell apart (cache vs network, first result, end to end).
+public class SearchPipeline {
+    
+    // Where the places of a search came from
+    public enum Origin {
+        CACHE,
+        // Places stored for a query picked from search history
+        HISTORY,
+        // AMap POI search with an on-device keyword
+        LOCAL,
+        NETWORK,
+        // The offline store, after /chat failed
+        OFFLINE
+    }
+    
+    // What started a search
+    public enum Trigger {
+        // Search-as-you-type after a pause; often a fragment, so not remembered
+        TYPEAHEAD,
+        // The search button
+        SUBMIT,
+        // A query picked from search history, which may answer from stored places
+        SUGGESTION;
+        
+        // The user asked for this search rather than typeahead guessing at it;
+        // only these are remembered in the search history
+        public boolean isSubmitted() {
+            return this != TYPEAHEAD;
+        }
+    }
+    
+    public static final class Search {
+        private final long generation;
+        private final String query;
+        private final Trigger trigger;
+        private final CancellationToken token = new CancellationToken();
+        private volatile double latitude = Double.NaN;
+        private volatile double longitude = Double.NaN;
+        
+        Search(long generation, String query, Trigger trigger) {
+            this.generation = generation;
+            this.query = query;
+            this.trigger = trigger;
+        }
+        
+        public long getGeneration() { return generation; }
+        public String getQuery() { return query; }
+        public Trigger getTrigger() { return trigger; }
+        public boolean isFromHistory() { return trigger == Trigger.SUGGESTION; }
+        public boolean isSubmitted() { return trigger.isSubmitted(); }
+        public CancellationToken getToken() { return token; }
+        public boolean isCancelled() { return token.isCancelled(); }
+        public double getLatitude() { return latitude; }
+        public double getLongitude() { return longitude; }
+        public boolean hasLocation() { return !Double.isNaN(latitude); }
+        
+        public void setLocation(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+    
+    // What fetch produced: places ready to rank, or a body for parse to decode
+    public static final class Fetched {
+        private final Origin origin;
+        private final List<PlaceResult> places;
+        private final Reader body;
+        private final String contentType;
+        private final Closeable response;
+        
+        private Fetched(Origin origin, List<PlaceResult> places, Reader body, String contentType, Closeable response) {
+            this.origin = origin;
+            this.places = places;
+            this.body = body;
+            this.contentType = contentType;
+            this.response = response;
+        }
+        
+        public static Fetched places(Origin origin, List<PlaceResult> places) {
+            return new Fetched(origin, places, null, null, null);
+        }
+        
+        // response is closed once parse is done with body, or if the search is cancelled first
+        public static Fetched body(Reader body, String contentType, Closeable response) {
+            return new Fetched(Origin.NETWORK, null, body, contentType, response);
+        }
+        
+        public Origin getOrigin() { return origin; }
+        public List<PlaceResult> getPlaces() { return places; }
+        public Reader getBody() { return body; }
+        public String getContentType() { return contentType; }
+        public boolean hasBody() { return body != null; }
+        
+        void close() {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException e) {
+                    // Nothing left to read
+                }
+            }
+        }
+    }
+    
+    public interface LocationStage {
+        // Fills in search.setLocation() if a position is known; may leave it unset
+        void locate(Search search);
+    }
+    
+    public interface FetchStage {
+        // Calls exactly one of the callback's methods, from any thread, unless the
+        // search is cancelled first. Long-running work registers on the token.
+        // Throwing instead counts as onFailed.
+        void fetch(Search search, FetchCallback callback);
+    }
+    
+    public interface FetchCallback {
+        void onFetched(Fetched fetched);
+        void onFailed(Exception error);
+        
+        // Runs more fetch work back on the fetch executor, e.g. a fallback decided
+        // in a callback on the main thread; skipped once the search is cancelled
+        void continueFetch(Runnable step);
+    }
+    
+    public interface ParseStage {
+        // progress sees each place as soon as it is decoded
+        List<PlaceResult> parse(Search search, Fetched fetched, PlaceResultParser.Listener progress)
+            throws IOException;
+    }
+    
+    public interface RankStage {
+        List<PlaceResult> rank(Search search, List<PlaceResult> places);
+    }
+    
+    public interface RenderStage {
+        // On the parse executor, for places of a streamed body as they are decoded
+        default void onProgress(Search search, PlaceResult place) {
+        }
+        
+        // On the UI executor, for a search that was not cancelled
+        void render(Search search, List<PlaceResult> places, Origin origin);
+        void onFailed(Search search, Exception error);
+    }
+    
+    private final Executor fetchExecutor;
+    private final Executor parseExecutor;
+    private final Executor rankExecutor;
+    private final Executor uiExecutor;
+    private final LocationStage location;
+    private final FetchStage fetch;
+    private final ParseStage parse;
+    private final RankStage rank;
+    private final RenderStage render;
+    private final SearchMetrics metrics;
+    private final Set<Search> active = ConcurrentHashMap.newKeySet();
+    
+    public SearchPipeline(Executor fetchExecutor, Executor parseExecutor, Executor rankExecutor, Executor uiExecutor,
+                          LocationStage location, FetchStage fetch, ParseStage parse, RankStage rank,
+                          RenderStage render, SearchMetrics metrics) {
+        this.fetchExecutor = fetchExecutor;
+        this.parseExecutor = parseExecutor;
+        this.rankExecutor = rankExecutor;
+        this.uiExecutor = uiExecutor;
+        this.location = location;
+        this.fetch = fetch;
+        this.parse = parse;
+        this.rank = rank;
+        this.render = render;
+        this.metrics = metrics;
+    }
+    
+    // Starts a search; the caller decides the generation (see SearchCoordinator)
+    // and may cancel it through the returned search's token
+    public Search start(long generation, String query, Trigger trigger) {
+        Search search = new Search(generation, query, trigger);
+        active.add(search);
+        search.getToken().onCancel(() -> {
+            active.remove(search);
+            metrics.abandon(generation);
+        });
+        FetchCallback callback = new FetchCallback() {
+            @Override
+            public void onFetched(Fetched fetched) {
+                SearchPipeline.this.onFetched(search, fetched);
+            }
+            
+            @Override
+            public void onFailed(Exception error) {
+                fail(search, error);
+            }
+            
+            @Override
+            public void continueFetch(Runnable step) {
+                submit(fetchExecutor, search, () -> runFetch(search, step));
+            }
+        };
+        submit(fetchExecutor, search, () -> {
+            location.locate(search);
+            if (!search.isCancelled()) {
+                runFetch(search, () -> fetch.fetch(search, callback));
+            }
+        });
+        return search;
+    }
+    
+    // A fetch step that throws (say, a startup task that failed) fails the search
+    // as onFailed would; otherwise render never runs and nothing finishes it
+    private void runFetch(Search search, Runnable step) {
+        try {
+            step.run();
+        } catch (RuntimeException e) {
+            fail(search, e);
+        }
+    }
+    
+    // Cancels every search still running
+    public void cancelAll() {
+        for (Search search : active) {
+            search.getToken().cancel();
+        }
+    }
+    
+    public int getActiveCount() {
+        return active.size();
+    }
+    
+    // A bounded executor for one stage. When its queue is full the oldest queued
+    // stage is dropped and its search cancelled: the newest search is the one
+    // the user is waiting for. After shutdown, submitted stages are cancelled.
+    public static ThreadPoolExecutor newStageExecutor(String name, int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), task -> {
+                Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new DropOldestStage());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    private void onFetched(Search search, Fetched fetched) {
+        if (search.isCancelled()) {
+            fetched.close();
+            return;
+        }
+        if (!fetched.hasBody()) {
+            submit(rankExecutor, search, () -> rankAndRender(search, fetched.getPlaces(), fetched.getOrigin()));
+            return;
+        }
+        search.getToken().onCancel(fetched::close);
+        submit(parseExecutor, search, () -> {
+            List<PlaceResult> places;
+            try {
+                places = parse.parse(search, fetched, place -> {
+                    if (!search.isCancelled()) {
+                        render.onProgress(search, place);
+                    }
+                });
+            } catch (IOException e) {
+                fail(search, e);
+                return;
+            } finally {
+                fetched.close();
+            }
+            if (search.isCancelled()) {
+                return;
+            }
+            metrics.stage(search.getGeneration(), SearchMetrics.Stage.PARSE);
+            submit(rankExecutor, search, () -> rankAndRender(search, places, fetched.getOrigin()));
+        });
+    }
+    
+    private void rankAndRender(Search search, List<PlaceResult> places, Origin origin) {
+        List<PlaceResult> ranked = rank.rank(search, places);
+        metrics.stage(search.getGeneration(), SearchMetrics.Stage.RANK);
+        submit(uiExecutor, search, () -> {
+            active.remove(search);
+            render.render(search, ranked, origin);
+        });
+    }
+    
+    private void fail(Search search, Exception error) {
+        if (search.isCancelled()) {
+            return;
+        }
+        metrics.abandon(search.getGeneration());
+        submit(uiExecutor, search, () -> {
+            active.remove(search);
+            render.onFailed(search, error);
+        });
+    }
+    
+    private void submit(Executor executor, Search search, Runnable stage) {
+        if (!search.isCancelled()) {
+            executor.execute(new StageTask(search, stage));
+        }
+    }
+    
+    // Checks the token once more when the stage actually runs
+    private static final class StageTask implements Runnable {
+        final Search search;
+        final Runnable stage;
+        
+        StageTask(Search search, Runnable stage) {
+            this.search = search;
+            this.stage = stage;
+        }
+        
+        @Override
+        public void run() {
+            if (!search.isCancelled()) {
+                stage.run();
+            }
+        }
+    }
+    
+    private static final class DropOldestStage implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                cancel(task);
+                return;
+            }
+            Runnable oldest = executor.getQueue().poll();
+            cancel(oldest);
+            if (!executor.getQueue().offer(task)) {
+                cancel(task);
+            }
+        }
+        
+        private static void cancel(Runnable task) {
+            if (task instanceof StageTask) {
+                ((StageTask) task).search.getToken().cancel();
+            }
+        }
+    }
+}
\ No newline at end of file
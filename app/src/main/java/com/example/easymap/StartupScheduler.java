@@ -0,0 +1,203 @@
+package com.example.easymap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+// Runs app initializers in phases so only what the first frame needs happens
+// before it. BEFORE_FIRST_DRAW tasks run inline from start(); BACKGROUND tasks
+// are handed to the background executor at the same time; AFTER_FIRST_DRAW
+// tasks are posted to the main thread one at a time once onFirstDraw() is
+// called; LAZY tasks run on whichever thread first calls get(). Every task
+// records when it started and how long it took, relative to the scheduler's
+// creation.
+public class StartupScheduler {
+    public enum Phase {
+        BEFORE_FIRST_DRAW,
+        AFTER_FIRST_DRAW,
+        BACKGROUND,
+        LAZY
+    }
+    
+    public interface Initializer<T> {
+        T create();
+    }
+    
+    public final class Task<T> {
+        private final String name;
+        private final Phase phase;
+        private final Initializer<T> initializer;
+        // Held while the initializer runs; the fields below are readable without it
+        private final Object runLock = new Object();
+        private volatile boolean done;
+        private volatile T value;
+        private volatile RuntimeException error;
+        private volatile long startNanos = -1;
+        private volatile long durationNanos = -1;
+        private volatile String threadName;
+        
+        private Task(String name, Phase phase, Initializer<T> initializer) {
+            this.name = name;
+            this.phase = phase;
+            this.initializer = initializer;
+        }
+        
+        // Runs the initializer now if nothing has yet; waits if another thread is
+        // running it. Rethrows whatever the initializer threw.
+        public T get() {
+            run();
+            if (error != null) {
+                throw error;
+            }
+            return value;
+        }
+        
+        public boolean isDone() {
+            return done;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public Phase getPhase() {
+            return phase;
+        }
+        
+        // Nanoseconds after the scheduler was created that the task started; -1 if not yet
+        public long getStartNanos() {
+            return startNanos;
+        }
+        
+        // -1 until done
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+        
+        public String getThreadName() {
+            return threadName;
+        }
+        
+        private void run() {
+            synchronized (runLock) {
+                if (done) {
+                    return;
+                }
+                threadName = Thread.currentThread().getName();
+                long start = System.nanoTime();
+                startNanos = start - createdNanos;
+                try {
+                    value = initializer.create();
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                durationNanos = System.nanoTime() - start;
+                done = true;
+            }
+        }
+    }
+    
+    private final Executor mainThread;
+    private final Executor background;
+    private final long createdNanos = System.nanoTime();
+    private final List<Task<?>> tasks = new ArrayList<>();
+    private boolean started;
+    private boolean firstDrawSeen;
+    
+    public StartupScheduler(Executor mainThread, Executor background) {
+        this.mainThread = mainThread;
+        this.background = background;
+    }
+    
+    public synchronized <T> Task<T> add(String name, Phase phase, Initializer<T> initializer) {
+        if (started && phase != Phase.LAZY) {
+            throw new IllegalStateException("Task " + name + " added after start()");
+        }
+        Task<T> task = new Task<>(name, phase, initializer);
+        tasks.add(task);
+        return task;
+    }
+    
+    // Call on the main thread from onCreate
+    public void start() {
+        List<Task<?>> snapshot;
+        synchronized (this) {
+            if (started) {
+                return;
+            }
+            started = true;
+            snapshot = new ArrayList<>(tasks);
+        }
+        for (Task<?> task : snapshot) {
+            if (task.phase == Phase.BACKGROUND) {
+                background.execute(task::run);
+            }
+        }
+        for (Task<?> task : snapshot) {
+            if (task.phase == Phase.BEFORE_FIRST_DRAW) {
+                task.run();
+            }
+        }
+    }
+    
+    // Call once the first frame has been drawn
+    public void onFirstDraw() {
+        List<Task<?>> snapshot;
+        synchronized (this) {
+            if (firstDrawSeen) {
+                return;
+            }
+            firstDrawSeen = true;
+            snapshot = new ArrayList<>(tasks);
+        }
+        for (Task<?> task : snapshot) {
+            if (task.phase == Phase.AFTER_FIRST_DRAW) {
+                // Separate posts so input events can run in between
+                mainThread.execute(task::run);
+            }
+        }
+    }
+    
+    public synchronized List<Task<?>> getTasks() {
+        return new ArrayList<>(tasks);
+    }
+    
+    // Wall time from the first task of the phase starting to its last finishing;
+    // -1 until every task of the phase is done
+    public long getPhaseNanos(Phase phase) {
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (Task<?> task : getTasks()) {
+            if (task.phase != phase) {
+                continue;
+            }
+            long start = task.getStartNanos();
+            long duration = task.getDurationNanos();
+            if (duration < 0) {
+                return -1;
+            }
+            first = Math.min(first, start);
+            last = Math.max(last, start + duration);
+        }
+        return first == Long.MAX_VALUE ? 0 : last - first;
+    }
+    
+    // e.g. "views 12ms@0 (main), http 40ms@1 (pool-1-thread-1), search cache -"
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (Task<?> task : getTasks()) {
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(task.name).append(' ');
+            long duration = task.getDurationNanos();
+            if (duration < 0) {
+                summary.append('-');
+            } else {
+                summary.append(duration / 1_000_000).append("ms@").append(task.getStartNanos() / 1_000_000)
+                    .append(" (").append(task.getThreadName()).append(')');
+            }
+        }
+        return summary.toString();
+    }
+}
\ No newline at end of file
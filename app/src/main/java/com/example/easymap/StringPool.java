@@ -0,0 +1,44 @@
+package com.example.easymap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Deduplicates the strings that repeat across results (categories, addresses,
+// names seen in earlier responses) so each distinct value is held once. Unlike
+// String.intern() the pool is bounded: when it fills up it starts over, which
+// only costs some duplicates until it warms up again.
+public final class StringPool {
+    static final int DEFAULT_MAX_ENTRIES = 8192;
+    private static final StringPool SHARED = new StringPool(DEFAULT_MAX_ENTRIES);
+    
+    private final int maxEntries;
+    private final Map<String, String> pool = new HashMap<>();
+    
+    public StringPool(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+    
+    // The pool used for every PlaceResult the app decodes
+    public static StringPool shared() {
+        return SHARED;
+    }
+    
+    public synchronized String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = pool.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (pool.size() >= maxEntries) {
+            pool.clear();
+        }
+        pool.put(value, value);
+        return value;
+    }
+    
+    public synchronized int size() {
+        return pool.size();
+    }
+}
\ No newline at end of file
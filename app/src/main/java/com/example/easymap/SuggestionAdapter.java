@@ -0,0 +1,88 @@
+package com.example.easymap;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Drop-down for the search box, fed from SearchHistory on every keystroke. The
+// framework runs the filter off the UI thread; the lookup itself is a binary
+// search over an in-memory array, so suggestions keep up with typing. Until the
+// history has loaded there are simply no suggestions.
+public class SuggestionAdapter extends BaseAdapter implements Filterable {
+    private final LayoutInflater inflater;
+    private final StartupScheduler.Task<SearchHistory> history;
+    private final int limit;
+    private List<SearchHistory.Entry> suggestions = new ArrayList<>();
+    
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            List<SearchHistory.Entry> found = constraint != null && history.isDone()
+                ? history.get().suggest(constraint.toString(), limit) : new ArrayList<>();
+            results.values = found;
+            results.count = found.size();
+            return results;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            suggestions = results.values != null
+                ? (List<SearchHistory.Entry>) results.values : new ArrayList<>();
+            if (results.count > 0) {
+                notifyDataSetChanged();
+            } else {
+                notifyDataSetInvalidated();
+            }
+        }
+        
+        @Override
+        public CharSequence convertResultToString(Object resultValue) {
+            return ((SearchHistory.Entry) resultValue).getQuery();
+        }
+    };
+    
+    public SuggestionAdapter(Context context, StartupScheduler.Task<SearchHistory> history, int limit) {
+        this.inflater = LayoutInflater.from(context);
+        this.history = history;
+        this.limit = limit;
+    }
+    
+    @Override
+    public int getCount() {
+        return suggestions.size();
+    }
+    
+    @Override
+    public SearchHistory.Entry getItem(int position) {
+        return suggestions.get(position);
+    }
+    
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+    
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view = convertView instanceof TextView
+            ? (TextView) convertView
+            : (TextView) inflater.inflate(android.R.layout.simple_dropdown_item_1line, parent, false);
+        view.setText(getItem(position).getQuery());
+        return view;
+    }
+    
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+}
\ No newline at end of file
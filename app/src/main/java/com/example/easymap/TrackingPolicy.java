@@ -0,0 +1,142 @@
+package com.example.easymap;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+// Decides how often continuous tracking should ask for a fix and which fixes
+// are worth telling anyone about. The interval is sized so that a fix arrives
+// roughly every min-movement metres at the observed speed, widened further on
+// low battery; a standing user is polled at the slowest rate on network
+// positioning only. Network fixes can be off by more than a walker covers
+// between two of them, so speed is measured from the latest recent fix the new
+// one is clearly apart from: displacement adds up over several fixes until it
+// clears their accuracy radius. Fixes inside the movement threshold (or inside
+// their own accuracy radius) are dropped, and moving past the refresh distance
+// since the last refresh asks the caller to refresh location-dependent results.
+public class TrackingPolicy {
+    static final long MIN_INTERVAL_MS = 2_000;
+    static final long MAX_INTERVAL_MS = 60_000;
+    static final long LOW_BATTERY_MAX_INTERVAL_MS = 120_000;
+    static final int LOW_BATTERY_PERCENT = 20;
+    // Below this (m/s) the user is treated as standing still; walking is ~1.4
+    static final double STATIONARY_SPEED = 0.3;
+    // Weight of the newest speed sample in the running average
+    private static final double SPEED_SMOOTHING = 0.5;
+    // Only restart the client when the ideal interval drifts this far from the applied one
+    private static final double RECONFIGURE_RATIO = 2;
+    // Recent fixes a speed sample may be measured from
+    private static final int SPEED_WINDOW_FIXES = 8;
+    
+    public enum Decision {
+        // Within the movement threshold or GPS noise; do not report
+        IGNORE,
+        // Moved enough to update the user's position
+        UPDATE,
+        // Moved past the refresh distance; results depending on position are stale
+        REFRESH
+    }
+    
+    private final double minMovementMeters;
+    private final double refreshDistanceMeters;
+    
+    // Oldest first
+    private final ArrayDeque<ProgressiveLocator.Fix> recentFixes = new ArrayDeque<>();
+    private ProgressiveLocator.Fix lastReported;
+    private ProgressiveLocator.Fix lastRefresh;
+    private double speed;
+    private int batteryPercent = 100;
+    private boolean charging;
+    
+    public TrackingPolicy(double minMovementMeters, double refreshDistanceMeters) {
+        this.minMovementMeters = minMovementMeters;
+        this.refreshDistanceMeters = refreshDistanceMeters;
+    }
+    
+    public synchronized void setBattery(int percent, boolean charging) {
+        this.batteryPercent = percent;
+        this.charging = charging;
+    }
+    
+    public synchronized Decision onFix(ProgressiveLocator.Fix fix) {
+        ProgressiveLocator.Fix lastFix = recentFixes.peekLast();
+        if (lastFix != null && fix.getTime() <= lastFix.getTime()) {
+            return Decision.IGNORE;
+        }
+        updateSpeed(fix);
+        
+        if (lastReported == null) {
+            lastReported = fix;
+            lastRefresh = fix;
+            return Decision.UPDATE;
+        }
+        if (distance(lastReported, fix) <= Math.max(minMovementMeters, fix.getAccuracy())) {
+            return Decision.IGNORE;
+        }
+        lastReported = fix;
+        if (distance(lastRefresh, fix) >= refreshDistanceMeters) {
+            lastRefresh = fix;
+            return Decision.REFRESH;
+        }
+        return Decision.UPDATE;
+    }
+    
+    // Movement inside the accuracy radius is indistinguishable from standing still,
+    // so it is not a sample; it still caps the speed, since the user cannot have
+    // covered more than displacement plus accuracy since an earlier fix
+    private void updateSpeed(ProgressiveLocator.Fix fix) {
+        double cap = Double.MAX_VALUE;
+        Iterator<ProgressiveLocator.Fix> latestFirst = recentFixes.descendingIterator();
+        while (latestFirst.hasNext()) {
+            ProgressiveLocator.Fix earlier = latestFirst.next();
+            long dt = fix.getTime() - earlier.getTime();
+            double meters = distance(earlier, fix);
+            double uncertainty = Math.max(earlier.getAccuracy(), fix.getAccuracy());
+            if (meters > uncertainty) {
+                speed = SPEED_SMOOTHING * (meters * 1000 / dt) + (1 - SPEED_SMOOTHING) * speed;
+                cap = Double.MAX_VALUE;
+                break;
+            }
+            cap = Math.min(cap, (meters + uncertainty) * 1000 / dt);
+        }
+        speed = Math.min(speed, cap);
+        if (recentFixes.size() == SPEED_WINDOW_FIXES) {
+            recentFixes.removeFirst();
+        }
+        recentFixes.addLast(fix);
+    }
+    
+    // Smoothed speed over recent fixes, m/s
+    public synchronized double getSpeed() {
+        return speed;
+    }
+    
+    public synchronized long intervalMillis() {
+        boolean lowBattery = batteryPercent <= LOW_BATTERY_PERCENT && !charging;
+        long max = lowBattery ? LOW_BATTERY_MAX_INTERVAL_MS : MAX_INTERVAL_MS;
+        if (speed < STATIONARY_SPEED) {
+            return max;
+        }
+        long interval = (long) (minMovementMeters * 1000 / speed);
+        if (lowBattery) {
+            interval *= 2;
+        }
+        return Math.max(MIN_INTERVAL_MS, Math.min(max, interval));
+    }
+    
+    // GPS only pays off while the user is moving and the battery can afford it
+    public synchronized boolean highAccuracy() {
+        return speed >= STATIONARY_SPEED && (charging || batteryPercent > LOW_BATTERY_PERCENT);
+    }
+    
+    // Whether the client running with these settings should be restarted
+    public synchronized boolean needsReconfigure(long appliedIntervalMillis, boolean appliedHighAccuracy) {
+        long ideal = intervalMillis();
+        return appliedHighAccuracy != highAccuracy()
+            || ideal * RECONFIGURE_RATIO <= appliedIntervalMillis
+            || appliedIntervalMillis * RECONFIGURE_RATIO <= ideal;
+    }
+    
+    private static double distance(ProgressiveLocator.Fix a, ProgressiveLocator.Fix b) {
+        return ProximityRanker.distance(a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude());
+    }
+}
\ No newline at end of file
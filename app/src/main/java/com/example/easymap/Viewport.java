@@ -0,0 +1,72 @@
+package com.example.easymap;
+
+import java.util.List;
+
+// A lat/lng rectangle: the visible map area, or the area markers were rendered
+// for. Plain Java so the viewport logic runs on a background thread and on the
+// JVM; MainActivity converts to and from AMap's LatLngBounds.
+public final class Viewport {
+    private final double south;
+    private final double west;
+    private final double north;
+    private final double east;
+    
+    public Viewport(double south, double west, double north, double east) {
+        this.south = Math.min(south, north);
+        this.west = Math.min(west, east);
+        this.north = Math.max(south, north);
+        this.east = Math.max(west, east);
+    }
+    
+    // Bounds of the first limit places, or null if there are none
+    public static Viewport around(List<PlaceResult> places, int limit) {
+        int n = Math.min(limit, places.size());
+        if (n == 0) {
+            return null;
+        }
+        double south = Double.MAX_VALUE;
+        double west = Double.MAX_VALUE;
+        double north = -Double.MAX_VALUE;
+        double east = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            PlaceResult place = places.get(i);
+            south = Math.min(south, place.getLatitude());
+            north = Math.max(north, place.getLatitude());
+            west = Math.min(west, place.getLongitude());
+            east = Math.max(east, place.getLongitude());
+        }
+        return new Viewport(south, west, north, east);
+    }
+    
+    public double getSouth() { return south; }
+    public double getWest() { return west; }
+    public double getNorth() { return north; }
+    public double getEast() { return east; }
+    public double getCenterLatitude() { return (south + north) * 0.5; }
+    public double getCenterLongitude() { return (west + east) * 0.5; }
+    
+    public boolean isPoint() {
+        return south == north && west == east;
+    }
+    
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= south && latitude <= north && longitude >= west && longitude <= east;
+    }
+    
+    public boolean contains(Viewport other) {
+        return other.south >= south && other.north <= north && other.west >= west && other.east <= east;
+    }
+    
+    // Grown by fraction of its height and width on every side
+    public Viewport expand(double fraction) {
+        double dLat = (north - south) * fraction;
+        double dLng = (east - west) * fraction;
+        return new Viewport(Math.max(-90, south - dLat), Math.max(-180, west - dLng), Math.min(90, north + dLat),
+            Math.min(180, east + dLng));
+    }
+    
+    @Override
+    public String toString() {
+        return "[" + south + "," + west + " - " + north + "," + east + "]";
+    }
+}
\ No newline at end of file
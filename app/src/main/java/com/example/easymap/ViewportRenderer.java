@@ -0,0 +1,151 @@
+package com.example.easymap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Decides when the result markers need re-rendering as the camera moves, and
+// which clusters to render. Each render covers the visible area plus a margin,
+// so small pans inside that area cost nothing; larger moves render at most once
+// per throttle interval while the camera is moving, and once more when it stops.
+// What gets rendered is capped at maxMarkers, nearest the centre first, so the
+// number of native markers stays flat however many places a search returned.
+// Driven from the UI thread only.
+public class ViewportRenderer {
+    public interface Listener {
+        // area is the visible area plus the margin
+        void onRender(Viewport area, float zoom);
+    }
+    
+    private final ResultBatcher.Scheduler scheduler;
+    private final long throttleMillis;
+    private final double margin;
+    private final Listener listener;
+    
+    // Area and integer zoom of the last render; null forces the next one
+    private Viewport rendered;
+    private int renderedZoom = -1;
+    private Viewport pendingVisible;
+    private float pendingZoom;
+    private boolean timerScheduled;
+    private long lastRenderMillis;
+    private int renders;
+    
+    public ViewportRenderer(ResultBatcher.Scheduler scheduler, long throttleMillis, double margin, Listener listener) {
+        this.scheduler = scheduler;
+        this.throttleMillis = throttleMillis;
+        this.margin = margin;
+        this.listener = listener;
+    }
+    
+    // Called for every camera change while the camera is moving
+    public void onCameraChange(Viewport visible, float zoom) {
+        if (isCovered(visible, zoom)) {
+            pendingVisible = null;
+            return;
+        }
+        pendingVisible = visible;
+        pendingZoom = zoom;
+        if (timerScheduled) {
+            return;
+        }
+        long wait = lastRenderMillis + throttleMillis - currentTimeMillis();
+        if (renders == 0 || wait <= 0) {
+            flush();
+        } else {
+            timerScheduled = scheduler.schedule(this::onTimer, wait);
+        }
+    }
+    
+    // Called once the camera stops; renders right away if the view is not covered
+    public void onCameraChangeFinish(Viewport visible, float zoom) {
+        if (isCovered(visible, zoom)) {
+            pendingVisible = null;
+            return;
+        }
+        pendingVisible = visible;
+        pendingZoom = zoom;
+        flush();
+    }
+    
+    // The result set changed: render the current view again
+    public void invalidate(Viewport visible, float zoom) {
+        rendered = null;
+        onCameraChangeFinish(visible, zoom);
+    }
+    
+    // The render for area hit the marker cap, so it does not reach into its margin:
+    // the next camera move renders again instead of counting as covered
+    public void onTruncated(Viewport area) {
+        if (area == rendered) {
+            rendered = null;
+        }
+    }
+    
+    public int getRenders() {
+        return renders;
+    }
+    
+    // The clusters inside area, at most maxMarkers of them, nearest its centre first
+    public static List<MarkerClusterer.Cluster> select(List<MarkerClusterer.Cluster> clusters, Viewport area,
+                                                       int maxMarkers) {
+        int n = clusters.size();
+        int[] inside = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            MarkerClusterer.Cluster cluster = clusters.get(i);
+            if (area.contains(cluster.getLatitude(), cluster.getLongitude())) {
+                inside[count++] = i;
+            }
+        }
+        List<MarkerClusterer.Cluster> selected = new ArrayList<>(Math.min(count, maxMarkers));
+        if (count <= maxMarkers) {
+            for (int i = 0; i < count; i++) {
+                selected.add(clusters.get(inside[i]));
+            }
+            return selected;
+        }
+        // Squared distance in degrees is enough to order by; the longitude is scaled
+        // so east-west and north-south count the same at this latitude
+        double centerLat = area.getCenterLatitude();
+        double centerLng = area.getCenterLongitude();
+        double lngScale = Math.cos(Math.toRadians(centerLat));
+        double[] scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            MarkerClusterer.Cluster cluster = clusters.get(inside[i]);
+            double dLat = cluster.getLatitude() - centerLat;
+            double dLng = (cluster.getLongitude() - centerLng) * lngScale;
+            scores[i] = dLat * dLat + dLng * dLng;
+        }
+        int[] order = ProximityRanker.order(scores, count);
+        for (int i = 0; i < maxMarkers; i++) {
+            selected.add(clusters.get(inside[order[i]]));
+        }
+        return selected;
+    }
+    
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+    
+    private boolean isCovered(Viewport visible, float zoom) {
+        return rendered != null && (int) zoom == renderedZoom && rendered.contains(visible);
+    }
+    
+    private void onTimer() {
+        timerScheduled = false;
+        if (pendingVisible != null) {
+            flush();
+        }
+    }
+    
+    private void flush() {
+        Viewport area = pendingVisible.expand(margin);
+        float zoom = pendingZoom;
+        pendingVisible = null;
+        rendered = area;
+        renderedZoom = (int) zoom;
+        lastRenderMillis = currentTimeMillis();
+        renders++;
+        listener.onRender(area, zoom);
+    }
+}
\ No newline at end of file
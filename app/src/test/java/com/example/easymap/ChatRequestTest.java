@@ -0,0 +1,22 @@
+package com.example.easymap;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChatRequestTest {
+    @Test
+    public void plainQuery() {
+        assertEquals("{\"message\":\"coffee near me\"}", ChatRequest.body("coffee near me"));
+    }
+    
+    @Test
+    public void escapesCharactersThatBrokeTheConcatenatedBody() {
+        String query = "the \"best\" 烤鸭 \\ in\n北京\t";
+        JsonObject parsed = JsonParser.parseString(ChatRequest.body(query)).getAsJsonObject();
+        assertEquals(query, parsed.get("message").getAsString());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package com.example.easymap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+    private long now;
+    private CircuitBreaker breaker;
+    
+    @Before
+    public void setUp() {
+        breaker = new CircuitBreaker(3, 10_000) {
+            @Override
+            long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+    
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.allowRequest());
+            breaker.onFailure();
+        }
+    }
+    
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        fail(2);
+        assertTrue(breaker.allowRequest());
+        breaker.onSuccess();
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        fail(1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        assertEquals(2, breaker.getRejected());
+    }
+    
+    @Test
+    public void halfOpenLetsOneTrialThrough() {
+        fail(3);
+        now += 10_000;
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+    
+    @Test
+    public void failedTrialReopensTheCircuit() {
+        fail(3);
+        now += 10_000;
+        assertTrue(breaker.allowRequest());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        now += 9_999;
+        assertFalse(breaker.allowRequest());
+        now += 1;
+        assertTrue(breaker.allowRequest());
+    }
+    
+    @Test
+    public void cancelledTrialFreesTheSlot() {
+        fail(3);
+        now += 10_000;
+        assertTrue(breaker.allowRequest());
+        breaker.onCancelled();
+        assertTrue(breaker.allowRequest());
+    }
+}
\ No newline at end of file
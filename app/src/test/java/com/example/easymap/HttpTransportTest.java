@@ -0,0 +1,96 @@
+package com.example.easymap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+public class HttpTransportTest {
+    private MockWebServer server;
+    private HttpTransport transport;
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        transport = new HttpTransport(HttpTransport.newClientBuilder().build());
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+    
+    private Response chat(String body) throws Exception {
+        Request request = new Request.Builder()
+            .url(server.url("/chat"))
+            .post(RequestBody.create(body, MediaType.get("application/json; charset=utf-8")))
+            .build();
+        return transport.client().newCall(request).execute();
+    }
+    
+    @Test
+    public void prewarmedConnectionIsReusedByFirstSearch() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(405));
+        server.enqueue(new MockResponse().setBody("{\"results\": []}"));
+        
+        transport.prewarm(server.url("/chat").toString());
+        OkHttpClient client = transport.client();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.connectionPool().idleConnectionCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, client.connectionPool().idleConnectionCount());
+        
+        try (Response response = chat("{\"message\": \"coffee\"}")) {
+            assertTrue(response.isSuccessful());
+        }
+        
+        RecordedRequest warm = server.takeRequest();
+        assertEquals("HEAD", warm.getMethod());
+        assertEquals("/", warm.getPath());
+        RecordedRequest search = server.takeRequest();
+        assertEquals("POST", search.getMethod());
+        // Second request on the same socket: no new DNS/TCP/TLS on the critical path
+        assertEquals(1, search.getSequenceNumber());
+        assertEquals(1, client.connectionPool().connectionCount());
+    }
+    
+    @Test
+    public void advertisesAndDecodesCompressedResponses() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write("{\"results\": []}".getBytes("UTF-8"));
+        }
+        server.enqueue(new MockResponse()
+            .setHeader("Content-Encoding", "gzip")
+            .setBody(new Buffer().write(bytes.toByteArray())));
+        
+        try (Response response = chat("{\"message\": \"tea\"}")) {
+            assertEquals("{\"results\": []}", response.body().string());
+        }
+        String acceptEncoding = server.takeRequest().getHeader("Accept-Encoding");
+        assertTrue(acceptEncoding.contains("br"));
+        assertTrue(acceptEncoding.contains("gzip"));
+    }
+    
+    @Test
+    public void sharedInstanceIsApplicationScoped() {
+        assertSame(HttpTransport.get(), HttpTransport.get());
+        assertSame(HttpTransport.get().client(), HttpTransport.get().client());
+    }
+}
\ No newline at end of file
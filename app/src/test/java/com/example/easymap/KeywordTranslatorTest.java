@@ -0,0 +1,98 @@
+package com.example.easymap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class KeywordTranslatorTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    private static final String SEED = "# comment\n"
+        + "dumplings\t饺子\n"
+        + "metro\t地铁站\n"
+        + "metro station\t地铁站\n"
+        + "coffee\t咖啡厅\n"
+        + "coffee shop\t咖啡厅\n"
+        + "restaurant\t餐厅\n"
+        + "restroom\t公共厕所\n"
+        + "malformed line\n";
+    
+    private KeywordTranslator translator;
+    
+    @Before
+    public void setUp() throws IOException {
+        translator = new KeywordTranslator(null);
+        translator.load(new StringReader(SEED));
+    }
+    
+    @Test
+    public void resolvesNormalizedPhrases() {
+        assertEquals(7, translator.size());
+        assertEquals("饺子", translator.translate("Dumplings"));
+        assertEquals("饺子", translator.translate("dumpling"));
+        assertEquals("地铁站", translator.translate("  Metro-Station "));
+        assertEquals("饺子", translator.translate("best dumplings near me"));
+        assertNull(translator.translate("karaoke"));
+        assertNull(translator.translate("near me"));
+        assertNull(translator.translate(""));
+    }
+    
+    @Test
+    public void resolvesPrefixesOnlyWhenUnambiguous() {
+        assertEquals("地铁站", translator.translate("metr"));
+        assertEquals("咖啡厅", translator.translate("coff"));
+        assertEquals("饺子", translator.translate("dumpl"));
+        // restaurant vs restroom
+        assertNull(translator.translate("rest"));
+        // Too short to trust
+        assertNull(translator.translate("dum"));
+    }
+    
+    @Test
+    public void chineseSentencesNeedTheBackend() {
+        assertNull(translator.translate("附近有什么好吃的"));
+        assertNull(translator.translate("我想喝咖啡"));
+        assertNull(translator.translate("饺子 好吃"));
+        assertNull(translator.translate("饺子？"));
+        assertNull(translator.translate("火锅 near me"));
+    }
+    
+    @Test
+    public void chineseQueriesAreTheirOwnKeyword() throws IOException {
+        assertEquals("火锅", translator.translate(" 火锅 "));
+        // Longer than a single short term, but a keyword the table uses
+        translator.learn("roast duck restaurant", "北京烤鸭店");
+        assertEquals("北京烤鸭店", translator.translate("北京烤鸭店"));
+        assertTrue(KeywordTranslator.isChinese("hot 火锅"));
+        assertFalse(KeywordTranslator.isChinese("hot pot"));
+    }
+    
+    @Test
+    public void learnedKeywordsArePersistedAndOverrideTheSeed() throws IOException {
+        File file = new File(tmp.getRoot(), "learned.tsv");
+        KeywordTranslator first = new KeywordTranslator(file);
+        first.load(new StringReader(SEED));
+        assertTrue(first.learn("Peking duck", "北京烤鸭"));
+        assertTrue(first.learn("coffee", "咖啡"));
+        assertFalse(first.learn("peking ducks", "北京烤鸭"));
+        // Sentences and Chinese queries are not worth remembering
+        assertFalse(first.learn("where can I get a good cheap lunch", "餐厅"));
+        assertFalse(first.learn("烤鸭", "烤鸭"));
+        assertEquals("北京烤鸭", first.translate("peking duck"));
+        
+        KeywordTranslator second = new KeywordTranslator(file);
+        second.load(new StringReader(SEED));
+        second.loadLearned();
+        assertEquals("北京烤鸭", second.translate("Peking Ducks"));
+        assertEquals("咖啡", second.translate("coffee"));
+        assertEquals("咖啡厅", second.translate("coffee shop"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.example.easymap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void bucketsAreContiguousAndBounded() {
+        long previousUpper = -1;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(previousUpper + 1));
+            assertEquals(bucket, LatencyHistogram.bucketOf(upper));
+            // Bucket width never exceeds 1/8 of its lower bound
+            assertTrue(upper - previousUpper - 1 <= Math.max(0, (previousUpper + 1) / 8));
+            previousUpper = upper;
+        }
+    }
+    
+    @Test
+    public void percentilesMatchExactValuesWithinBucketError() {
+        Random random = new Random(11);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] samples = new long[20_000];
+        for (int i = 0; i < samples.length; i++) {
+            // Log-normal-ish: mostly ~100 ms with a long tail
+            samples[i] = (long) (100_000 * Math.exp(random.nextGaussian() * 0.8));
+            histogram.recordMicros(samples[i]);
+        }
+        Arrays.sort(samples);
+        for (double p : new double[]{50, 95, 99}) {
+            long exact = samples[(int) Math.ceil(samples.length * p / 100) - 1];
+            long reported = histogram.percentileMicros(p);
+            assertTrue(p + ": " + reported + " vs " + exact, reported >= exact && reported <= exact * 1.125 + 1);
+        }
+        assertEquals(samples[samples.length - 1], histogram.percentileMicros(100));
+        assertEquals(samples[samples.length - 1], histogram.getMaxMicros());
+        assertEquals(20_000, histogram.getCount());
+    }
+    
+    @Test
+    public void emptyAndResetHistogramsReportZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileMicros(99));
+        histogram.recordNanos(5_000_000);
+        assertEquals(5_000, histogram.percentileMicros(50));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentileMicros(50));
+    }
+}
\ No newline at end of file
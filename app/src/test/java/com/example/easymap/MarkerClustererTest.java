@@ -0,0 +1,109 @@
+package com.example.easymap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MarkerClustererTest {
+    
+    private static int total(List<MarkerClusterer.Cluster> clusters) {
+        int sum = 0;
+        for (MarkerClusterer.Cluster cluster : clusters) {
+            sum += cluster.size();
+        }
+        return sum;
+    }
+    
+    @Test
+    public void denseDistrictCollapsesWhenZoomedOut() {
+        MarkerClusterer clusterer = new MarkerClusterer();
+        clusterer.setPlaces(ProximityRankerTest.randomPlaces(300, 39.91, 116.40, 0.02, 1));
+        
+        List<MarkerClusterer.Cluster> city = clusterer.clustersFor(11f);
+        List<MarkerClusterer.Cluster> street = clusterer.clustersFor(18f);
+        assertEquals(300, total(city));
+        assertEquals(300, total(street));
+        assertTrue(city.size() < 10);
+        assertTrue(street.size() > city.size());
+    }
+    
+    @Test
+    public void distantPlacesStaySingletons() {
+        List<PlaceResult> places = new ArrayList<>();
+        places.add(new PlaceResult("Beijing", "a", 39.9042, 116.4074, "未知距离", "x"));
+        places.add(new PlaceResult("Shanghai", "b", 31.2304, 121.4737, "未知距离", "x"));
+        MarkerClusterer clusterer = new MarkerClusterer();
+        clusterer.setPlaces(places);
+        
+        List<MarkerClusterer.Cluster> clusters = clusterer.clustersFor(10f);
+        assertEquals(2, clusters.size());
+        assertTrue(clusters.get(0).isSingleton());
+        assertEquals("Beijing", clusters.get(0).getPlaces().get(0).getName());
+        assertEquals(39.9042, clusters.get(0).getLatitude(), 1e-9);
+    }
+    
+    @Test
+    public void clusterCountNeverGrowsAsZoomDecreases() {
+        MarkerClusterer clusterer = new MarkerClusterer(64);
+        clusterer.setPlaces(ProximityRankerTest.randomPlaces(2000, 31.23, 121.47, 0.3, 7));
+        int previous = Integer.MAX_VALUE;
+        for (int zoom = MarkerClusterer.MAX_ZOOM; zoom >= MarkerClusterer.MIN_ZOOM; zoom--) {
+            List<MarkerClusterer.Cluster> clusters = clusterer.clustersFor(zoom);
+            assertEquals(2000, total(clusters));
+            assertTrue(clusters.size() <= previous);
+            previous = clusters.size();
+        }
+        assertEquals(1, previous);
+    }
+    
+    @Test
+    public void fractionalZoomReusesCachedLevel() {
+        MarkerClusterer clusterer = new MarkerClusterer();
+        clusterer.setPlaces(ProximityRankerTest.randomPlaces(50, 22.54, 114.06, 0.05, 3));
+        assertSame(clusterer.clustersFor(14.2f), clusterer.clustersFor(14.9f));
+        
+        clusterer.setPlaces(ProximityRankerTest.randomPlaces(50, 22.54, 114.06, 0.05, 4));
+        assertNotSame(clusterer.clustersFor(14.2f), clusterer.clustersFor(15.0f));
+    }
+    
+    @Test
+    public void addedBatchesClusterLikeOneList() {
+        List<PlaceResult> places = ProximityRankerTest.randomPlaces(95, 39.91, 116.40, 0.02, 5);
+        MarkerClusterer whole = new MarkerClusterer();
+        whole.setPlaces(places);
+        MarkerClusterer streamed = new MarkerClusterer();
+        streamed.setPlaces(places.subList(0, 10));
+        List<MarkerClusterer.Cluster> before = streamed.clustersFor(13f);
+        for (int from = 10; from < places.size(); from += 10) {
+            streamed.addPlaces(places.subList(from, Math.min(from + 10, places.size())));
+        }
+        assertEquals(10, total(before));
+        
+        for (float zoom : new float[] {11f, 13f, 16f}) {
+            List<MarkerClusterer.Cluster> expected = whole.clustersFor(zoom);
+            List<MarkerClusterer.Cluster> actual = streamed.clustersFor(zoom);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+                assertEquals(expected.get(i).getPlaces(), actual.get(i).getPlaces());
+            }
+        }
+    }
+    
+    @Test
+    public void clustersTenThousandPlacesQuickly() {
+        List<PlaceResult> places = ProximityRankerTest.randomPlaces(10_000, 39.91, 116.40, 0.2, 11);
+        MarkerClusterer clusterer = new MarkerClusterer();
+        long start = System.nanoTime();
+        clusterer.setPlaces(places);
+        for (int zoom = MarkerClusterer.MIN_ZOOM; zoom <= MarkerClusterer.MAX_ZOOM; zoom++) {
+            clusterer.clustersFor(zoom);
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        // Every zoom level for 10k places; generous bound so slow CI machines pass
+        assertTrue("took " + elapsedMs + " ms", elapsedMs < 2000);
+    }
+}
\ No newline at end of file
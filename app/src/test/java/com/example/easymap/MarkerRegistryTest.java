@@ -0,0 +1,154 @@
+package com.example.easymap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MarkerRegistryTest {
+    
+    private static class FakeMarker {
+        final String key;
+        String title;
+        boolean removed;
+        boolean hidden;
+        
+        FakeMarker(String key, String title) {
+            this.key = key;
+            this.title = title;
+        }
+    }
+    
+    private static class RecordingFactory implements MarkerRegistry.MarkerFactory<FakeMarker> {
+        final List<FakeMarker> live = new ArrayList<>();
+        int adds;
+        int updates;
+        int removes;
+        int reuses;
+        
+        @Override
+        public FakeMarker add(MarkerRegistry.MarkerSpec spec) {
+            adds++;
+            FakeMarker marker = new FakeMarker(spec.getKey(), spec.getTitle());
+            live.add(marker);
+            return marker;
+        }
+        
+        @Override
+        public void update(FakeMarker marker, MarkerRegistry.MarkerSpec spec) {
+            updates++;
+            marker.title = spec.getTitle();
+        }
+        
+        @Override
+        public void remove(FakeMarker marker) {
+            removes++;
+            marker.removed = true;
+            live.remove(marker);
+        }
+        
+        @Override
+        public void hide(FakeMarker marker) {
+            marker.hidden = true;
+        }
+        
+        @Override
+        public void reuse(FakeMarker marker, MarkerRegistry.MarkerSpec spec) {
+            reuses++;
+            marker.title = spec.getTitle();
+            marker.hidden = false;
+        }
+    }
+    
+    private static MarkerRegistry.MarkerSpec spec(PlaceResult place) {
+        return new MarkerRegistry.MarkerSpec(place.getKey(), place.getLatitude(), place.getLongitude(),
+            place.getName(), place.getAddress(), false, place);
+    }
+    
+    private static PlaceResult place(String name, double lat, String address) {
+        return new PlaceResult(name, address, lat, 116.4, "未知距离", "food");
+    }
+    
+    @Test
+    public void repeatedSearchTouchesNothing() {
+        RecordingFactory factory = new RecordingFactory();
+        MarkerRegistry<FakeMarker> registry = new MarkerRegistry<>(factory);
+        registry.update(Arrays.asList(spec(place("A", 39.90, "a")), spec(place("B", 39.91, "b"))));
+        assertEquals(2, factory.adds);
+        
+        // Same places, new PlaceResult instances from a fresh response
+        registry.update(Arrays.asList(spec(place("A", 39.90, "a")), spec(place("B", 39.91, "b"))));
+        assertEquals(2, factory.adds);
+        assertEquals(0, factory.updates);
+        assertEquals(0, factory.removes);
+        assertEquals(2, registry.size());
+    }
+    
+    @Test
+    public void refinedSearchOnlyChangesTheDifference() {
+        RecordingFactory factory = new RecordingFactory();
+        MarkerRegistry<FakeMarker> registry = new MarkerRegistry<>(factory);
+        registry.update(Arrays.asList(
+            spec(place("A", 39.90, "a")), spec(place("B", 39.91, "b")), spec(place("C", 39.92, "c"))));
+        
+        registry.update(Arrays.asList(
+            spec(place("B", 39.91, "b (new address)")), spec(place("C", 39.92, "c")), spec(place("D", 39.93, "d"))));
+        
+        assertEquals(1, registry.getLastAdded());
+        assertEquals(1, registry.getLastRemoved());
+        assertEquals(1, registry.getLastUpdated());
+        assertEquals(4, factory.adds);
+        assertEquals(3, factory.live.size());
+        assertNull(registry.get(place("A", 39.90, "a").getKey()));
+        assertEquals("b (new address)", registry.get(place("B", 39.91, "x").getKey()).getSnippet());
+    }
+    
+    @Test
+    public void placeKeyIgnoresCoordinateNoise() {
+        assertEquals(place("A", 39.900001, "a").getKey(), place("A", 39.900002, "other").getKey());
+        assertNotEquals(place("A", 39.90, "a").getKey(), place("A", 39.91, "a").getKey());
+        assertNotEquals(place("A", 39.90, "a").getKey(), place("B", 39.90, "a").getKey());
+    }
+    
+    @Test
+    public void clearRemovesEverything() {
+        RecordingFactory factory = new RecordingFactory();
+        MarkerRegistry<FakeMarker> registry = new MarkerRegistry<>(factory);
+        registry.update(Arrays.asList(spec(place("A", 39.90, "a")), spec(place("B", 39.91, "b"))));
+        registry.clear();
+        assertEquals(0, registry.size());
+        assertTrue(factory.live.isEmpty());
+    }
+    
+    @Test
+    public void recycledMarkersAreReusedForNewKeys() {
+        RecordingFactory factory = new RecordingFactory();
+        MarkerRegistry<FakeMarker> registry = new MarkerRegistry<>(factory, 2);
+        registry.update(Arrays.asList(
+            spec(place("A", 39.90, "a")), spec(place("B", 39.91, "b")), spec(place("C", 39.92, "c"))));
+        
+        // Scrolled: three markers leave, only two fit the pool
+        registry.update(Arrays.asList(spec(place("D", 39.93, "d"))));
+        assertEquals(1, registry.getLastReused());
+        assertEquals(0, registry.getLastAdded());
+        assertEquals(1, factory.removes);
+        assertEquals(1, registry.recycledSize());
+        assertEquals(3, factory.adds);
+        
+        registry.update(Arrays.asList(spec(place("D", 39.93, "d")), spec(place("E", 39.94, "e")),
+            spec(place("F", 39.95, "f"))));
+        assertEquals(1, registry.getLastReused());
+        assertEquals(1, registry.getLastAdded());
+        assertEquals(2, factory.reuses);
+        for (FakeMarker marker : factory.live) {
+            assertFalse(marker.hidden);
+        }
+        
+        registry.clear();
+        assertTrue(factory.live.isEmpty());
+        assertEquals(0, registry.recycledSize());
+    }
+}
\ No newline at end of file
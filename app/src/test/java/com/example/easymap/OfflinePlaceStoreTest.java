@@ -0,0 +1,186 @@
+package com.example.easymap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OfflinePlaceStoreTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+    
+    private long now = 1_000_000_000L;
+    
+    private OfflinePlaceStore open(File file, long maxBytes, int maxRecords) throws IOException {
+        return new OfflinePlaceStore(file, maxBytes, maxRecords) {
+            @Override
+            long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+    
+    private static PlaceResult place(String name, double lat, double lng) {
+        return new PlaceResult(name, "addr " + name, lat, lng, "未知距离", "cafe");
+    }
+    
+    @Test
+    public void placesSurviveReopenAndMatchByQueryTerms() throws IOException {
+        File file = temp.newFile("places.bin");
+        PlaceResult promoted = place("Promoted", 39.91, 116.41).withPromoted(true);
+        try (OfflinePlaceStore store = open(file, 1 << 20, 1000)) {
+            store.putAll("Coffee Shops", Arrays.asList(place("Bean", 39.9, 116.4), promoted), 39.9, 116.4);
+            store.putAll("museum", Arrays.asList(place("Palace Museum", 39.916, 116.397)), 39.9, 116.4);
+        }
+        
+        try (OfflinePlaceStore store = open(file, 1 << 20, 1000)) {
+            assertEquals(3, store.size());
+            // Matched through the same normalization the query went through
+            List<PlaceResult> coffee = store.search("coffee", 10);
+            assertEquals(2, coffee.size());
+            assertEquals("Promoted", coffee.get(0).getName());
+            assertTrue(coffee.get(0).isPromoted());
+            assertEquals("addr Promoted", coffee.get(0).getAddress());
+            assertEquals(39.91, coffee.get(0).getLatitude(), 0);
+            assertEquals("cafe", coffee.get(0).getType());
+            assertEquals(2, store.search("coffee shop", 10).size());
+            // Whole words only
+            assertTrue(store.search("coff", 10).isEmpty());
+            assertTrue(store.search("coffee museum", 10).isEmpty());
+            assertEquals("Palace Museum", store.search("Museums", 10).get(0).getName());
+        }
+    }
+    
+    @Test
+    public void repeatedPlacesAreReturnedOnce() throws IOException {
+        try (OfflinePlaceStore store = open(temp.newFile("places.bin"), 1 << 20, 1000)) {
+            store.putAll("coffee", Arrays.asList(place("Bean", 39.9, 116.4)), 39.9, 116.4);
+            store.putAll("coffee near me", Arrays.asList(place("Bean", 39.9, 116.4)), 39.9, 116.4);
+            assertEquals(1, store.search("coffee", 10).size());
+        }
+    }
+    
+    @Test
+    public void tornTrailingRecordIsDropped() throws IOException {
+        File file = temp.newFile("places.bin");
+        try (OfflinePlaceStore store = open(file, 1 << 20, 1000)) {
+            store.putAll("coffee", Arrays.asList(place("Bean", 39.9, 116.4)), 39.9, 116.4);
+        }
+        long goodLength = file.length();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            // Length prefix promising more bytes than were written
+            out.write(new byte[]{0, 0, 1, 0, 1, 2, 3});
+        }
+        
+        try (OfflinePlaceStore store = open(file, 1 << 20, 1000)) {
+            assertEquals(1, store.size());
+            assertEquals(goodLength, store.sizeBytes());
+            store.putAll("tea", Arrays.asList(place("Leaf", 39.9, 116.4)), 39.9, 116.4);
+            assertEquals(1, store.search("tea", 10).size());
+        }
+    }
+    
+    @Test
+    public void putsWriteInPlaceAndCloseTrimsSpareRoom() throws IOException {
+        File file = temp.newFile("places.bin");
+        long used;
+        try (OfflinePlaceStore store = open(file, 1 << 20, 1000)) {
+            for (int i = 0; i < 30; i++) {
+                store.putAll("query " + i, Arrays.asList(place("place " + i, 39.9, 116.4)), 39.9, 116.4);
+            }
+            used = store.sizeBytes();
+            // Room for the next puts is already mapped
+            assertTrue(file.length() > used);
+        }
+        assertEquals(used, file.length());
+        
+        try (OfflinePlaceStore store = open(file, 1 << 20, 1000)) {
+            assertEquals(30, store.size());
+            assertEquals("place 29", store.search("query 29", 10).get(0).getName());
+        }
+    }
+    
+    @Test
+    public void overlongStringsAreCutOnACharacterBoundary() throws IOException {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 30_000; i++) {
+            name.append('咖');
+        }
+        try (OfflinePlaceStore store = open(temp.newFile("places.bin"), 1 << 20, 1000)) {
+            store.putAll("咖啡", Arrays.asList(place(name.toString(), 39.9, 116.4)), 39.9, 116.4);
+            String stored = store.search("咖啡", 10).get(0).getName();
+            // 3 bytes each: 65532 of the 65534 bytes a string may take
+            assertEquals(21_844, stored.length());
+            assertTrue(name.toString().startsWith(stored));
+        }
+    }
+    
+    @Test
+    public void garbageFileIsReset() throws IOException {
+        File file = temp.newFile("places.bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("not a place store".getBytes());
+        }
+        try (OfflinePlaceStore store = open(file, 1 << 20, 1000)) {
+            assertEquals(0, store.size());
+            assertTrue(store.search("coffee", 10).isEmpty());
+        }
+    }
+    
+    @Test
+    public void compactionEvictsOldAndFarAwayEntries() throws IOException {
+        try (OfflinePlaceStore store = open(temp.newFile("places.bin"), 1 << 20, 100)) {
+            // Old entries near the user, then fresh entries in Shanghai
+            List<PlaceResult> old = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                old.add(place("old " + i, 39.9 + i * 1e-4, 116.4));
+            }
+            store.putAll("old", old, 39.9, 116.4);
+            now += 48 * 3_600_000L;
+            List<PlaceResult> far = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                far.add(place("far " + i, 31.23 + i * 1e-4, 121.47));
+            }
+            store.putAll("far", far, 39.9, 116.4);
+            List<PlaceResult> fresh = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                fresh.add(place("fresh " + i, 39.9 + i * 1e-4, 116.4));
+            }
+            store.putAll("fresh", fresh, 39.9, 116.4);
+            
+            // 110 records > 100: compacted down to 75, fresh near ones first, then
+            // 48-hour-old near ones, with the 1000 km away ones evicted
+            assertEquals(75, store.size());
+            assertEquals(20, store.search("fresh", 100).size());
+            assertEquals(55, store.search("old", 100).size());
+            assertTrue(store.search("far", 100).isEmpty());
+        }
+    }
+    
+    @Test
+    public void fileStaysWithinByteLimit() throws IOException {
+        int maxBytes = 16 * 1024;
+        try (OfflinePlaceStore store = open(temp.newFile("places.bin"), maxBytes, 100_000)) {
+            for (int batch = 0; batch < 50; batch++) {
+                List<PlaceResult> places = new ArrayList<>();
+                for (int i = 0; i < 20; i++) {
+                    places.add(place("place " + batch + "-" + i, 39.9 + i * 1e-6, 116.4));
+                }
+                now += 60_000;
+                store.putAll("query " + batch, places, 39.9, 116.4);
+                assertTrue(store.sizeBytes() <= maxBytes);
+            }
+            // Newest batch is always kept
+            assertEquals(20, store.search("query 49", 100).size());
+            assertTrue(store.search("query 0", 100).isEmpty());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.example.easymap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PlaceIndexTest {
+    
+    private static List<PlaceResult> randomPlaces(int count, long seed) {
+        return ProximityRankerTest.randomPlaces(count, 39.9, 116.4, 0.5, seed);
+    }
+    
+    private static List<PlaceResult> bruteForceNearest(List<PlaceResult> places, double lat, double lng, int k) {
+        List<PlaceResult> sorted = new ArrayList<>(places);
+        sorted.sort(Comparator.comparingDouble(
+            p -> ProximityRanker.distance(lat, lng, p.getLatitude(), p.getLongitude())));
+        return sorted.subList(0, Math.min(k, sorted.size()));
+    }
+    
+    @Test
+    public void nearestMatchesBruteForce() {
+        List<PlaceResult> places = randomPlaces(3000, 5);
+        PlaceIndex index = new PlaceIndex();
+        index.addAll(places);
+        
+        Random random = new Random(9);
+        for (int q = 0; q < 50; q++) {
+            double lat = 39.9 + (random.nextDouble() - 0.5) * 0.6;
+            double lng = 116.4 + (random.nextDouble() - 0.5) * 0.6;
+            assertEquals(bruteForceNearest(places, lat, lng, 10), index.nearest(lat, lng, 10));
+        }
+    }
+    
+    @Test
+    public void nearestFromFarAwayStillFindsPlaces() {
+        PlaceIndex index = new PlaceIndex();
+        index.addAll(randomPlaces(20, 1));
+        // Shanghai is ~1000 km from every indexed place
+        assertEquals(3, index.nearest(31.23, 121.47, 3).size());
+        assertEquals(20, index.nearest(31.23, 121.47, 100).size());
+    }
+    
+    @Test
+    public void withinReturnsExactlyThePlacesInsideTheBox() {
+        List<PlaceResult> places = randomPlaces(2000, 3);
+        PlaceIndex index = new PlaceIndex();
+        index.addAll(places);
+        
+        Set<PlaceResult> expected = new HashSet<>();
+        for (PlaceResult p : places) {
+            if (p.getLatitude() >= 39.85 && p.getLatitude() <= 39.95
+                && p.getLongitude() >= 116.35 && p.getLongitude() <= 116.42) {
+                expected.add(p);
+            }
+        }
+        assertEquals(expected, new HashSet<>(index.within(39.85, 116.35, 39.95, 116.42)));
+        // A box covering the whole world walks occupied cells instead
+        assertEquals(2000, index.within(-90, -180, 90, 180).size());
+    }
+    
+    @Test
+    public void repeatedPlacesAreDeduplicated() {
+        PlaceIndex index = new PlaceIndex();
+        PlaceResult first = new PlaceResult("Cafe", "a", 39.9, 116.4, "未知距离", "coffee");
+        PlaceResult again = new PlaceResult("Cafe", "a (updated)", 39.9, 116.4, "未知距离", "coffee");
+        index.addAll(Arrays.asList(first, again));
+        assertEquals(1, index.size());
+        assertSame(again, index.nearest(39.9, 116.4, 1).get(0));
+    }
+    
+    @Test
+    public void queriesAreSubMillisecond() {
+        PlaceIndex index = new PlaceIndex();
+        index.addAll(randomPlaces(20_000, 17));
+        Random random = new Random(4);
+        int queries = 2000;
+        // Warm up
+        for (int i = 0; i < queries; i++) {
+            index.nearest(39.9 + (random.nextDouble() - 0.5) * 0.4, 116.4 + (random.nextDouble() - 0.5) * 0.4, 10);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            double lat = 39.9 + (random.nextDouble() - 0.5) * 0.4;
+            double lng = 116.4 + (random.nextDouble() - 0.5) * 0.4;
+            index.nearest(lat, lng, 10);
+            index.within(lat - 0.005, lng - 0.005, lat + 0.005, lng + 0.005);
+        }
+        double perQueryMs = (System.nanoTime() - start) / 1e6 / queries;
+        assertTrue("per query " + perQueryMs + " ms", perQueryMs < 1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,157 @@
+package com.example.easymap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class PlaceResultParserTest {
+    
+    // The JSONObject-based parser MainActivity used before the streaming parser, minus
+    // its bug of copying the address into the type
+    private static List<PlaceResult> parseWithJsonTree(String response) {
+        List<PlaceResult> results = new ArrayList<>();
+        try {
+            JSONObject json = new JSONObject(response);
+            JSONArray arr = json.getJSONArray("results");
+            for (int i = 0; i < arr.length(); i++) {
+                JSONObject obj = arr.getJSONObject(i);
+                String name = obj.getString("name");
+                String address = obj.getString("address");
+                double lat = obj.getDouble("latitude");
+                double lng = obj.getDouble("longitude");
+                results.add(new PlaceResult(name, address, lat, lng, "未知距离",
+                    obj.has("type") ? obj.getString("type") : null, obj.optBoolean("promoted")));
+            }
+        } catch (Exception e) {
+            // Partial results, same as before
+        }
+        return results;
+    }
+    
+    private static void assertSamePlaces(List<PlaceResult> expected, List<PlaceResult> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            PlaceResult e = expected.get(i);
+            PlaceResult a = actual.get(i);
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getAddress(), a.getAddress());
+            assertEquals(e.getLatitude(), a.getLatitude(), 0);
+            assertEquals(e.getLongitude(), a.getLongitude(), 0);
+            assertEquals(e.getDistance(), a.getDistance());
+            assertEquals(e.getType(), a.getType());
+            assertEquals(e.isPromoted(), a.isPromoted());
+        }
+    }
+    
+    static String payload(int count) {
+        StringBuilder sb = new StringBuilder("{\"reply\": \"Here are some places\", \"results\": [");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(String.format(Locale.US,
+                "{\"name\": \"饺子馆 %d\", \"address\": \"东城区王府井大街%d号\", \"latitude\": %.6f, "
+                    + "\"longitude\": %.6f, \"rating\": 4.5, \"tags\": [\"food\", {\"x\": null}]}",
+                i, i, 39.9 + i * 0.0001, 116.4 - i * 0.0001));
+        }
+        return sb.append("], \"keywords\": [\"饺子\"]}").toString();
+    }
+    
+    @Test
+    public void matchesTreeParserOnTypicalResponse() throws IOException {
+        String body = payload(25);
+        assertSamePlaces(parseWithJsonTree(body), PlaceResultParser.parse(new StringReader(body)));
+    }
+    
+    @Test
+    public void matchesTreeParserOnEmptyAndMissingResults() throws IOException {
+        for (String body : new String[]{"{\"results\": []}", "{\"reply\": \"nothing found\"}", "{}"}) {
+            assertSamePlaces(parseWithJsonTree(body), PlaceResultParser.parse(new StringReader(body)));
+        }
+    }
+    
+    @Test
+    public void acceptsNumericStringsAndFieldOrder() throws IOException {
+        String body = "{\"results\": [{\"longitude\": \"121.47\", \"latitude\": \"31.23\", "
+            + "\"address\": \"外滩\", \"name\": \"The Bund\"}]}";
+        List<PlaceResult> places = PlaceResultParser.parse(new StringReader(body));
+        assertSamePlaces(parseWithJsonTree(body), places);
+        assertEquals(31.23, places.get(0).getLatitude(), 0);
+    }
+    
+    @Test
+    public void emitsEachPlaceAsItIsDecoded() throws IOException {
+        List<String> seen = new ArrayList<>();
+        int count = PlaceResultParser.parse(new StringReader(payload(3)), place -> seen.add(place.getName()));
+        assertEquals(3, count);
+        assertEquals("饺子馆 0", seen.get(0));
+        assertEquals("饺子馆 2", seen.get(2));
+    }
+    
+    @Test
+    public void keepsPlacesDecodedBeforeMalformedInput() {
+        String body = "{\"results\": [{\"name\": \"A\", \"address\": \"a\", \"latitude\": 1, \"longitude\": 2}, "
+            + "{\"name\": \"B\", \"address\": ";
+        List<PlaceResult> seen = new ArrayList<>();
+        try {
+            PlaceResultParser.parse(new StringReader(body), seen::add);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            // fall through
+        }
+        assertSamePlaces(parseWithJsonTree("{\"results\": [{\"name\": \"A\", \"address\": \"a\", "
+            + "\"latitude\": 1, \"longitude\": 2}]}"), seen);
+    }
+    
+    @Test
+    public void skipsEntriesMissingRequiredFields() throws IOException {
+        String body = "{\"results\": [{\"name\": \"A\", \"latitude\": 1, \"longitude\": 2}, "
+            + "{\"name\": \"B\", \"address\": \"b\", \"latitude\": 3, \"longitude\": 4}]}";
+        List<PlaceResult> places = PlaceResultParser.parse(new StringReader(body));
+        assertEquals(1, places.size());
+        assertEquals("B", places.get(0).getName());
+    }
+    
+    @Test
+    public void reportsKeywordsAsStringOrArray() throws IOException {
+        List<String> keywords = new ArrayList<>();
+        PlaceResultParser.Listener listener = new PlaceResultParser.Listener() {
+            @Override
+            public void onPlace(PlaceResult place) {
+            }
+            
+            @Override
+            public void onKeywords(List<String> found) {
+                keywords.addAll(found);
+            }
+        };
+        PlaceResultParser.parse(new StringReader("{\"keywords\": \"饺子\", \"results\": []}"), listener);
+        PlaceResultParser.parse(new StringReader("{\"results\": [], \"keywords\": [\"火锅\", 3, \"烤鸭\"]}"), listener);
+        PlaceResultParser.parse(new StringReader("{\"keywords\": null, \"results\": []}"), listener);
+        assertEquals(Arrays.asList("饺子", "火锅", "烤鸭"), keywords);
+    }
+    
+    @Test
+    public void readsTypeAndPromotionAndPoolsRepeatedStrings() throws IOException {
+        String body = "{\"results\": [{\"name\": \"A\", \"address\": \"王府井大街1号\", \"latitude\": 1, "
+            + "\"longitude\": 2, \"type\": \"咖啡厅\", \"promoted\": true}, {\"name\": \"B\", "
+            + "\"address\": \"王府井大街1号\", \"latitude\": 3, \"longitude\": 4, \"category\": \"咖啡厅\"}]}";
+        List<PlaceResult> places = PlaceResultParser.parse(new StringReader(body));
+        assertEquals("咖啡厅", places.get(0).getType());
+        assertTrue(places.get(0).isPromoted());
+        assertFalse(places.get(1).isPromoted());
+        assertEquals("未知距离", places.get(1).getDistance());
+        // Decoded separately, held once
+        assertSame(places.get(0).getAddress(), places.get(1).getAddress());
+        assertSame(places.get(0).getType(), places.get(1).getType());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+package com.example.easymap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+public class PlaceStreamParserTest {
+    private MockWebServer server;
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+    
+    private static String placeJson(int i) {
+        return String.format(Locale.US, "{\"name\": \"饺子馆 %d\", \"address\": \"王府井大街%d号\", "
+            + "\"latitude\": %.6f, \"longitude\": %.6f}", i, i, 39.9 + i * 0.001, 116.4 + i * 0.001);
+    }
+    
+    private static List<String> names(String body, String contentType) throws IOException {
+        List<String> names = new ArrayList<>();
+        PlaceStreamParser.parse(new StringReader(body), contentType, place -> names.add(place.getName()));
+        return names;
+    }
+    
+    @Test
+    public void recognizesStreamingContentTypes() {
+        assertEquals(PlaceStreamParser.Format.NDJSON, PlaceStreamParser.formatOf("application/x-ndjson; charset=utf-8"));
+        assertEquals(PlaceStreamParser.Format.EVENT_STREAM, PlaceStreamParser.formatOf("Text/Event-Stream"));
+        assertEquals(PlaceStreamParser.Format.JSON, PlaceStreamParser.formatOf("application/json"));
+        assertEquals(PlaceStreamParser.Format.JSON, PlaceStreamParser.formatOf(null));
+        assertTrue(PlaceStreamParser.isStreaming("application/x-ndjson"));
+        assertFalse(PlaceStreamParser.isStreaming("application/json"));
+    }
+    
+    @Test
+    public void parsesNdjsonPlacesAndBatches() throws IOException {
+        String body = placeJson(1) + "\n\n"
+            + "{\"results\": [" + placeJson(2) + ", " + placeJson(3) + "], \"keywords\": \"饺子\"}\r\n"
+            + "{\"name\": \"incomplete\"}\n"
+            + placeJson(4);
+        assertEquals(Arrays.asList("饺子馆 1", "饺子馆 2", "饺子馆 3", "饺子馆 4"),
+            names(body, PlaceStreamParser.NDJSON));
+    }
+    
+    @Test
+    public void parsesServerSentEvents() throws IOException {
+        String body = ": keep-alive\n\n"
+            + "event: place\ndata: " + placeJson(1) + "\n\n"
+            + "data: {\"results\": [\n"
+            + "data: " + placeJson(2) + "]}\n\n"
+            + "id: 7\nretry: 1000\n\n"
+            + "data: [DONE]\n\n"
+            + "data: " + placeJson(3) + "\n\n";
+        assertEquals(Arrays.asList("饺子馆 1", "饺子馆 2"), names(body, PlaceStreamParser.EVENT_STREAM));
+    }
+    
+    @Test
+    public void singleShotJsonStillWorks() throws IOException {
+        String body = "{\"results\": [" + placeJson(1) + ", " + placeJson(2) + "]}";
+        assertEquals(Arrays.asList("饺子馆 1", "饺子馆 2"), names(body, "application/json"));
+    }
+    
+    @Test
+    public void keepsPlacesBeforeAMalformedLine() {
+        List<String> names = new ArrayList<>();
+        try {
+            PlaceStreamParser.parse(new StringReader(placeJson(1) + "\n{\"name\": \n" + placeJson(2)),
+                PlaceStreamParser.NDJSON, place -> names.add(place.getName()));
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            // The first place was already delivered
+        }
+        assertEquals(Arrays.asList("饺子馆 1"), names);
+    }
+    
+    // Against a stand-in server that trickles the answer out the way the AI
+    // backend generates it: the first place is available long before the end
+    @Test
+    public void firstPlaceArrivesBeforeTheStreamEnds() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            body.append(placeJson(i)).append('\n');
+        }
+        int lineBytes = placeJson(0).getBytes("UTF-8").length + 1;
+        server.enqueue(new MockResponse()
+            .setHeader("Content-Type", "application/x-ndjson")
+            .setBody(body.toString())
+            .throttleBody(lineBytes, 150, TimeUnit.MILLISECONDS));
+        
+        OkHttpClient client = HttpTransport.newClientBuilder().build();
+        Request request = new Request.Builder()
+            .url(server.url("/chat"))
+            .header("Accept", ChatRequest.ACCEPT)
+            .post(RequestBody.create(ChatRequest.body("dumplings"), MediaType.get(ChatRequest.MEDIA_TYPE)))
+            .build();
+        long start = System.nanoTime();
+        long[] firstAt = {-1};
+        List<String> names = new ArrayList<>();
+        try (Response response = client.newCall(request).execute(); Reader reader = response.body().charStream()) {
+            PlaceStreamParser.parse(reader, response.header("Content-Type"), place -> {
+                if (firstAt[0] < 0) {
+                    firstAt[0] = System.nanoTime() - start;
+                }
+                names.add(place.getName());
+            });
+        }
+        long total = System.nanoTime() - start;
+        
+        assertEquals(5, names.size());
+        assertTrue("first place after " + firstAt[0] / 1_000_000 + " ms of " + total / 1_000_000,
+            firstAt[0] < total / 2);
+        assertEquals(ChatRequest.ACCEPT, server.takeRequest().getHeader("Accept"));
+    }
+}
\ No newline at end of file
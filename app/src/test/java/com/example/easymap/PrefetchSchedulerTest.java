@@ -0,0 +1,150 @@
+package com.example.easymap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PrefetchSchedulerTest {
+    private final Set<String> warm = new HashSet<>();
+    private final List<Call> calls = new ArrayList<>();
+    private PrefetchScheduler scheduler;
+    
+    private static class Call implements SearchCoordinator.Cancellable {
+        final String query;
+        final PrefetchScheduler.Callback callback;
+        boolean cancelled;
+        
+        Call(String query, PrefetchScheduler.Callback callback) {
+            this.query = query;
+            this.callback = callback;
+        }
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+    
+    @Before
+    public void setUp() {
+        scheduler = new PrefetchScheduler(new PrefetchScheduler.Fetcher() {
+            @Override
+            public boolean isWarm(String query) {
+                return warm.contains(query);
+            }
+            
+            @Override
+            public SearchCoordinator.Cancellable fetch(String query, PrefetchScheduler.Callback callback) {
+                Call call = new Call(query, callback);
+                calls.add(call);
+                return call;
+            }
+        }, 2, 1000);
+    }
+    
+    private List<String> started() {
+        List<String> queries = new ArrayList<>();
+        for (Call call : calls) {
+            queries.add(call.query);
+        }
+        return queries;
+    }
+    
+    @Test
+    public void runsAtMostMaxConcurrentInPriorityOrder() {
+        scheduler.schedule(Arrays.asList("food", "coffee", "ATM", "metro station"));
+        assertEquals(Arrays.asList("food", "coffee"), started());
+        assertEquals(2, scheduler.getQueued());
+        
+        calls.get(1).callback.onComplete(100);
+        assertEquals(Arrays.asList("food", "coffee", "ATM"), started());
+        calls.get(0).callback.onFailed();
+        assertEquals(Arrays.asList("food", "coffee", "ATM", "metro station"), started());
+        assertEquals(1, scheduler.getCompleted());
+        assertEquals(1, scheduler.getFailed());
+    }
+    
+    @Test
+    public void skipsWarmAndDuplicateQueries() {
+        warm.add("coffee");
+        scheduler.schedule(Arrays.asList("Food", "coffee", " food ", "ATM"));
+        assertEquals(Arrays.asList("Food", "ATM"), started());
+        assertEquals(0, scheduler.getQueued());
+    }
+    
+    @Test
+    public void stopsStartingFetchesOnceBudgetIsSpent() {
+        scheduler.schedule(Arrays.asList("a", "b", "c", "d"));
+        calls.get(0).callback.onComplete(600);
+        calls.get(1).callback.onComplete(500);
+        assertEquals(Arrays.asList("a", "b", "c"), started());
+        assertEquals(1100, scheduler.getBytesUsed());
+        calls.get(2).callback.onComplete(10);
+        assertEquals(3, calls.size());
+        assertEquals(1, scheduler.getQueued());
+    }
+    
+    @Test
+    public void userSearchCancelsAndRequeuesInFlightFetches() {
+        scheduler.schedule(Arrays.asList("a", "b", "c"));
+        scheduler.yieldToUser();
+        assertTrue(calls.get(0).cancelled);
+        assertTrue(calls.get(1).cancelled);
+        assertEquals(0, scheduler.getInFlight());
+        assertEquals(3, scheduler.getQueued());
+        
+        // Nothing starts while the user's search is running, and rescheduling
+        // keeps the preempted fetches in front of the new queries
+        scheduler.schedule(Arrays.asList("x", "a"));
+        assertEquals(2, calls.size());
+        assertEquals(3, scheduler.getQueued());
+        
+        scheduler.resume();
+        assertEquals(Arrays.asList("a", "b", "a", "b"), started());
+        calls.get(2).callback.onComplete(10);
+        assertEquals("x", started().get(4));
+    }
+    
+    @Test
+    public void resumeRestartsCancelledFetchesFirst() {
+        scheduler.schedule(Arrays.asList("a", "b", "c"));
+        scheduler.yieldToUser();
+        scheduler.resume();
+        assertEquals(Arrays.asList("a", "b", "a", "b"), started());
+    }
+    
+    @Test
+    public void lateCallbacksFromCancelledFetchesAreIgnored() {
+        scheduler.schedule(Arrays.asList("a", "b", "c"));
+        scheduler.yieldToUser();
+        scheduler.resume();
+        // The cancelled "a" reports after its replacement has started
+        calls.get(0).callback.onComplete(900);
+        assertEquals(0, scheduler.getBytesUsed());
+        assertEquals(2, scheduler.getInFlight());
+        
+        calls.get(2).callback.onComplete(100);
+        calls.get(2).callback.onComplete(100);
+        assertEquals(100, scheduler.getBytesUsed());
+        assertEquals(1, scheduler.getCompleted());
+    }
+    
+    @Test
+    public void cancelAllDropsQueueAndInFlight() {
+        scheduler.schedule(Arrays.asList("a", "b", "c"));
+        scheduler.cancelAll();
+        assertTrue(calls.get(0).cancelled);
+        assertTrue(calls.get(1).cancelled);
+        assertEquals(0, scheduler.getQueued());
+        assertEquals(0, scheduler.getInFlight());
+        calls.get(0).callback.onComplete(50);
+        assertEquals(0, scheduler.getCompleted());
+    }
+}
\ No newline at end of file
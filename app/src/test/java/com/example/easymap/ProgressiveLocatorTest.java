@@ -0,0 +1,153 @@
+package com.example.easymap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProgressiveLocatorTest {
+    private static final long NOW = 1_700_000_000_000L;
+    
+    private static class FakeSource implements ProgressiveLocator.Source {
+        ProgressiveLocator.Fix lastKnown;
+        ProgressiveLocator.FixCallback fast;
+        ProgressiveLocator.FixCallback precise;
+        int cancels;
+        
+        @Override
+        public ProgressiveLocator.Fix lastKnown() {
+            return lastKnown;
+        }
+        
+        @Override
+        public void request(boolean highAccuracy, ProgressiveLocator.FixCallback callback) {
+            if (highAccuracy) {
+                precise = callback;
+            } else {
+                fast = callback;
+            }
+        }
+        
+        @Override
+        public void cancel() {
+            cancels++;
+        }
+    }
+    
+    private static class RecordingListener implements ProgressiveLocator.Listener {
+        final List<String> events = new ArrayList<>();
+        
+        @Override
+        public void onProvisional(ProgressiveLocator.Fix fix, long ageMillis) {
+            events.add("provisional " + fix.getTag() + " age=" + ageMillis);
+        }
+        
+        @Override
+        public void onRefined(ProgressiveLocator.Fix fix, boolean movedSignificantly) {
+            events.add("refined " + fix.getTag() + " moved=" + movedSignificantly);
+        }
+        
+        @Override
+        public void onFailed(String error) {
+            events.add("failed " + error);
+        }
+    }
+    
+    private FakeSource source;
+    private ProgressiveLocator locator;
+    private RecordingListener listener;
+    
+    private static ProgressiveLocator.Fix fix(String tag, double lat, double lng, float accuracy, long ageMillis) {
+        return new ProgressiveLocator.Fix(lat, lng, accuracy, NOW - ageMillis, tag);
+    }
+    
+    @Before
+    public void setUp() {
+        source = new FakeSource();
+        locator = new ProgressiveLocator(source) {
+            @Override
+            long currentTimeMillis() {
+                return NOW;
+            }
+        };
+        listener = new RecordingListener();
+    }
+    
+    @Test
+    public void recentCachedFixIsDeliveredImmediatelyThenRefined() {
+        source.lastKnown = fix("cached", 39.9, 116.4, 80, 30_000);
+        locator.start(listener);
+        
+        // No network round trip needed for the first answer
+        assertNull(source.fast);
+        assertEquals("provisional cached age=30000", listener.events.get(0));
+        
+        // 20 m away with 10 m accuracy: not worth re-doing anything
+        source.precise.onFix(fix("precise", 39.90018, 116.4, 10, 0));
+        assertEquals("refined precise moved=false", listener.events.get(1));
+    }
+    
+    @Test
+    public void staleCacheFallsBackToFastNetworkFix() {
+        source.lastKnown = fix("cached", 39.9, 116.4, 30, ProgressiveLocator.MAX_CACHED_AGE_MS + 1);
+        locator.start(listener);
+        assertTrue(listener.events.isEmpty());
+        
+        source.fast.onFix(fix("network", 39.9, 116.4, 300, 0));
+        // 1.1 km away from the network fix
+        source.precise.onFix(fix("precise", 39.91, 116.4, 15, 0));
+        assertEquals("provisional network age=0", listener.events.get(0));
+        assertEquals("refined precise moved=true", listener.events.get(1));
+    }
+    
+    @Test
+    public void lateFastFixAfterPreciseIsIgnored() {
+        locator.start(listener);
+        source.precise.onFix(fix("precise", 39.9, 116.4, 10, 0));
+        source.fast.onFix(fix("network", 39.9, 116.4, 300, 0));
+        assertEquals(1, listener.events.size());
+        assertEquals("refined precise moved=true", listener.events.get(0));
+    }
+    
+    @Test
+    public void movementWithinAccuracyRadiusIsNotSignificant() {
+        ProgressiveLocator.Fix provisional = fix("a", 39.9, 116.4, 500, 0);
+        // ~111 m apart, but the refined fix itself is only good to 150 m
+        assertFalse(ProgressiveLocator.movedSignificantly(provisional, fix("b", 39.901, 116.4, 150, 0)));
+        assertTrue(ProgressiveLocator.movedSignificantly(provisional, fix("b", 39.901, 116.4, 20, 0)));
+    }
+    
+    @Test
+    public void failsOnlyWhenNeitherRequestProducesAFix() {
+        locator.start(listener);
+        source.precise.onError("gps off");
+        assertTrue(listener.events.isEmpty());
+        source.fast.onError("no network");
+        assertEquals("failed no network", listener.events.get(0));
+        
+        // A provisional fix already shown survives a failed precise request
+        listener.events.clear();
+        locator.start(listener);
+        source.fast.onFix(fix("network", 39.9, 116.4, 300, 0));
+        source.precise.onError("gps timeout");
+        assertEquals(1, listener.events.size());
+        assertEquals("provisional network age=0", listener.events.get(0));
+    }
+    
+    @Test
+    public void restartOrCancelDropsCallbacksFromEarlierSessions() {
+        locator.start(listener);
+        ProgressiveLocator.FixCallback oldPrecise = source.precise;
+        locator.start(listener);
+        oldPrecise.onFix(fix("old", 39.9, 116.4, 10, 0));
+        assertTrue(listener.events.isEmpty());
+        
+        locator.cancel();
+        source.precise.onFix(fix("cancelled", 39.9, 116.4, 10, 0));
+        assertTrue(listener.events.isEmpty());
+        assertEquals(1, source.cancels);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+package com.example.easymap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ProximityRankerTest {
+    // Tiananmen Square
+    private static final double ORIGIN_LAT = 39.9055;
+    private static final double ORIGIN_LNG = 116.3976;
+    
+    private static PlaceResult place(String name, double lat, double lng) {
+        return new PlaceResult(name, "addr", lat, lng, "未知距离", "food");
+    }
+    
+    static List<PlaceResult> randomPlaces(int count, long seed) {
+        return randomPlaces(count, ORIGIN_LAT, ORIGIN_LNG, 0.2, seed);
+    }
+    
+    // Shared by the other spatial tests: count places within spread degrees around lat/lng
+    static List<PlaceResult> randomPlaces(int count, double lat, double lng, double spread, long seed) {
+        Random random = new Random(seed);
+        List<PlaceResult> places = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            places.add(place("Place " + i, lat + (random.nextDouble() - 0.5) * spread,
+                lng + (random.nextDouble() - 0.5) * spread));
+        }
+        return places;
+    }
+    
+    @Test
+    public void distancesMatchKnownValues() {
+        double[] out = new double[2];
+        // Tiananmen -> Shanghai People's Square is about 1,067 km
+        ProximityRanker.distances(ORIGIN_LAT, ORIGIN_LNG, new double[]{31.2304, ORIGIN_LAT},
+            new double[]{121.4737, ORIGIN_LNG}, 2, out);
+        assertEquals(1_067_000, out[0], 5_000);
+        assertEquals(0, out[1], 1e-6);
+    }
+    
+    @Test
+    public void distanceModeSortsNearestFirstAndFillsLabels() {
+        List<PlaceResult> places = Arrays.asList(
+            place("far", ORIGIN_LAT + 0.05, ORIGIN_LNG),
+            place("near", ORIGIN_LAT + 0.001, ORIGIN_LNG),
+            place("mid", ORIGIN_LAT + 0.01, ORIGIN_LNG));
+        
+        List<PlaceResult> ranked = ProximityRanker.rank(places, ORIGIN_LAT, ORIGIN_LNG, ProximityRanker.Mode.DISTANCE);
+        assertEquals("near", ranked.get(0).getName());
+        assertEquals("mid", ranked.get(1).getName());
+        assertEquals("far", ranked.get(2).getName());
+        assertEquals("111 m", ranked.get(0).getDistance());
+        assertEquals("1.1 km", ranked.get(1).getDistance());
+        assertEquals("5.6 km", ranked.get(2).getDistance());
+        // Inputs are not mutated; the adapter may still be showing them
+        assertEquals("未知距离", places.get(0).getDistance());
+    }
+    
+    @Test
+    public void weightedModeBlendsBackendOrderAndPromotion() {
+        PlaceResult promoted = place("promoted", ORIGIN_LAT + 0.004, ORIGIN_LNG).withPromoted(true);
+        List<PlaceResult> places = Arrays.asList(
+            place("relevant", ORIGIN_LAT + 0.0030, ORIGIN_LNG),
+            place("slightly closer", ORIGIN_LAT + 0.0029, ORIGIN_LNG),
+            promoted);
+        
+        List<PlaceResult> ranked = ProximityRanker.rank(places, ORIGIN_LAT, ORIGIN_LNG, ProximityRanker.Mode.WEIGHTED);
+        // ~445 m * 0.5 beats ~334 m; 11 m closer does not beat one backend rank step
+        assertEquals("promoted", ranked.get(0).getName());
+        assertEquals("relevant", ranked.get(1).getName());
+        assertTrue(ranked.get(0).isPromoted());
+    }
+    
+    @Test
+    public void orderIsStableForTies() {
+        int[] order = ProximityRanker.order(new double[]{5, 1, 5, 1, Double.NaN, 0}, 6);
+        assertArrayEquals(new int[]{5, 1, 3, 0, 2, 4}, order);
+    }
+    
+    @Test
+    public void ranksThousandsWithinAFrame() {
+        List<PlaceResult> places = randomPlaces(5000, 42);
+        for (int i = 0; i < 20; i++) {
+            ProximityRanker.rank(places, ORIGIN_LAT, ORIGIN_LNG, ProximityRanker.Mode.WEIGHTED);
+        }
+        long[] runs = new long[15];
+        for (int i = 0; i < runs.length; i++) {
+            long start = System.nanoTime();
+            List<PlaceResult> ranked = ProximityRanker.rank(places, ORIGIN_LAT, ORIGIN_LNG, ProximityRanker.Mode.DISTANCE);
+            runs[i] = System.nanoTime() - start;
+            assertEquals(5000, ranked.size());
+        }
+        Arrays.sort(runs);
+        double medianMs = runs[runs.length / 2] / 1e6;
+        // 16 ms frame budget on a phone; a desktop JVM should be far below it
+        assertTrue("median " + medianMs + " ms", medianMs < 16);
+    }
+}
\ No newline at end of file
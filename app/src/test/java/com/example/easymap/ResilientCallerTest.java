@@ -0,0 +1,227 @@
+package com.example.easymap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.*;
+
+// Against a local server injecting the faults a flaky backend shows:
+// dropped connections, 503s, slow headers and slow bodies
+public class ResilientCallerTest {
+    private MockWebServer server;
+    private ScheduledExecutorService scheduler;
+    private OkHttpClient client;
+    private CircuitBreaker breaker;
+    
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        client = HttpTransport.newClientBuilder().build();
+        breaker = new CircuitBreaker(3, 60_000);
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdownNow();
+        server.shutdown();
+    }
+    
+    private ResilientCaller caller(long deadlineMillis, int maxAttempts, long hedgeMillis) {
+        return new ResilientCaller(client, breaker, scheduler, deadlineMillis, maxAttempts, 20, 100,
+            () -> hedgeMillis);
+    }
+    
+    private Request request() {
+        return new Request.Builder()
+            .url(server.url("/chat"))
+            .post(RequestBody.create(ChatRequest.body("dumplings"), MediaType.get(ChatRequest.MEDIA_TYPE)))
+            .build();
+    }
+    
+    // Outcome of one exchange: "200 <body>", "404 ..." or the failure name
+    private static class Outcome implements ResilientCaller.Callback {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile String result;
+        
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            try (Response r = response) {
+                result = r.code() + " " + r.body().string();
+            } catch (IOException e) {
+                result = "body failed";
+            }
+            done.countDown();
+        }
+        
+        @Override
+        public void onFailure(ResilientCaller.Failure failure, IOException cause) {
+            result = failure.name();
+            done.countDown();
+        }
+        
+        String await() throws InterruptedException {
+            assertTrue("no outcome", done.await(10, TimeUnit.SECONDS));
+            return result;
+        }
+    }
+    
+    private String call(ResilientCaller caller) throws InterruptedException {
+        Outcome outcome = new Outcome();
+        caller.enqueue(request(), outcome);
+        return outcome.await();
+    }
+    
+    @Test
+    public void retriesDroppedConnectionsAndServerErrors() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+        ResilientCaller caller = caller(5_000, 3, 0);
+        assertEquals("200 ok", call(caller));
+        assertEquals(3, server.getRequestCount());
+        assertEquals(2, caller.getRetries());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+    
+    @Test
+    public void clientErrorsAreNotRetried() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404).setBody("nope"));
+        ResilientCaller caller = caller(5_000, 3, 0);
+        assertEquals("404 nope", call(caller));
+        assertEquals(1, server.getRequestCount());
+    }
+    
+    @Test
+    public void givesUpAfterMaxAttempts() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(502));
+        }
+        assertEquals("SERVER_ERROR", call(caller(5_000, 3, 0)));
+        assertEquals(3, server.getRequestCount());
+    }
+    
+    @Test
+    public void deadlineBoundsASlowBackend() throws Exception {
+        server.enqueue(new MockResponse().setBody("late").setHeadersDelay(2, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        assertEquals("DEADLINE", call(caller(300, 3, 0)));
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(millis + " ms", millis < 2_000);
+    }
+    
+    @Test
+    public void deadlineAlsoCoversReadingTheBody() throws Exception {
+        server.enqueue(new MockResponse().setBody("headers now, body much later").setBodyDelay(2, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        assertEquals("body failed", call(caller(300, 1, 0)));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2_000);
+    }
+    
+    @Test
+    public void hedgedRequestWinsOverAStalledOne() throws Exception {
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(2, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("fast"));
+        ResilientCaller caller = caller(5_000, 2, 100);
+        long start = System.nanoTime();
+        assertEquals("200 fast", call(caller));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2_000);
+        assertEquals(1, caller.getHedges());
+        assertEquals(1, caller.getHedgeWins());
+    }
+    
+    @Test
+    public void fastFirstAnswerSendsNoHedge() throws Exception {
+        server.enqueue(new MockResponse().setBody("fast"));
+        ResilientCaller caller = caller(5_000, 2, 500);
+        assertEquals("200 fast", call(caller));
+        Thread.sleep(700);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, caller.getHedges());
+    }
+    
+    @Test
+    public void openCircuitFailsFastWithoutTouchingTheServer() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        }
+        ResilientCaller caller = caller(5_000, 1, 0);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("NETWORK", call(caller));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        
+        List<String> refused = new ArrayList<>();
+        caller.enqueue(request(), new ResilientCaller.Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+            
+            @Override
+            public void onFailure(ResilientCaller.Failure failure, IOException cause) {
+                refused.add(failure.name());
+            }
+        });
+        // Reported synchronously
+        assertEquals(1, refused.size());
+        assertEquals("CIRCUIT_OPEN", refused.get(0));
+        assertEquals(3, server.getRequestCount());
+    }
+    
+    @Test
+    public void cancelledExchangeReportsNothing() throws Exception {
+        server.enqueue(new MockResponse().setBody("late").setHeadersDelay(2, TimeUnit.SECONDS));
+        Outcome outcome = new Outcome();
+        SearchCoordinator.Cancellable handle = caller(5_000, 3, 0).enqueue(request(), outcome);
+        Thread.sleep(100);
+        handle.cancel();
+        assertFalse(outcome.done.await(500, TimeUnit.MILLISECONDS));
+    }
+    
+    // One request in five stalls; with hedging and a deadline every search still
+    // completes in a bounded time
+    @Test
+    public void tailLatencyStaysBoundedUnderIntermittentStalls() throws Exception {
+        AtomicInteger served = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                MockResponse response = new MockResponse().setBody("ok");
+                return served.incrementAndGet() % 5 == 1 ? response.setHeadersDelay(3, TimeUnit.SECONDS) : response;
+            }
+        });
+        ResilientCaller caller = caller(1_500, 2, 150);
+        long worst = 0;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            assertEquals("200 ok", call(caller));
+            worst = Math.max(worst, System.nanoTime() - start);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(worst) + " ms", TimeUnit.NANOSECONDS.toMillis(worst) < 1_000);
+        assertTrue(caller.getHedgeWins() >= 1);
+    }
+}
\ No newline at end of file
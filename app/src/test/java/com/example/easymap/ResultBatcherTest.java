@@ -0,0 +1,113 @@
+package com.example.easymap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResultBatcherTest {
+    // A manual clock standing in for the main thread's Handler
+    private long now;
+    private final List<long[]> dueTimes = new ArrayList<>();
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<List<String>> batches = new ArrayList<>();
+    private final List<Boolean> firsts = new ArrayList<>();
+    private ResultBatcher batcher;
+    
+    @Before
+    public void setUp() {
+        batcher = new ResultBatcher((task, delay) -> {
+            dueTimes.add(new long[]{now + delay, tasks.size()});
+            tasks.add(task);
+            return true;
+        }, 100, 3, (batch, first) -> {
+            List<String> names = new ArrayList<>();
+            for (PlaceResult place : batch) {
+                names.add(place.getName());
+            }
+            batches.add(names);
+            firsts.add(first);
+        });
+    }
+    
+    // Runs every task due by the given time, in due order
+    private void advanceTo(long time) {
+        now = time;
+        while (true) {
+            long[] next = null;
+            for (long[] due : dueTimes) {
+                if (due[0] <= now && (next == null || due[0] < next[0] || due[0] == next[0] && due[1] < next[1])) {
+                    next = due;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            dueTimes.remove(next);
+            tasks.get((int) next[1]).run();
+        }
+    }
+    
+    private static PlaceResult place(String name) {
+        return new PlaceResult(name, "addr", 39.9, 116.4, PlaceResult.UNKNOWN_DISTANCE, "cafe");
+    }
+    
+    @Test
+    public void firstPlaceIsDeliveredImmediatelyThenBatchedPerInterval() {
+        batcher.add(place("a"));
+        advanceTo(0);
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList("a"), batches.get(0));
+        assertTrue(firsts.get(0));
+        
+        batcher.add(place("b"));
+        advanceTo(10);
+        batcher.add(place("c"));
+        advanceTo(50);
+        assertEquals(1, batches.size());
+        advanceTo(100);
+        assertEquals(Arrays.asList("b", "c"), batches.get(1));
+        assertFalse(firsts.get(1));
+    }
+    
+    @Test
+    public void fullBatchIsDeliveredWithoutWaitingForTheInterval() {
+        batcher.add(place("a"));
+        advanceTo(0);
+        batcher.add(place("b"));
+        batcher.add(place("c"));
+        batcher.add(place("d"));
+        advanceTo(1);
+        assertEquals(Arrays.asList("b", "c", "d"), batches.get(1));
+        advanceTo(200);
+        assertEquals(2, batches.size());
+    }
+    
+    @Test
+    public void finishFlushesTheRestBeforeCompleting() {
+        List<Integer> seenAtFinish = new ArrayList<>();
+        batcher.add(place("a"));
+        advanceTo(0);
+        batcher.add(place("b"));
+        batcher.finish(() -> seenAtFinish.add(batches.size()));
+        advanceTo(0);
+        assertEquals(Arrays.asList(2), seenAtFinish);
+        assertEquals(Arrays.asList("b"), batches.get(1));
+    }
+    
+    @Test
+    public void cancelledBatcherDeliversNothing() {
+        List<Integer> finished = new ArrayList<>();
+        batcher.add(place("a"));
+        batcher.cancel();
+        batcher.add(place("b"));
+        batcher.finish(() -> finished.add(1));
+        advanceTo(1000);
+        assertTrue(batches.isEmpty());
+        assertTrue(finished.isEmpty());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.example.easymap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SearchCacheTest {
+    private static final long TTL = 60_000;
+    
+    private File dir;
+    private long now = 1_000_000;
+    
+    private class TestCache extends SearchCache {
+        TestCache(int maxMemoryEntries, long maxDiskBytes) {
+            super(dir, maxMemoryEntries, maxDiskBytes, TTL);
+        }
+        
+        @Override
+        long currentTimeMillis() {
+            return now;
+        }
+    }
+    
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("search-cache").toFile();
+    }
+    
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+    
+    private static List<PlaceResult> places(String... names) {
+        PlaceResult[] result = new PlaceResult[names.length];
+        for (int i = 0; i < names.length; i++) {
+            result[i] = new PlaceResult(names[i], "addr " + i, 39.9 + i * 0.001, 116.4, "未知距离", "food");
+        }
+        return Arrays.asList(result);
+    }
+    
+    @Test
+    public void keyIgnoresCaseWhitespaceAndPlurals() {
+        assertEquals(SearchCache.key("Coffee  Shops", 39.9087, 116.3975),
+            SearchCache.key("coffee shop", 39.9088, 116.3976));
+        assertEquals("dumpling", QueryNormalizer.normalize(" Dumplings! "));
+        assertEquals("bakery", QueryNormalizer.normalize("bakeries"));
+        assertEquals("bus", QueryNormalizer.normalize("bus"));
+        assertNotEquals(SearchCache.key("coffee", 39.9087, 116.3975),
+            SearchCache.key("coffee", 31.2304, 121.4737));
+    }
+    
+    @Test
+    public void memoryHitReturnsStoredPlaces() {
+        SearchCache cache = new TestCache(8, 1 << 20);
+        assertNull(cache.get("coffee@wx4g0b"));
+        cache.put("coffee@wx4g0b", places("A", "B"));
+        
+        List<PlaceResult> hit = cache.get("coffee@wx4g0b");
+        assertNotNull(hit);
+        assertEquals(2, hit.size());
+        assertEquals("B", hit.get(1).getName());
+        assertEquals(1, cache.getMemoryHits());
+        assertEquals(1, cache.getMisses());
+    }
+    
+    @Test
+    public void diskTierSurvivesRestart() {
+        new TestCache(8, 1 << 20).put("coffee@wx4g0b", places("A", "B", "C"));
+        
+        SearchCache restarted = new TestCache(8, 1 << 20);
+        List<PlaceResult> hit = restarted.get("coffee@wx4g0b");
+        assertNotNull(hit);
+        assertEquals(3, hit.size());
+        assertEquals("C", hit.get(2).getName());
+        assertEquals("food", hit.get(2).getType());
+        assertEquals(39.902, hit.get(2).getLatitude(), 1e-9);
+        assertEquals(1, restarted.getDiskHits());
+        
+        // Promoted to memory on the way out
+        restarted.get("coffee@wx4g0b");
+        assertEquals(1, restarted.getMemoryHits());
+    }
+    
+    @Test
+    public void expiredEntriesAreMisses() {
+        SearchCache cache = new TestCache(8, 1 << 20);
+        cache.put("k", places("A"));
+        now += TTL + 1;
+        assertNull(cache.get("k"));
+        assertNull(new TestCache(8, 1 << 20).get("k"));
+    }
+    
+    @Test
+    public void memoryTierEvictsLeastRecentlyUsed() {
+        SearchCache cache = new TestCache(2, 1 << 20);
+        cache.put("a", places("A"));
+        cache.put("b", places("B"));
+        cache.get("a");
+        cache.put("c", places("C"));
+        
+        assertEquals(1, cache.getEvictions());
+        // "b" is gone from memory but still on disk
+        cache.get("b");
+        assertEquals(1, cache.getDiskHits());
+    }
+    
+    @Test
+    public void diskTierStaysWithinByteBudget() {
+        SearchCache cache = new TestCache(1, 600);
+        for (int i = 0; i < 20; i++) {
+            cache.put("query" + i, places("Place " + i, "Other " + i));
+            now += 1000;
+        }
+        long total = 0;
+        for (File f : dir.listFiles()) {
+            total += f.length();
+        }
+        assertTrue(total <= 600);
+        assertNotNull(cache.get("query19"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.example.easymap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchCoordinatorTest {
+    
+    private static class FakeCall implements SearchCoordinator.Cancellable {
+        boolean cancelled;
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+    
+    @Test
+    public void identicalPendingQueryIsCoalesced() {
+        SearchCoordinator coordinator = new SearchCoordinator();
+        long first = coordinator.begin("coffee");
+        assertTrue(first > 0);
+        assertEquals(-1, coordinator.begin("Coffee "));
+        assertTrue(coordinator.isCurrent(first));
+    }
+    
+    @Test
+    public void newQuerySupersedesAndCancelsInFlightCall() {
+        SearchCoordinator coordinator = new SearchCoordinator();
+        long first = coordinator.begin("coffee");
+        FakeCall firstCall = new FakeCall();
+        coordinator.attach(first, firstCall);
+        
+        long second = coordinator.begin("coffee shop near");
+        assertTrue(firstCall.cancelled);
+        assertFalse(coordinator.isCurrent(first));
+        assertTrue(coordinator.isCurrent(second));
+    }
+    
+    @Test
+    public void lateAttachOfSupersededSearchIsCancelled() {
+        SearchCoordinator coordinator = new SearchCoordinator();
+        long first = coordinator.begin("tea");
+        coordinator.begin("teahouse");
+        
+        FakeCall stale = new FakeCall();
+        coordinator.attach(first, stale);
+        assertTrue(stale.cancelled);
+    }
+    
+    @Test
+    public void finishedQueryCanBeSearchedAgain() {
+        SearchCoordinator coordinator = new SearchCoordinator();
+        long first = coordinator.begin("atm");
+        coordinator.finish(first);
+        long again = coordinator.begin("atm");
+        assertTrue(again > first);
+    }
+    
+    @Test
+    public void cancelAllInvalidatesCurrentGeneration() {
+        SearchCoordinator coordinator = new SearchCoordinator();
+        long gen = coordinator.begin("metro");
+        FakeCall call = new FakeCall();
+        coordinator.attach(gen, call);
+        coordinator.cancelAll();
+        assertTrue(call.cancelled);
+        assertFalse(coordinator.isCurrent(gen));
+    }
+}
\ No newline at end of file
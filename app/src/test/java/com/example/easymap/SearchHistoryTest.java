@@ -0,0 +1,162 @@
+package com.example.easymap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SearchHistoryTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+    
+    // A manual clock
+    private long now = 100 * DAY;
+    
+    private SearchHistory history(File file, int maxEntries) {
+        return new SearchHistory(file, maxEntries) {
+            @Override
+            long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+    
+    private static List<String> queries(List<SearchHistory.Entry> entries) {
+        List<String> queries = new ArrayList<>();
+        for (SearchHistory.Entry entry : entries) {
+            queries.add(entry.getQuery());
+        }
+        return queries;
+    }
+    
+    @Test
+    public void suggestsByPrefixOfAnyWord() throws IOException {
+        SearchHistory history = history(null, 100);
+        history.record("Dumplings");
+        history.record("cheap dumplings near me");
+        history.record("Duck");
+        history.record("coffee shops");
+        
+        assertEquals(3, history.suggest("du", 10).size());
+        assertEquals(Arrays.asList("Dumplings", "cheap dumplings near me"), sortedByName(history.suggest("DUMP", 10)));
+        // Plurals are not folded while typing: "coffee shops" still matches "coffee sho"
+        assertEquals(Arrays.asList("coffee shops"), queries(history.suggest("Coffee  sho", 10)));
+        assertTrue(history.suggest("tea", 10).isEmpty());
+        assertTrue(history.suggest(" ", 10).isEmpty());
+    }
+    
+    private static List<String> sortedByName(List<SearchHistory.Entry> entries) {
+        List<String> names = queries(entries);
+        names.sort(null);
+        return names;
+    }
+    
+    @Test
+    public void ranksByFrequencyDecayedByAge() throws IOException {
+        SearchHistory history = history(null, 100);
+        for (int i = 0; i < 4; i++) {
+            history.record("museum");
+        }
+        now += 1000;
+        history.record("mall");
+        assertEquals(Arrays.asList("museum", "mall"), queries(history.suggest("m", 10)));
+        
+        // Three weeks later the frequent one has decayed below a fresh search
+        now += 21 * DAY;
+        history.record("market");
+        assertEquals("market", history.suggest("m", 10).get(0).getQuery());
+        assertEquals(1, history.suggest("m", 1).size());
+        assertEquals(Arrays.asList("market", "mall", "museum"), history.recent(10));
+    }
+    
+    @Test
+    public void historyAndPickedPlacesSurviveReload() throws IOException {
+        File file = new File(tmp.getRoot(), "history.bin");
+        SearchHistory history = history(file, 100);
+        history.record("Peking duck");
+        history.record("peking  DUCK");
+        PlaceResult picked = new PlaceResult("全聚德", "前门大街30号", 39.9, 116.39, "350 m", "烤鸭店");
+        history.recordSelection("peking duck", picked);
+        history.recordSelection("peking duck", picked);
+        history.recordSelection("unknown query", picked);
+        assertTrue(history.flush());
+        
+        SearchHistory reloaded = history(file, 100);
+        reloaded.load();
+        assertEquals(1, reloaded.size());
+        SearchHistory.Entry entry = reloaded.get("Peking Duck");
+        assertEquals("peking DUCK", entry.getQuery());
+        assertEquals(2, entry.getCount());
+        assertEquals(1, entry.getPlaces().size());
+        PlaceResult place = entry.getPlaces().get(0);
+        assertEquals(picked.getId(), place.getId());
+        assertEquals("烤鸭店", place.getType());
+        assertEquals(PlaceResult.UNKNOWN_DISTANCE, place.getDistance());
+        assertEquals(entry, reloaded.suggest("pek", 5).get(0));
+    }
+    
+    @Test
+    public void changesAreWrittenOnlyOnFlush() throws IOException {
+        File file = new File(tmp.getRoot(), "history.bin");
+        SearchHistory history = history(file, 100);
+        history.record("dumplings");
+        history.record("hot pot");
+        assertFalse(file.exists());
+        assertEquals(1, history.suggest("hot", 5).size());
+        
+        // Both changes in one write; nothing left for the next flush
+        assertTrue(history.flush());
+        assertFalse(history.flush());
+        SearchHistory reloaded = history(file, 100);
+        reloaded.load();
+        assertEquals(2, reloaded.size());
+        
+        history.recordSelection("hot pot", new PlaceResult("海底捞", "王府井大街", 39.91, 116.41, PlaceResult.UNKNOWN_DISTANCE, "火锅"));
+        assertTrue(history.flush());
+    }
+    
+    @Test
+    public void oldestEntriesAreDroppedPastTheLimit() throws IOException {
+        SearchHistory history = history(null, 3);
+        for (String query : new String[]{"a1", "b2", "c3", "d4"}) {
+            now += 1000;
+            history.record(query);
+        }
+        assertEquals(3, history.size());
+        assertNull(history.get("a1"));
+        assertTrue(history.suggest("a", 5).isEmpty());
+    }
+    
+    @Test
+    public void suggestionsTakeWellUnderAMillisecond() throws IOException {
+        SearchHistory history = history(null, SearchHistory.DEFAULT_MAX_ENTRIES);
+        Random random = new Random(5);
+        String[] words = {"cheap", "coffee", "dumplings", "duck", "metro", "museum", "park", "hotel", "bar",
+            "noodles", "hot", "pot", "tea", "mall", "bank", "pharmacy"};
+        for (int i = 0; i < SearchHistory.DEFAULT_MAX_ENTRIES; i++) {
+            now += 1000;
+            history.record(words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " " + i);
+        }
+        String[] prefixes = {"c", "co", "cof", "du", "m", "mu", "p", "h", "hot p", "t", "b", "noo"};
+        for (int i = 0; i < 2000; i++) {
+            history.suggest(prefixes[i % prefixes.length], 8);
+        }
+        int lookups = 12_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            assertFalse(history.suggest(prefixes[i % prefixes.length], 8).isEmpty());
+        }
+        long perLookupMicros = (System.nanoTime() - start) / 1000 / lookups;
+        assertTrue("per lookup: " + perLookupMicros + " us", perLookupMicros < 500);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.example.easymap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class SearchMetricsTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+    
+    private long now;
+    private SearchMetrics metrics;
+    
+    @Before
+    public void setUp() {
+        metrics = new SearchMetrics() {
+            @Override
+            long nanoTime() {
+                return now;
+            }
+        };
+    }
+    
+    private void advanceMillis(long millis) {
+        now += millis * 1_000_000;
+    }
+    
+    @Test
+    public void stagesRecordTimeSinceThePreviousCheckpoint() {
+        metrics.start(1);
+        advanceMillis(3);
+        metrics.stage(1, SearchMetrics.Stage.CACHE);
+        advanceMillis(800);
+        metrics.stage(1, SearchMetrics.Stage.NETWORK);
+        advanceMillis(40);
+        metrics.stage(1, SearchMetrics.Stage.PARSE);
+        advanceMillis(16);
+        metrics.stage(1, SearchMetrics.Stage.RENDER);
+        metrics.finish(1);
+        
+        assertEquals(3_000, metrics.histogram(SearchMetrics.Stage.CACHE).percentileMicros(50));
+        assertEquals(800_000, metrics.histogram(SearchMetrics.Stage.NETWORK).percentileMicros(50));
+        assertEquals(40_000, metrics.histogram(SearchMetrics.Stage.PARSE).percentileMicros(50));
+        assertEquals(859_000, metrics.histogram(SearchMetrics.Stage.TOTAL).percentileMicros(50));
+        assertEquals(0, metrics.histogram(SearchMetrics.Stage.RANK).getCount());
+        assertEquals(1, metrics.count(SearchMetrics.Counter.SEARCHES));
+    }
+    
+    @Test
+    public void markRecordsTimeSinceStartWithoutMovingTheCheckpoint() {
+        metrics.start(1);
+        advanceMillis(500);
+        metrics.stage(1, SearchMetrics.Stage.NETWORK);
+        advanceMillis(20);
+        metrics.mark(1, SearchMetrics.Stage.FIRST_RESULT);
+        advanceMillis(30);
+        metrics.stage(1, SearchMetrics.Stage.PARSE);
+        
+        assertEquals(520_000, metrics.histogram(SearchMetrics.Stage.FIRST_RESULT).percentileMicros(50));
+        assertEquals(50_000, metrics.histogram(SearchMetrics.Stage.PARSE).percentileMicros(50));
+    }
+    
+    @Test
+    public void abandonedAndSupersededSearchesRecordNoTotal() {
+        metrics.start(1);
+        metrics.abandon(1);
+        metrics.stage(1, SearchMetrics.Stage.NETWORK);
+        metrics.finish(1);
+        
+        // Started but never finished, then pushed out by newer searches
+        for (long generation = 2; generation < 20; generation++) {
+            metrics.start(generation);
+        }
+        metrics.finish(2);
+        assertEquals(0, metrics.histogram(SearchMetrics.Stage.TOTAL).getCount());
+        assertEquals(0, metrics.histogram(SearchMetrics.Stage.NETWORK).getCount());
+        metrics.finish(19);
+        assertEquals(1, metrics.histogram(SearchMetrics.Stage.TOTAL).getCount());
+    }
+    
+    @Test
+    public void dumpListsStagesAndNonZeroCounters() throws Exception {
+        metrics.start(1);
+        advanceMillis(1234);
+        metrics.stage(1, SearchMetrics.Stage.NETWORK);
+        metrics.finish(1);
+        metrics.increment(SearchMetrics.Counter.CONNECT_FAILED);
+        metrics.increment(SearchMetrics.Counter.CONNECT_FAILED);
+        metrics.record(SearchMetrics.Stage.LOCATION_FIX, 2_500_000_000L);
+        
+        StringWriter out = new StringWriter();
+        metrics.dumpTo(out);
+        String dump = out.toString();
+        assertTrue(dump, dump.contains("network            1   1234.0   1234.0   1234.0   1234.0"));
+        assertTrue(dump, dump.contains("location_fix"));
+        assertTrue(dump, dump.contains("connect_failed=2"));
+        assertTrue(dump, dump.contains("searches=1"));
+        assertFalse(dump, dump.contains("service_error"));
+        assertFalse(dump, dump.contains("parse "));
+    }
+    
+    @Test
+    public void dumpNamesDoNotDependOnTheLocale() {
+        metrics.increment(SearchMetrics.Counter.PREFETCHES);
+        Locale saved = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            // Not "prefetches" with a dotless i
+            assertTrue(metrics.dump().contains("prefetches=1"));
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+    
+    @Test
+    public void appendedFileIsRotatedPastItsLimit() throws Exception {
+        File file = new File(temp.getRoot(), "search_metrics.txt");
+        metrics.increment(SearchMetrics.Counter.SEARCHES);
+        metrics.appendTo(file, 1024);
+        long oneDump = file.length();
+        while (file.length() <= 1024) {
+            metrics.appendTo(file, 1024);
+        }
+        long full = file.length();
+        
+        metrics.appendTo(file, 1024);
+        assertEquals(oneDump, file.length());
+        File previous = new File(temp.getRoot(), "search_metrics.txt.1");
+        assertEquals(full, previous.length());
+        assertTrue(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).contains("searches=1"));
+    }
+}
\ No newline at end of file
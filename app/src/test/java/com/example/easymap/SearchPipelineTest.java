@@ -0,0 +1,330 @@
+package com.example.easymap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SearchPipelineTest {
+    
+    // Runs nothing until asked, so each hand-off between stages can be observed
+    private static class QueueExecutor implements Executor {
+        final List<Runnable> queue = new ArrayList<>();
+        
+        @Override
+        public void execute(Runnable task) {
+            queue.add(task);
+        }
+        
+        void runAll() {
+            while (!queue.isEmpty()) {
+                queue.remove(0).run();
+            }
+        }
+    }
+    
+    private final QueueExecutor fetchExecutor = new QueueExecutor();
+    private final QueueExecutor parseExecutor = new QueueExecutor();
+    private final QueueExecutor rankExecutor = new QueueExecutor();
+    private final QueueExecutor uiExecutor = new QueueExecutor();
+    private final SearchMetrics metrics = new SearchMetrics();
+    private final List<String> log = new ArrayList<>();
+    private final List<List<PlaceResult>> rendered = new ArrayList<>();
+    private final List<Exception> failures = new ArrayList<>();
+    // What the fake fetch stage answers with; null leaves the search waiting
+    private SearchPipeline.Fetched answer;
+    private Exception fetchError;
+    // Thrown by the fetch stage itself, or by its fallback step if fetchFallsBack
+    private RuntimeException fetchThrows;
+    // Answer from a second fetch step, as a fallback decided on another thread would
+    private boolean fetchFallsBack;
+    private boolean fetchCancelled;
+    private boolean bodyClosed;
+    private SearchPipeline pipeline;
+    
+    @Before
+    public void setUp() {
+        pipeline = newPipeline(fetchExecutor);
+    }
+    
+    private SearchPipeline newPipeline(Executor fetch) {
+        return new SearchPipeline(fetch, parseExecutor, rankExecutor, uiExecutor,
+            search -> {
+                log.add("locate");
+                search.setLocation(39.9, 116.4);
+            },
+            (search, callback) -> {
+                log.add("fetch");
+                search.getToken().onCancel(() -> fetchCancelled = true);
+                if (fetchFallsBack) {
+                    callback.continueFetch(() -> {
+                        log.add("fallback");
+                        if (fetchThrows != null) {
+                            throw fetchThrows;
+                        }
+                        callback.onFetched(answer);
+                    });
+                } else if (fetchThrows != null) {
+                    throw fetchThrows;
+                } else if (fetchError != null) {
+                    callback.onFailed(fetchError);
+                } else if (answer != null) {
+                    callback.onFetched(answer);
+                }
+            },
+            (search, fetched, progress) -> {
+                log.add("parse");
+                List<PlaceResult> places = PlaceResultParser.parse(fetched.getBody());
+                for (PlaceResult place : places) {
+                    progress.onPlace(place);
+                }
+                return places;
+            },
+            (search, places) -> {
+                log.add("rank");
+                List<PlaceResult> ranked = new ArrayList<>(places);
+                ranked.sort((a, b) -> a.getName().compareTo(b.getName()));
+                return ranked;
+            },
+            new SearchPipeline.RenderStage() {
+                @Override
+                public void onProgress(SearchPipeline.Search search, PlaceResult place) {
+                    log.add("progress " + place.getName());
+                }
+                
+                @Override
+                public void render(SearchPipeline.Search search, List<PlaceResult> places,
+                                   SearchPipeline.Origin origin) {
+                    log.add("render " + origin);
+                    rendered.add(places);
+                }
+                
+                @Override
+                public void onFailed(SearchPipeline.Search search, Exception error) {
+                    log.add("failed");
+                    failures.add(error);
+                }
+            },
+            metrics);
+    }
+    
+    private SearchPipeline.Fetched body(String json) {
+        Closeable response = () -> bodyClosed = true;
+        return SearchPipeline.Fetched.body(new StringReader(json), "application/json", response);
+    }
+    
+    private static final String TWO_PLACES = "{\"results\": ["
+        + "{\"name\": \"Zoo\", \"address\": \"a\", \"latitude\": 39.9, \"longitude\": 116.4},"
+        + "{\"name\": \"Bank\", \"address\": \"b\", \"latitude\": 39.91, \"longitude\": 116.41}]}";
+    
+    private static List<String> names(List<PlaceResult> places) {
+        List<String> names = new ArrayList<>();
+        for (PlaceResult place : places) {
+            names.add(place.getName());
+        }
+        return names;
+    }
+    
+    @Test
+    public void stagesRunInOrderEachOnItsOwnExecutor() {
+        answer = body(TWO_PLACES);
+        metrics.start(1);
+        SearchPipeline.Search search = pipeline.start(1, "bank", SearchPipeline.Trigger.SUBMIT);
+        assertTrue(log.isEmpty());
+        
+        fetchExecutor.runAll();
+        assertEquals(Arrays.asList("locate", "fetch"), log);
+        assertTrue(search.hasLocation());
+        assertEquals(1, parseExecutor.queue.size());
+        assertTrue(rankExecutor.queue.isEmpty());
+        
+        parseExecutor.runAll();
+        assertTrue(bodyClosed);
+        assertEquals(1, rankExecutor.queue.size());
+        rankExecutor.runAll();
+        assertTrue(rendered.isEmpty());
+        uiExecutor.runAll();
+        
+        assertEquals(Arrays.asList("locate", "fetch", "parse", "progress Zoo", "progress Bank", "rank",
+            "render NETWORK"), log);
+        assertEquals(Arrays.asList("Bank", "Zoo"), names(rendered.get(0)));
+        assertEquals(1, metrics.histogram(SearchMetrics.Stage.PARSE).getCount());
+        assertEquals(1, metrics.histogram(SearchMetrics.Stage.RANK).getCount());
+        assertEquals(0, pipeline.getActiveCount());
+        assertFalse(fetchCancelled);
+    }
+    
+    @Test
+    public void onlySubmittedSearchesCountAsAskedFor() {
+        SearchPipeline.Search typed = pipeline.start(1, "dum", SearchPipeline.Trigger.TYPEAHEAD);
+        SearchPipeline.Search submitted = pipeline.start(2, "dumplings", SearchPipeline.Trigger.SUBMIT);
+        SearchPipeline.Search picked = pipeline.start(3, "dumplings", SearchPipeline.Trigger.SUGGESTION);
+        assertFalse(typed.isSubmitted());
+        assertFalse(typed.isFromHistory());
+        assertTrue(submitted.isSubmitted());
+        assertFalse(submitted.isFromHistory());
+        assertTrue(picked.isSubmitted());
+        assertTrue(picked.isFromHistory());
+    }
+    
+    @Test
+    public void placesFromFetchSkipParse() {
+        answer = SearchPipeline.Fetched.places(SearchPipeline.Origin.CACHE,
+            Arrays.asList(new PlaceResult("Zoo", "a", 39.9, 116.4, PlaceResult.UNKNOWN_DISTANCE, "zoo"),
+                new PlaceResult("Bank", "b", 39.9, 116.4, PlaceResult.UNKNOWN_DISTANCE, "bank")));
+        pipeline.start(1, "bank", SearchPipeline.Trigger.SUBMIT);
+        fetchExecutor.runAll();
+        assertTrue(parseExecutor.queue.isEmpty());
+        rankExecutor.runAll();
+        uiExecutor.runAll();
+        assertEquals(Arrays.asList("locate", "fetch", "rank", "render CACHE"), log);
+        assertEquals(Arrays.asList("Bank", "Zoo"), names(rendered.get(0)));
+    }
+    
+    @Test
+    public void cancelledSearchNeverReachesRender() {
+        answer = body(TWO_PLACES);
+        SearchPipeline.Search search = pipeline.start(1, "bank", SearchPipeline.Trigger.SUBMIT);
+        fetchExecutor.runAll();
+        parseExecutor.runAll();
+        rankExecutor.runAll();
+        
+        // A newer query supersedes it while the render is queued for the main thread
+        search.getToken().cancel();
+        uiExecutor.runAll();
+        assertTrue(rendered.isEmpty());
+        assertTrue(failures.isEmpty());
+        assertTrue(fetchCancelled);
+        assertEquals(0, pipeline.getActiveCount());
+    }
+    
+    @Test
+    public void cancelAllStopsOutstandingStagesAndClosesTheBody() {
+        answer = body(TWO_PLACES);
+        SearchPipeline.Search first = pipeline.start(1, "bank", SearchPipeline.Trigger.SUBMIT);
+        SearchPipeline.Search second = pipeline.start(2, "zoo", SearchPipeline.Trigger.SUBMIT);
+        fetchExecutor.queue.remove(1).run();
+        assertEquals(2, pipeline.getActiveCount());
+        
+        pipeline.cancelAll();
+        assertTrue(first.isCancelled());
+        assertTrue(second.isCancelled());
+        assertTrue(fetchCancelled);
+        assertTrue(bodyClosed);
+        
+        fetchExecutor.runAll();
+        parseExecutor.runAll();
+        rankExecutor.runAll();
+        uiExecutor.runAll();
+        assertEquals(Arrays.asList("locate", "fetch"), log);
+        assertEquals(0, pipeline.getActiveCount());
+    }
+    
+    @Test
+    public void fallbackFetchRunsBackOnTheFetchExecutor() {
+        answer = body(TWO_PLACES);
+        fetchFallsBack = true;
+        pipeline.start(1, "bank", SearchPipeline.Trigger.SUBMIT);
+        fetchExecutor.queue.remove(0).run();
+        assertEquals(Arrays.asList("locate", "fetch"), log);
+        assertEquals(1, fetchExecutor.queue.size());
+        
+        fetchExecutor.runAll();
+        parseExecutor.runAll();
+        rankExecutor.runAll();
+        uiExecutor.runAll();
+        assertEquals("fallback", log.get(2));
+        assertEquals(1, rendered.size());
+        
+        // A cancelled search skips its fallback
+        SearchPipeline.Search cancelled = pipeline.start(2, "zoo", SearchPipeline.Trigger.SUBMIT);
+        fetchExecutor.queue.remove(0).run();
+        cancelled.getToken().cancel();
+        fetchExecutor.runAll();
+        assertEquals(1, log.stream().filter("fallback"::equals).count());
+    }
+    
+    @Test
+    public void fetchOrParseFailureReachesOnFailed() {
+        fetchError = new IOException("Failed to connect to AI");
+        pipeline.start(1, "bank", SearchPipeline.Trigger.SUBMIT);
+        fetchExecutor.runAll();
+        uiExecutor.runAll();
+        assertEquals(1, failures.size());
+        assertEquals("Failed to connect to AI", failures.get(0).getMessage());
+        
+        fetchError = null;
+        answer = body("{\"results\": [");
+        pipeline.start(2, "zoo", SearchPipeline.Trigger.SUBMIT);
+        fetchExecutor.runAll();
+        parseExecutor.runAll();
+        assertTrue(bodyClosed);
+        assertTrue(rankExecutor.queue.isEmpty());
+        uiExecutor.runAll();
+        assertEquals(2, failures.size());
+        assertTrue(rendered.isEmpty());
+        assertEquals(0, pipeline.getActiveCount());
+    }
+    
+    @Test
+    public void throwingFetchFailsTheSearch() {
+        fetchThrows = new IllegalStateException("search cache failed to open");
+        pipeline.start(1, "bank", SearchPipeline.Trigger.SUBMIT);
+        fetchExecutor.runAll();
+        uiExecutor.runAll();
+        assertEquals(Arrays.asList("locate", "fetch", "failed"), log);
+        assertSame(fetchThrows, failures.get(0));
+        assertEquals(0, pipeline.getActiveCount());
+        
+        // Also when the throwing step is a fallback continued on the fetch executor
+        fetchFallsBack = true;
+        pipeline.start(2, "zoo", SearchPipeline.Trigger.SUBMIT);
+        fetchExecutor.runAll();
+        uiExecutor.runAll();
+        assertEquals(2, failures.size());
+        assertTrue(rendered.isEmpty());
+        assertEquals(0, pipeline.getActiveCount());
+    }
+    
+    @Test
+    public void fullStageQueueCancelsTheOldestQueuedSearch() throws Exception {
+        ThreadPoolExecutor executor = SearchPipeline.newStageExecutor("test-fetch", 1, 1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        pipeline = newPipeline(executor);
+        
+        SearchPipeline.Search older = pipeline.start(1, "bank", SearchPipeline.Trigger.SUBMIT);
+        SearchPipeline.Search newer = pipeline.start(2, "zoo", SearchPipeline.Trigger.SUBMIT);
+        assertTrue(older.isCancelled());
+        assertFalse(newer.isCancelled());
+        assertEquals(1, pipeline.getActiveCount());
+        
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("locate", "fetch"), log);
+        
+        // Nothing runs once the stage executor is shut down
+        assertTrue(pipeline.start(3, "park", SearchPipeline.Trigger.SUBMIT).isCancelled());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,154 @@
+package com.example.easymap;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class StartupSchedulerTest {
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private ExecutorService background;
+    private StartupScheduler scheduler;
+    
+    @Before
+    public void setUp() {
+        background = Executors.newSingleThreadExecutor();
+        Handler main = new Handler(Looper.getMainLooper());
+        scheduler = new StartupScheduler(main::post, background);
+    }
+    
+    @After
+    public void tearDown() {
+        background.shutdownNow();
+    }
+    
+    private StartupScheduler.Initializer<String> record(String name, long sleepMillis) {
+        return () -> {
+            events.add(name + (Looper.myLooper() == Looper.getMainLooper() ? " main" : " bg"));
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return name;
+        };
+    }
+    
+    @Test
+    public void onlyBlockingTasksRunBeforeStartReturns() {
+        scheduler.add("views", StartupScheduler.Phase.BEFORE_FIRST_DRAW, record("views", 0));
+        StartupScheduler.Task<String> location =
+            scheduler.add("location", StartupScheduler.Phase.AFTER_FIRST_DRAW, record("location", 0));
+        StartupScheduler.Task<String> cache = scheduler.add("cache", StartupScheduler.Phase.LAZY, record("cache", 0));
+        
+        scheduler.start();
+        assertTrue(events.contains("views main"));
+        assertFalse(location.isDone());
+        
+        // Not even posted until the first frame is drawn
+        shadowOf(Looper.getMainLooper()).idle();
+        assertFalse(location.isDone());
+        scheduler.onFirstDraw();
+        assertFalse(location.isDone());
+        shadowOf(Looper.getMainLooper()).idle();
+        assertTrue(location.isDone());
+        assertTrue(events.contains("location main"));
+        
+        // Lazy tasks wait for their first use
+        assertFalse(cache.isDone());
+        assertEquals("cache", cache.get());
+        assertTrue(events.contains("cache main"));
+    }
+    
+    @Test
+    public void backgroundTasksRunOffTheMainThreadInParallel() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StartupScheduler.Task<String> http = scheduler.add("http", StartupScheduler.Phase.BACKGROUND, () -> {
+            events.add(Looper.myLooper() == Looper.getMainLooper() ? "http main" : "http bg");
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "client";
+        });
+        scheduler.add("views", StartupScheduler.Phase.BEFORE_FIRST_DRAW, record("views", 0));
+        
+        scheduler.start();
+        // The blocking phase did not wait for the background task
+        assertTrue(events.contains("views main"));
+        assertFalse(http.isDone());
+        
+        release.countDown();
+        // get() on the main thread waits for the running task rather than running it twice
+        assertEquals("client", http.get());
+        assertEquals(Collections.singletonList("http bg"), filter("http"));
+    }
+    
+    @Test
+    public void timingsAreRecordedPerTaskAndPhase() throws Exception {
+        StartupScheduler.Task<String> views =
+            scheduler.add("views", StartupScheduler.Phase.BEFORE_FIRST_DRAW, record("views", 20));
+        scheduler.add("map", StartupScheduler.Phase.BEFORE_FIRST_DRAW, record("map", 30));
+        StartupScheduler.Task<String> http =
+            scheduler.add("http", StartupScheduler.Phase.BACKGROUND, record("http", 10));
+        StartupScheduler.Task<String> cache = scheduler.add("cache", StartupScheduler.Phase.LAZY, record("cache", 0));
+        
+        scheduler.start();
+        http.get();
+        assertTrue(views.getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        long blocking = scheduler.getPhaseNanos(StartupScheduler.Phase.BEFORE_FIRST_DRAW);
+        assertTrue(blocking >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(scheduler.getPhaseNanos(StartupScheduler.Phase.BACKGROUND) >= TimeUnit.MILLISECONDS.toNanos(10));
+        // Unused lazy work never counts against startup
+        assertEquals(-1, scheduler.getPhaseNanos(StartupScheduler.Phase.LAZY));
+        assertEquals(-1, cache.getDurationNanos());
+        assertTrue(scheduler.getSummary(), scheduler.getSummary().endsWith("cache -"));
+        assertEquals(0, scheduler.getPhaseNanos(StartupScheduler.Phase.AFTER_FIRST_DRAW));
+    }
+    
+    @Test
+    public void initializerFailuresSurfaceOnGet() {
+        StartupScheduler.Task<String> broken = scheduler.add("broken", StartupScheduler.Phase.BEFORE_FIRST_DRAW, () -> {
+            throw new IllegalStateException("no disk");
+        });
+        scheduler.start();
+        assertTrue(broken.isDone());
+        try {
+            broken.get();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("no disk", e.getMessage());
+        }
+    }
+    
+    private List<String> filter(String prefix) {
+        List<String> matching = new ArrayList<>();
+        synchronized (events) {
+            for (String event : events) {
+                if (event.startsWith(prefix)) {
+                    matching.add(event);
+                }
+            }
+        }
+        return matching;
+    }
+}
\ No newline at end of file
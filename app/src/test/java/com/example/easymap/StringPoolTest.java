@@ -0,0 +1,28 @@
+package com.example.easymap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StringPoolTest {
+    
+    @Test
+    public void equalStringsShareOneInstance() {
+        StringPool pool = new StringPool(10);
+        String first = pool.intern(new String("朝阳区"));
+        assertSame(first, pool.intern(new String("朝阳区")));
+        assertNull(pool.intern(null));
+        assertEquals(1, pool.size());
+    }
+    
+    @Test
+    public void staysBoundedWhenFull() {
+        StringPool pool = new StringPool(3);
+        for (int i = 0; i < 10; i++) {
+            pool.intern("value " + i);
+        }
+        assertTrue(pool.size() <= 3);
+        // Still returns an equal string after starting over
+        assertEquals("value 0", pool.intern(new String("value 0")));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+package com.example.easymap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TrackingPolicyTest {
+    // ~1.11 m of latitude per 1e-5 degrees
+    private static final double METER = 1e-5 / 1.11;
+    
+    private static ProgressiveLocator.Fix fix(double metersNorth, long seconds, float accuracy) {
+        return new ProgressiveLocator.Fix(39.9 + metersNorth * METER, 116.4, accuracy, seconds * 1000, null);
+    }
+    
+    @Test
+    public void smallMovesAndGpsJitterAreSuppressed() {
+        TrackingPolicy policy = new TrackingPolicy(25, 250);
+        assertEquals(TrackingPolicy.Decision.UPDATE, policy.onFix(fix(0, 0, 10)));
+        assertEquals(TrackingPolicy.Decision.IGNORE, policy.onFix(fix(10, 10, 10)));
+        // 40 m but only accurate to 60 m
+        assertEquals(TrackingPolicy.Decision.IGNORE, policy.onFix(fix(40, 20, 60)));
+        assertEquals(TrackingPolicy.Decision.UPDATE, policy.onFix(fix(40, 30, 10)));
+    }
+    
+    @Test
+    public void refreshFiresOncePerRefreshDistance() {
+        TrackingPolicy policy = new TrackingPolicy(25, 250);
+        policy.onFix(fix(0, 0, 10));
+        int refreshes = 0;
+        int updates = 0;
+        // Walk 1 km north at 1.5 m/s, a fix every 20 s (30 m)
+        for (int i = 1; i <= 34; i++) {
+            TrackingPolicy.Decision decision = policy.onFix(fix(i * 30, i * 20L, 10));
+            if (decision == TrackingPolicy.Decision.REFRESH) {
+                refreshes++;
+            } else if (decision == TrackingPolicy.Decision.UPDATE) {
+                updates++;
+            }
+        }
+        // At 270, 540 and 810 m
+        assertEquals(3, refreshes);
+        assertEquals(31, updates);
+    }
+    
+    @Test
+    public void intervalFollowsSpeed() {
+        TrackingPolicy policy = new TrackingPolicy(25, 250);
+        policy.onFix(fix(0, 0, 10));
+        // Standing still: slowest rate, network positioning
+        policy.onFix(fix(2, 30, 10));
+        assertEquals(TrackingPolicy.MAX_INTERVAL_MS, policy.intervalMillis());
+        assertFalse(policy.highAccuracy());
+        
+        // Walking at ~1.5 m/s: a fix every ~25 m
+        TrackingPolicy walking = new TrackingPolicy(25, 250);
+        for (int i = 0; i <= 10; i++) {
+            walking.onFix(fix(i * 15, i * 10L, 10));
+        }
+        assertEquals(1.5, walking.getSpeed(), 0.05);
+        assertEquals(16_667, walking.intervalMillis(), 600);
+        assertTrue(walking.highAccuracy());
+        
+        // Driving at 15 m/s hits the floor
+        TrackingPolicy driving = new TrackingPolicy(25, 250);
+        for (int i = 0; i <= 10; i++) {
+            driving.onFix(fix(i * 150, i * 10L, 10));
+        }
+        assertEquals(TrackingPolicy.MIN_INTERVAL_MS, driving.intervalMillis());
+    }
+    
+    @Test
+    public void walkingIsNoticedThroughCoarseNetworkFixes() {
+        TrackingPolicy policy = new TrackingPolicy(25, 250);
+        // Standing still on network positioning, a fix a minute good to 150 m
+        for (int i = 0; i <= 5; i++) {
+            policy.onFix(fix(0, i * 60L, 150));
+        }
+        assertEquals(TrackingPolicy.MAX_INTERVAL_MS, policy.intervalMillis());
+        assertFalse(policy.highAccuracy());
+        
+        // Starts walking at 1.4 m/s: 84 m between fixes, each inside the 150 m radius
+        policy.onFix(fix(84, 360, 150));
+        assertFalse(policy.highAccuracy());
+        policy.onFix(fix(168, 420, 150));
+        assertTrue(policy.highAccuracy());
+        assertTrue(policy.intervalMillis() < TrackingPolicy.MAX_INTERVAL_MS);
+        assertTrue(policy.needsReconfigure(TrackingPolicy.MAX_INTERVAL_MS, false));
+        
+        // GPS fixes then take over and the estimate settles on the walking speed
+        for (int i = 1; i <= 20; i++) {
+            policy.onFix(fix(168 + i * 14, 420 + i * 10L, 10));
+        }
+        assertEquals(1.4, policy.getSpeed(), 0.1);
+        
+        // Stopping again drops back to network positioning
+        for (int i = 1; i <= 6; i++) {
+            policy.onFix(fix(448, 620 + i * 15L, 10));
+        }
+        assertFalse(policy.highAccuracy());
+        assertEquals(TrackingPolicy.MAX_INTERVAL_MS, policy.intervalMillis());
+    }
+    
+    @Test
+    public void lowBatteryWidensIntervalAndDropsGps() {
+        TrackingPolicy policy = new TrackingPolicy(25, 250);
+        for (int i = 0; i <= 10; i++) {
+            policy.onFix(fix(i * 15, i * 10L, 10));
+        }
+        long normal = policy.intervalMillis();
+        policy.setBattery(15, false);
+        assertEquals(2 * normal, policy.intervalMillis());
+        assertFalse(policy.highAccuracy());
+        // Charging lifts the restriction
+        policy.setBattery(15, true);
+        assertEquals(normal, policy.intervalMillis());
+        assertTrue(policy.highAccuracy());
+    }
+    
+    @Test
+    public void reconfiguresOnlyOnLargeChanges() {
+        TrackingPolicy policy = new TrackingPolicy(25, 250);
+        for (int i = 0; i <= 10; i++) {
+            policy.onFix(fix(i * 15, i * 10L, 10));
+        }
+        long ideal = policy.intervalMillis();
+        assertFalse(policy.needsReconfigure(ideal + 5_000, true));
+        assertTrue(policy.needsReconfigure(ideal * 2, true));
+        assertTrue(policy.needsReconfigure(ideal, false));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.example.easymap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ViewportRendererTest {
+    // A manual clock standing in for the main thread's Handler
+    private long now;
+    private final List<Runnable> timers = new ArrayList<>();
+    private final List<Long> timerDue = new ArrayList<>();
+    private final List<Viewport> rendered = new ArrayList<>();
+    private ViewportRenderer renderer;
+    
+    @Before
+    public void setUp() {
+        renderer = new ViewportRenderer((task, delay) -> {
+            timers.add(task);
+            timerDue.add(now + delay);
+            return true;
+        }, 100, 0.5, (area, zoom) -> rendered.add(area)) {
+            @Override
+            long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+    
+    private void advanceTo(long time) {
+        now = time;
+        for (int i = 0; i < timers.size(); i++) {
+            if (timerDue.get(i) <= now) {
+                Runnable task = timers.remove(i);
+                timerDue.remove(i);
+                task.run();
+                i = -1;
+            }
+        }
+    }
+    
+    private static Viewport view(double lat, double lng) {
+        return new Viewport(lat - 0.01, lng - 0.01, lat + 0.01, lng + 0.01);
+    }
+    
+    @Test
+    public void smallPansInsideTheMarginRenderNothing() {
+        renderer.onCameraChangeFinish(view(39.90, 116.40), 15.2f);
+        assertEquals(1, rendered.size());
+        // The rendered area reaches half a view further on every side
+        assertTrue(rendered.get(0).contains(view(39.905, 116.405)));
+        
+        renderer.onCameraChange(view(39.905, 116.405), 15.4f);
+        renderer.onCameraChangeFinish(view(39.905, 116.405), 15.4f);
+        assertEquals(1, rendered.size());
+        
+        // Same place, next integer zoom level: clusters differ, so render
+        renderer.onCameraChangeFinish(view(39.905, 116.405), 16.1f);
+        assertEquals(2, rendered.size());
+    }
+    
+    @Test
+    public void movingCameraRendersAtMostOncePerInterval() {
+        renderer.onCameraChangeFinish(view(39.90, 116.40), 15);
+        // A fling: a camera change every 16 ms for a second, far enough to leave the margin
+        for (int frame = 1; frame <= 60; frame++) {
+            advanceTo(frame * 16L);
+            renderer.onCameraChange(view(39.90 + frame * 0.005, 116.40), 15);
+        }
+        int whileMoving = rendered.size() - 1;
+        assertTrue("renders while moving: " + whileMoving, whileMoving >= 5 && whileMoving <= 11);
+        
+        renderer.onCameraChangeFinish(view(39.90 + 60 * 0.005 + 0.05, 116.40), 15);
+        assertEquals(whileMoving + 2, rendered.size());
+        // A pending throttled render finds nothing left to do
+        advanceTo(5000);
+        assertEquals(whileMoving + 2, rendered.size());
+    }
+    
+    @Test
+    public void truncatedRenderIsRedoneOnTheNextMove() {
+        renderer.onCameraChangeFinish(view(39.90, 116.40), 15);
+        renderer.onTruncated(rendered.get(0));
+        renderer.onCameraChangeFinish(view(39.901, 116.40), 15);
+        assertEquals(2, rendered.size());
+        
+        renderer.invalidate(view(39.901, 116.40), 15);
+        assertEquals(3, rendered.size());
+    }
+    
+    @Test
+    public void selectionStaysInsideTheAreaAndUnderTheCap() {
+        MarkerClusterer clusterer = new MarkerClusterer();
+        Random random = new Random(3);
+        List<PlaceResult> places = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            places.add(new PlaceResult("Place " + i, "addr", 39.9 + (random.nextDouble() - 0.5) * 0.2,
+                116.4 + (random.nextDouble() - 0.5) * 0.2, "未知距离", "food"));
+        }
+        clusterer.setPlaces(places);
+        Viewport area = view(39.9, 116.4).expand(0.5);
+        
+        List<MarkerClusterer.Cluster> clusters = clusterer.clustersFor(17);
+        List<MarkerClusterer.Cluster> selected = ViewportRenderer.select(clusters, area, 100);
+        assertEquals(100, selected.size());
+        double farthest = 0;
+        for (MarkerClusterer.Cluster cluster : selected) {
+            assertTrue(area.contains(cluster.getLatitude(), cluster.getLongitude()));
+            farthest = Math.max(farthest, ProximityRanker.distance(39.9, 116.4, cluster.getLatitude(),
+                cluster.getLongitude()));
+        }
+        // Nearest the centre first: everything left out is farther away
+        for (MarkerClusterer.Cluster cluster : clusters) {
+            if (area.contains(cluster.getLatitude(), cluster.getLongitude()) && !selected.contains(cluster)) {
+                assertTrue(ProximityRanker.distance(39.9, 116.4, cluster.getLatitude(), cluster.getLongitude())
+                    >= farthest * 0.99);
+            }
+        }
+        
+        List<MarkerClusterer.Cluster> few = ViewportRenderer.select(clusters, view(39.9, 116.4).expand(-0.45), 1000);
+        assertTrue(few.size() < 100);
+    }
+    
+    @Test
+    public void boundsAroundTopResults() {
+        List<PlaceResult> places = Arrays.asList(
+            new PlaceResult("A", "a", 39.90, 116.40, "未知距离", null),
+            new PlaceResult("B", "b", 39.95, 116.35, "未知距离", null),
+            new PlaceResult("far", "c", 31.23, 121.47, "未知距离", null));
+        Viewport bounds = Viewport.around(places, 2);
+        assertEquals(39.90, bounds.getSouth(), 0);
+        assertEquals(39.95, bounds.getNorth(), 0);
+        assertEquals(116.35, bounds.getWest(), 0);
+        assertEquals(116.40, bounds.getEast(), 0);
+        assertTrue(Viewport.around(places.subList(0, 1), 5).isPoint());
+        assertNull(Viewport.around(new ArrayList<>(), 5));
+    }
+}
\ No newline at end of file
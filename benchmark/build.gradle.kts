@@ -0,0 +1,47 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The search path classes have no Android dependencies, so they are compiled
+// straight from the app sources instead of depending on the Android module
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "com/example/easymap/ChatRequest.java",
+                "com/example/easymap/MarkerClusterer.java",
+                "com/example/easymap/MarkerRegistry.java",
+                "com/example/easymap/PlaceId.java",
+                "com/example/easymap/PlaceIndex.java",
+                "com/example/easymap/PlaceResult.java",
+                "com/example/easymap/PlaceResultParser.java",
+                "com/example/easymap/PlaceStreamParser.java",
+                "com/example/easymap/ProximityRanker.java",
+                "com/example/easymap/QueryNormalizer.java",
+                "com/example/easymap/StringPool.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    implementation("com.google.code.gson:gson:2.10.1")
+}
+
+// ./gradlew :benchmark:jmh          all benchmarks
+// ./gradlew :benchmark:jmh -Pjmh.includes=Parse   a subset (regex on class/method)
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    (project.findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+}
\ No newline at end of file
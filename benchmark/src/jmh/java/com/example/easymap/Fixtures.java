@@ -0,0 +1,79 @@
+package com.example.easymap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Deterministic data shaped like real /chat traffic: Chinese POI names and
+// addresses scattered over central Beijing, plus the extra fields the backend
+// sends (ratings, tags, opening hours, a reply sentence) that parsing must skip.
+final class Fixtures {
+    // Tiananmen Square; results spread over roughly 20 km x 20 km around it
+    static final double ORIGIN_LAT = 39.9055;
+    static final double ORIGIN_LNG = 116.3976;
+    private static final double SPREAD_DEGREES = 0.18;
+    private static final long SEED = 20240601L;
+    
+    private static final String[] BRANDS = {"全聚德", "海底捞", "庆丰包子铺", "星巴克", "瑞幸咖啡", "西贝莜面村",
+        "护国寺小吃", "南门涮肉", "四季民福", "眉州东坡", "喜茶", "稻香村"};
+    private static final String[] KINDS = {"烤鸭店", "火锅", "包子铺", "咖啡", "面馆", "饺子馆", "博物馆", "公园"};
+    private static final String[] DISTRICTS = {"东城区", "西城区", "朝阳区", "海淀区", "丰台区"};
+    private static final String[] STREETS = {"王府井大街", "前门大街", "三里屯路", "建国门外大街", "中关村大街",
+        "南锣鼓巷", "鼓楼东大街", "西单北大街"};
+    private static final String[] TAGS = {"美食", "老字号", "景点", "亲子", "夜宵", "网红", "外卖"};
+    
+    private Fixtures() {
+    }
+    
+    static List<PlaceResult> places(int count) {
+        Random random = new Random(SEED);
+        List<PlaceResult> places = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            places.add(new PlaceResult(name(random, i), address(random), lat(random), lng(random),
+                PlaceResult.UNKNOWN_DISTANCE, KINDS[random.nextInt(KINDS.length)], random.nextInt(20) == 0));
+        }
+        return places;
+    }
+    
+    static String chatResponse(int count) {
+        Random random = new Random(SEED);
+        StringBuilder json = new StringBuilder(count * 320 + 128);
+        json.append("{\"reply\": \"为您找到").append(count).append("个相关地点，按距离排序如下：\", \"results\": [");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            json.append("{\"name\": \"").append(name(random, i))
+                .append("\", \"address\": \"").append(address(random))
+                .append("\", \"latitude\": ").append(lat(random))
+                .append(", \"longitude\": ").append(lng(random))
+                .append(", \"type\": \"").append(KINDS[random.nextInt(KINDS.length)])
+                .append("\", \"rating\": ").append((30 + random.nextInt(21)) / 10.0)
+                .append(", \"price_per_person\": ").append(20 + random.nextInt(300))
+                .append(", \"open_hours\": {\"mon_fri\": \"10:00-22:00\", \"weekend\": \"09:00-23:00\"}")
+                .append(", \"tags\": [\"").append(TAGS[random.nextInt(TAGS.length)])
+                .append("\", \"").append(TAGS[random.nextInt(TAGS.length)]).append("\"]")
+                .append(", \"phone\": \"010-").append(60000000 + random.nextInt(30000000)).append("\"")
+                .append(", \"promoted\": ").append(random.nextInt(20) == 0)
+                .append('}');
+        }
+        return json.append("], \"keywords\": [\"美食\", \"附近\"]}").toString();
+    }
+    
+    private static String name(Random random, int i) {
+        return BRANDS[random.nextInt(BRANDS.length)] + "(" + STREETS[random.nextInt(STREETS.length)] + "店)" + i;
+    }
+    
+    private static String address(Random random) {
+        return "北京市" + DISTRICTS[random.nextInt(DISTRICTS.length)] + STREETS[random.nextInt(STREETS.length)]
+            + (1 + random.nextInt(300)) + "号";
+    }
+    
+    private static double lat(Random random) {
+        return Math.round((ORIGIN_LAT + (random.nextDouble() - 0.5) * SPREAD_DEGREES) * 1e6) / 1e6;
+    }
+    
+    private static double lng(Random random) {
+        return Math.round((ORIGIN_LNG + (random.nextDouble() - 0.5) * SPREAD_DEGREES) * 1e6) / 1e6;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.example.easymap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// /chat response body -> PlaceResults
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int places;
+    
+    private String body;
+    
+    @Setup
+    public void setUp() {
+        body = Fixtures.chatResponse(places);
+    }
+    
+    @Benchmark
+    public List<PlaceResult> parseToList() throws IOException {
+        return PlaceResultParser.parse(new StringReader(body));
+    }
+    
+    // Streaming callback path used by MainActivity, without building the list
+    @Benchmark
+    public int parseStreaming(Blackhole blackhole) throws IOException {
+        return PlaceResultParser.parse(new StringReader(body), blackhole::consume);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.example.easymap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Distance computation and ranking against the user's position
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RankingBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int places;
+    
+    private List<PlaceResult> results;
+    private double[] lats;
+    private double[] lngs;
+    private double[] meters;
+    private PlaceIndex index;
+    
+    @Setup
+    public void setUp() {
+        results = Fixtures.places(places);
+        lats = new double[places];
+        lngs = new double[places];
+        meters = new double[places];
+        for (int i = 0; i < places; i++) {
+            lats[i] = results.get(i).getLatitude();
+            lngs[i] = results.get(i).getLongitude();
+        }
+        index = new PlaceIndex();
+        index.addAll(results);
+    }
+    
+    @Benchmark
+    public double[] distances() {
+        ProximityRanker.distances(Fixtures.ORIGIN_LAT, Fixtures.ORIGIN_LNG, lats, lngs, places, meters);
+        return meters;
+    }
+    
+    @Benchmark
+    public List<PlaceResult> rankByDistance() {
+        return ProximityRanker.rank(results, Fixtures.ORIGIN_LAT, Fixtures.ORIGIN_LNG, ProximityRanker.Mode.DISTANCE);
+    }
+    
+    @Benchmark
+    public List<PlaceResult> rankWeighted() {
+        return ProximityRanker.rank(results, Fixtures.ORIGIN_LAT, Fixtures.ORIGIN_LNG, ProximityRanker.Mode.WEIGHTED);
+    }
+    
+    @Benchmark
+    public List<PlaceResult> sessionNearest() {
+        return index.nearest(Fixtures.ORIGIN_LAT, Fixtures.ORIGIN_LNG, 30);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.example.easymap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Building the /chat request body for typical queries
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestBodyBenchmark {
+    @Param({"烤鸭", "best \"coffee\" near Sanlitun", "带孩子去哪里玩比较好，最好有室内场馆，附近有停车场和吃饭的地方"})
+    public String query;
+    
+    @Benchmark
+    public String chatRequestBody() {
+        return ChatRequest.body(query);
+    }
+    
+    @Benchmark
+    public String normalizeQuery() {
+        return QueryNormalizer.normalize(query);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.example.easymap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Applying a new result set to what is already shown: clustering for the
+// current zoom and diffing the marker set. A refined search typically keeps
+// about half of the previous results, which is what the two lists model.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResultUpdateBenchmark {
+    private static final float CITY_ZOOM = 12;
+    private static final float STREET_ZOOM = 16;
+    
+    @Param({"10", "100", "1000", "10000"})
+    public int places;
+    
+    private List<PlaceResult> previous;
+    private List<PlaceResult> next;
+    private List<MarkerRegistry.MarkerSpec> previousSpecs;
+    private List<MarkerRegistry.MarkerSpec> nextSpecs;
+    private MarkerRegistry<Object> registry;
+    
+    @Setup
+    public void setUp() {
+        List<PlaceResult> pool = Fixtures.places(places + places / 2);
+        previous = new ArrayList<>(pool.subList(0, places));
+        next = new ArrayList<>(pool.subList(places / 2, places + places / 2));
+        previousSpecs = specs(previous);
+        nextSpecs = specs(next);
+    }
+    
+    // Every invocation starts from the previous result set on the map
+    @Setup(Level.Invocation)
+    public void showPrevious() {
+        registry = new MarkerRegistry<>(new MarkerRegistry.MarkerFactory<Object>() {
+            @Override
+            public Object add(MarkerRegistry.MarkerSpec spec) {
+                return spec;
+            }
+            
+            @Override
+            public void update(Object marker, MarkerRegistry.MarkerSpec spec) {
+            }
+            
+            @Override
+            public void remove(Object marker) {
+            }
+        });
+        registry.update(previousSpecs);
+    }
+    
+    @Benchmark
+    public List<MarkerClusterer.Cluster> clusterCityZoom() {
+        MarkerClusterer clusterer = new MarkerClusterer();
+        clusterer.setPlaces(next);
+        return clusterer.clustersFor(CITY_ZOOM);
+    }
+    
+    @Benchmark
+    public List<MarkerClusterer.Cluster> clusterStreetZoom() {
+        MarkerClusterer clusterer = new MarkerClusterer();
+        clusterer.setPlaces(next);
+        return clusterer.clustersFor(STREET_ZOOM);
+    }
+    
+    @Benchmark
+    public MarkerRegistry<Object> diffMarkers() {
+        registry.update(nextSpecs);
+        return registry;
+    }
+    
+    private static List<MarkerRegistry.MarkerSpec> specs(List<PlaceResult> places) {
+        List<MarkerRegistry.MarkerSpec> specs = new ArrayList<>(places.size());
+        for (PlaceResult place : places) {
+            specs.add(new MarkerRegistry.MarkerSpec(place.getKey(), place.getLatitude(), place.getLongitude(),
+                place.getName(), place.getAddress(), false, place));
+        }
+        return specs;
+    }
+}
\ No newline at end of file